@@ -0,0 +1,103 @@
+package com.livelycoder.inventory.importer;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Runs on a device, as android.util.JsonReader has no implementation in the host unit tests
+ */
+@RunWith(AndroidJUnit4.class)
+public class JsonRecordSourceTest {
+
+    @Test
+    public void readsKnownKeysInAnyOrder() throws IOException {
+        List<String[]> records = read("[{\"quantity\": 3, \"notes\": {\"a\": [1]},"
+                + " \"PRODUCT_NAME\": \"Tea, \\\"green\\\"\", \"price\": 2.5, \"supplier_name\": null},"
+                + " {\"product_name\": \"Two\\nlines\", \"tags\": [\"x\"]}]");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"Tea, \"green\"", "2.5", "3", null, null}, records.get(0));
+        assertArrayEquals(new String[]{"Two\nlines", null, null, null, null}, records.get(1));
+    }
+
+    @Test
+    public void readsEmptyArray() throws IOException {
+        assertEquals(0, read("[]").size());
+    }
+
+    @Test(expected = CatalogFormatException.class)
+    public void rejectsTopLevelObject() throws IOException {
+        read("{\"product_name\": \"Tea\"}");
+    }
+
+    @Test(expected = CatalogFormatException.class)
+    public void rejectsNumberElements() throws IOException {
+        read("[1]");
+    }
+
+    @Test(expected = CatalogFormatException.class)
+    public void rejectsNestedArrays() throws IOException {
+        read("[{\"product_name\": \"Tea\"}, [{\"product_name\": \"Coffee\"}]]");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws IOException {
+        read("[{\"product_name\": \"Tea\"},");
+    }
+
+    /**
+     * The importer resumes by skipping the records an earlier run committed
+     */
+    @Test
+    public void skippedRecordsLineUpWithAFullRead() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"product_name\": \"Product ").append(i)
+                    .append("\", \"quantity\": ").append(i).append('}');
+        }
+        json.append(']');
+
+        List<String[]> all = read(json.toString());
+        assertEquals(500, all.size());
+
+        int skipRecords = 123;
+        JsonRecordSource source = new JsonRecordSource(new StringReader(json.toString()));
+        String[] fields = new String[CatalogImporter.FIELDS.length];
+        for (int i = 0; i < skipRecords; i++) {
+            source.next(fields);
+        }
+        for (int i = skipRecords; i < all.size(); i++) {
+            source.next(fields);
+            assertArrayEquals(all.get(i), fields);
+        }
+        assertFalse(source.next(fields));
+    }
+
+    private static List<String[]> read(String json) throws IOException {
+        JsonRecordSource source = new JsonRecordSource(new StringReader(json));
+        List<String[]> records = new ArrayList<>();
+        String[] fields = new String[CatalogImporter.FIELDS.length];
+        try {
+            while (source.next(fields)) {
+                records.add(fields.clone());
+            }
+        } finally {
+            source.close();
+        }
+        return records;
+    }
+}
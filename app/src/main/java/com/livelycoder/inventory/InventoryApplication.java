@@ -0,0 +1,122 @@
+package com.livelycoder.inventory;
+
+import android.annotation.TargetApi;
+import android.app.Application;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.util.Log;
+
+import com.livelycoder.inventory.sync.LocalSyncServer;
+import com.livelycoder.inventory.sync.SyncJobService;
+import com.livelycoder.inventory.sync.SyncTransport;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns StrictMode on in debug builds, so disk access on the main thread and leaked cursors
+ * are reported as soon as they are introduced, and holds the transport sync goes through.
+ */
+public class InventoryApplication extends Application {
+    private static final String LOG_TAG = "StrictMode";
+
+    private static final String APP_PACKAGE = "com.livelycoder.inventory.";
+
+    /**
+     * Guarded by this
+     */
+    private SyncTransport syncTransport;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            enableStrictMode();
+        }
+    }
+
+    /**
+     * Returns the transport to the sync backend. Debug builds fall back to the in-process
+     * {@link LocalSyncServer}; release builds don't sync until a transport is set.
+     *
+     * @return the transport, or null if sync isn't configured
+     */
+    public synchronized SyncTransport getSyncTransport() {
+        if (syncTransport == null && BuildConfig.DEBUG) {
+            syncTransport = new LocalSyncServer();
+        }
+        return syncTransport;
+    }
+
+    /**
+     * Points sync at a backend and schedules a sync through it
+     */
+    public void setSyncTransport(SyncTransport syncTransport) {
+        synchronized (this) {
+            this.syncTransport = syncTransport;
+        }
+        SyncJobService.scheduleIfIdle(this);
+    }
+
+    private static void enableStrictMode() {
+        StrictMode.ThreadPolicy.Builder threadPolicy = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork();
+        StrictMode.VmPolicy.Builder vmPolicy = new StrictMode.VmPolicy.Builder()
+                .detectLeakedSqlLiteObjects()
+                .detectLeakedClosableObjects();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            addAttributingListeners(threadPolicy, vmPolicy);
+        } else {
+            threadPolicy.penaltyLog();
+            vmPolicy.penaltyLog();
+        }
+
+        StrictMode.setThreadPolicy(threadPolicy.build());
+        StrictMode.setVmPolicy(vmPolicy.build());
+    }
+
+    /**
+     * Reports every violation under the app class that caused it, rather than the framework
+     * frames at the top of the stack
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    private static void addAttributingListeners(StrictMode.ThreadPolicy.Builder threadPolicy,
+                                                StrictMode.VmPolicy.Builder vmPolicy) {
+        Executor executor = Executors.newSingleThreadExecutor();
+        threadPolicy.penaltyListener(executor, new StrictMode.OnThreadViolationListener() {
+            @Override
+            public void onThreadViolation(Violation violation) {
+                report(violation);
+            }
+        });
+        vmPolicy.penaltyListener(executor, new StrictMode.OnVmViolationListener() {
+            @Override
+            public void onVmViolation(Violation violation) {
+                report(violation);
+            }
+        });
+    }
+
+    @TargetApi(Build.VERSION_CODES.P)
+    private static void report(Violation violation) {
+        Log.w(LOG_TAG, violation.getClass().getSimpleName() + " in " + caller(violation), violation);
+    }
+
+    /**
+     * Returns the innermost frame of the app's own code in the violation's stack trace
+     */
+    private static String caller(Throwable violation) {
+        for (StackTraceElement frame : violation.getStackTrace()) {
+            if (frame.getClassName().startsWith(APP_PACKAGE)
+                    && !frame.getClassName().equals(InventoryApplication.class.getName())) {
+                return frame.getClassName() + "." + frame.getMethodName()
+                        + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+            }
+        }
+        return "unknown caller";
+    }
+}
@@ -1,9 +1,11 @@
 package com.livelycoder.inventory.activities;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -24,6 +26,8 @@ import android.widget.Toast;
 
 import com.livelycoder.inventory.R;
 import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Prices;
+import com.livelycoder.inventory.data.WriteQueue;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -44,6 +48,12 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     @BindView(R.id.supplier_phone_edit_text)
     EditText supplierPhoneEditText;
 
+    @BindView(R.id.reorder_threshold_edit_text)
+    EditText reorderThresholdEditText;
+
+    @BindView(R.id.sku_edit_text)
+    EditText skuEditText;
+
     private Uri currentProductUri;
 
     private static final int LOADER_ID = 99;
@@ -69,6 +79,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         quantityEditText.setOnTouchListener(touchListener);
         supplierNameEditText.setOnTouchListener(touchListener);
         supplierPhoneEditText.setOnTouchListener(touchListener);
+        reorderThresholdEditText.setOnTouchListener(touchListener);
+        skuEditText.setOnTouchListener(touchListener);
 
         Intent intent = getIntent();
 
@@ -128,13 +140,30 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         return true;
     }
 
+    @Override
+    protected void onDestroy() {
+        WriteQueue.get(this).cancel(this);
+        super.onDestroy();
+    }
+
     private void deleteProduct() {
-        int rowsDeleted = getContentResolver().delete(currentProductUri, null, null);
-        if (rowsDeleted != 0) {
-            Toast.makeText(this, R.string.editor_delete_successful, Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(this, R.string.editor_delete_failed, Toast.LENGTH_SHORT).show();
-        }
+        final Uri uri = currentProductUri;
+        WriteQueue.get(this).submit(this, new WriteQueue.Write<Integer>() {
+            @Override
+            public Integer write(ContentResolver contentResolver) {
+                return contentResolver.delete(uri, null, null);
+            }
+        }, new WriteQueue.Callback<Integer>() {
+            @Override
+            public void onWritten(Integer rowsDeleted) {
+                if (rowsDeleted != 0) {
+                    Toast.makeText(EditorActivity.this, R.string.editor_delete_successful, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(EditorActivity.this, R.string.editor_delete_failed, Toast.LENGTH_SHORT).show();
+                }
+                finish();
+            }
+        });
     }
 
     private void showDeleteConfirmationDialog() {
@@ -146,7 +175,6 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             public void onClick(DialogInterface dialog, int id) {
                 // User clicked the "Delete" button, so delete the pet.
                 deleteProduct();
-                finish();
             }
         });
         builder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -174,10 +202,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         String quantityString = quantityEditText.getText().toString();
         String supplierName = supplierNameEditText.getText().toString();
         String supplierPhoneString = supplierPhoneEditText.getText().toString();
+        String reorderThresholdString = reorderThresholdEditText.getText().toString();
+        String sku = skuEditText.getText().toString().trim();
 
         if (currentProductUri == null && TextUtils.isEmpty(productName) && TextUtils.isEmpty(priceString)
                 && TextUtils.isEmpty(quantityString)
-                && TextUtils.isEmpty(supplierName) && TextUtils.isEmpty(supplierPhoneString))
+                && TextUtils.isEmpty(supplierName) && TextUtils.isEmpty(supplierPhoneString)
+                && TextUtils.isEmpty(reorderThresholdString) && TextUtils.isEmpty(sku))
             return;
 
         if (TextUtils.isEmpty(productName)) {
@@ -195,51 +226,99 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             return;
         }
 
-        float price = Float.parseFloat(priceString);
+        long price = Prices.parse(priceString);
         int quantity = Integer.parseInt(quantityString);
         long supplierPhone = 0;
 
         if (!TextUtils.isEmpty(supplierPhoneString))
             supplierPhone = Long.parseLong(supplierPhoneString);
 
-        ContentValues values = new ContentValues();
+        int reorderThreshold = 0;
+
+        if (!TextUtils.isEmpty(reorderThresholdString))
+            reorderThreshold = Integer.parseInt(reorderThresholdString);
+
+        final ContentValues values = new ContentValues();
 
         values.put(InventoryEntry.COLUMN_PRODUCT_NAME, productName);
         values.put(InventoryEntry.COLUMN_PRICE, price);
         values.put(InventoryEntry.COLUMN_QUANTITY, quantity);
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplierName);
         values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, supplierPhone);
+        values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, reorderThreshold);
+        // Products without a SKU share NULL, which the unique index allows
+        if (TextUtils.isEmpty(sku))
+            values.putNull(InventoryEntry.COLUMN_SKU);
+        else
+            values.put(InventoryEntry.COLUMN_SKU, sku);
 
         if (currentProductUri == null) {
             // Inserting product
-            Uri uri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
+            WriteQueue.get(this).submit(this, new WriteQueue.Write<Uri>() {
+                @Override
+                public Uri write(ContentResolver contentResolver) {
+                    return contentResolver.insert(InventoryEntry.CONTENT_URI, values);
+                }
+            }, new WriteQueue.Callback<Uri>() {
+                @Override
+                public void onWritten(Uri uri) {
+                    if (uri != null)
+                        Toast.makeText(EditorActivity.this, R.string.editor_insert_product_successful,
+                                Toast.LENGTH_SHORT).show();
+                    else
+                        Toast.makeText(EditorActivity.this, R.string.editor_insert_product_failed,
+                                Toast.LENGTH_SHORT).show();
+                    finish();
+                }
 
-            if (uri != null)
-                Toast.makeText(this, R.string.editor_insert_product_successful,
-                        Toast.LENGTH_SHORT).show();
-            else
-                Toast.makeText(this, R.string.editor_insert_product_failed,
-                        Toast.LENGTH_SHORT).show();
+                @Override
+                public void onFailed(RuntimeException e) {
+                    if (!(e instanceof SQLiteConstraintException)) {
+                        throw e;
+                    }
+                    // Keep the editor open so the SKU can be corrected
+                    Toast.makeText(EditorActivity.this, R.string.editor_sku_in_use,
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
 
         } else {
             // Updating product
-            int rowsUpdated = getContentResolver().update(
-                    currentProductUri,
-                    values,
-                    null,
-                    null
-            );
-
-            if (rowsUpdated != 0) {
-                Toast.makeText(this, R.string.editor_update_product_successful,
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, R.string.editor_update_product_failed,
-                        Toast.LENGTH_SHORT).show();
-            }
-        }
+            final Uri uri = currentProductUri;
+            WriteQueue.get(this).submit(this, new WriteQueue.Write<Integer>() {
+                @Override
+                public Integer write(ContentResolver contentResolver) {
+                    return contentResolver.update(
+                            uri,
+                            values,
+                            null,
+                            null
+                    );
+                }
+            }, new WriteQueue.Callback<Integer>() {
+                @Override
+                public void onWritten(Integer rowsUpdated) {
+                    if (rowsUpdated != 0) {
+                        Toast.makeText(EditorActivity.this, R.string.editor_update_product_successful,
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(EditorActivity.this, R.string.editor_update_product_failed,
+                                Toast.LENGTH_SHORT).show();
+                    }
+                    finish();
+                }
 
-        finish();
+                @Override
+                public void onFailed(RuntimeException e) {
+                    if (!(e instanceof SQLiteConstraintException)) {
+                        throw e;
+                    }
+                    // Keep the editor open so the SKU can be corrected
+                    Toast.makeText(EditorActivity.this, R.string.editor_sku_in_use,
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+        }
     }
 
     private void showUnsavedChangesDialog(DialogInterface.OnClickListener discardButtonClickListener) {
@@ -267,7 +346,9 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 InventoryEntry.COLUMN_PRICE,
                 InventoryEntry.COLUMN_QUANTITY,
                 InventoryEntry.COLUMN_SUPPLIER_NAME,
-                InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER
+                InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+                InventoryEntry.COLUMN_REORDER_THRESHOLD,
+                InventoryEntry.COLUMN_SKU
         };
 
         return new CursorLoader(
@@ -290,12 +371,16 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
             int supplierNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NAME);
             int supplierPhoneColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
+            int reorderThresholdColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            int skuColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SKU);
 
             productNameEditText.setText(cursor.getString(productNameColumnIndex));
-            priceEditText.setText(cursor.getString(priceColumnIndex));
+            priceEditText.setText(Prices.format(cursor.getLong(priceColumnIndex)));
             quantityEditText.setText(cursor.getString(quantityColumnIndex));
             supplierNameEditText.setText(cursor.getString(supplierNameColumnIndex));
             supplierPhoneEditText.setText(cursor.getString(supplierPhoneColumnIndex));
+            reorderThresholdEditText.setText(cursor.getString(reorderThresholdColumnIndex));
+            skuEditText.setText(cursor.getString(skuColumnIndex));
         }
 
     }
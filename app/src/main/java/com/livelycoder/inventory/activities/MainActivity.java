@@ -1,40 +1,74 @@
 package com.livelycoder.inventory.activities;
 
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.Toast;
 
 import com.livelycoder.inventory.R;
-import com.livelycoder.inventory.adapters.ProductCursorAdapter;
+import com.livelycoder.inventory.adapters.ProductAdapter;
+import com.livelycoder.inventory.data.InventoryContract;
 import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Product;
+import com.livelycoder.inventory.data.WriteQueue;
+import com.livelycoder.inventory.importer.CatalogImportService;
+import com.livelycoder.inventory.loaders.ProductPageLoader;
+import com.livelycoder.inventory.sync.SyncJobService;
+
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Product>> {
 
-    private ProductCursorAdapter adapter;
+    private ProductAdapter adapter;
 
     private static final int LOADER_ID = 77;
 
+    private static final int REQUEST_IMPORT_CATALOG = 1;
+
+    /**
+     * Time to wait after the last keystroke before searching
+     */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
+    private static final String ARG_SEARCH_QUERY = "search_query";
+
+    private final Handler searchHandler = new Handler();
+
+    private String searchQuery;
+
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Bundle args = new Bundle();
+            args.putString(ARG_SEARCH_QUERY, searchQuery);
+            // Restarting cancels the query still running for the previous search
+            getSupportLoaderManager().restartLoader(LOADER_ID, args, MainActivity.this);
+        }
+    };
+
     @BindView(R.id.main_product_list_view)
-    ListView listView;
+    RecyclerView recyclerView;
 
     @BindView(R.id.empty_view)
     View emptyView;
@@ -45,15 +79,9 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         setContentView(R.layout.activity_main);
         ButterKnife.bind(this);
 
-        adapter = new ProductCursorAdapter(this, null);
-
-        listView.setAdapter(adapter);
-
-        listView.setEmptyView(emptyView);
-
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        adapter = new ProductAdapter(this, new ProductAdapter.OnProductClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            public void onProductClick(long id) {
                 Intent intent = new Intent(MainActivity.this, EditorActivity.class);
                 Uri uri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
                 intent.setData(uri);
@@ -61,7 +89,48 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             }
         });
 
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setAdapter(adapter);
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // The loader fetches the pages around these rows and drops the others
+                int first = layoutManager.findFirstVisibleItemPosition();
+                if (first != RecyclerView.NO_POSITION) {
+                    Loader<List<Product>> loader = getSupportLoaderManager().getLoader(LOADER_ID);
+                    if (loader != null) {
+                        ((ProductPageLoader) loader).setVisibleRange(first,
+                                layoutManager.findLastVisibleItemPosition());
+                    }
+                }
+            }
+        });
+
         getSupportLoaderManager().initLoader(LOADER_ID, null, this);
+
+        if (savedInstanceState == null) {
+            compactHistory();
+            SyncJobService.scheduleIfIdle(this);
+        }
+    }
+
+    /**
+     * Folds old stock movements into snapshots and prunes the old change feed entries, once
+     * per launch, behind any pending writes
+     */
+    private void compactHistory() {
+        WriteQueue.get(this).submit(this, new WriteQueue.Write<Bundle>() {
+            @Override
+            public Bundle write(ContentResolver contentResolver) {
+                contentResolver.call(InventoryEntry.CONTENT_URI,
+                        InventoryContract.METHOD_COMPACT_MOVEMENTS, null, null);
+                return contentResolver.call(InventoryEntry.CONTENT_URI,
+                        InventoryContract.METHOD_PRUNE_CHANGES, null, null);
+            }
+        }, null);
     }
 
     @OnClick(R.id.main_fab_add)
@@ -73,38 +142,87 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
      * Inserts dummy data into the database
      */
     private void insertIntoDatabase() {
-        ContentValues values = new ContentValues();
+        final ContentValues values = new ContentValues();
 
         values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Apple juice");
-        values.put(InventoryEntry.COLUMN_PRICE, 25.23);
+        values.put(InventoryEntry.COLUMN_PRICE, 2523L);
         values.put(InventoryEntry.COLUMN_QUANTITY, 12);
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, "REAL");
         values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, 8889998889L);
 
-        Uri uri = getContentResolver()
-                .insert(InventoryEntry.CONTENT_URI, values);
+        WriteQueue.get(this).submit(this, new WriteQueue.Write<Uri>() {
+            @Override
+            public Uri write(ContentResolver contentResolver) {
+                return contentResolver.insert(InventoryEntry.CONTENT_URI, values);
+            }
+        }, new WriteQueue.Callback<Uri>() {
+            @Override
+            public void onWritten(Uri uri) {
+                if (uri != null)
+                    Toast.makeText(MainActivity.this, R.string.editor_insert_product_successful,
+                            Toast.LENGTH_SHORT).show();
+                else
+                    Toast.makeText(MainActivity.this, R.string.editor_insert_product_failed,
+                            Toast.LENGTH_SHORT).show();
+            }
+        });
 
-        if (uri != null)
-            Toast.makeText(this, R.string.editor_insert_product_successful,
-                    Toast.LENGTH_SHORT).show();
-        else
-            Toast.makeText(this, R.string.editor_insert_product_failed,
-                    Toast.LENGTH_SHORT).show();
+    }
 
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        WriteQueue.get(this).cancel(this);
+        super.onDestroy();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query, 0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText, SEARCH_DEBOUNCE_MILLIS);
+                return true;
+            }
+        });
+
         return super.onCreateOptionsMenu(menu);
     }
 
+    /**
+     * Reloads the list for the given search query once the user has stopped typing
+     *
+     * @param query       to search for, empty to show the whole inventory
+     * @param delayMillis to wait before searching
+     */
+    private void search(String query, long delayMillis) {
+        query = query.trim();
+        if (TextUtils.equals(query, searchQuery)) {
+            return;
+        }
+        searchQuery = query;
+        searchHandler.removeCallbacks(searchRunnable);
+        searchHandler.postDelayed(searchRunnable, delayMillis);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_add:
                 insertIntoDatabase();
                 return true;
+            case R.id.action_import:
+                pickCatalog();
+                return true;
             case R.id.action_delete_all:
                 deleteInventory();
                 return true;
@@ -112,43 +230,66 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         return super.onOptionsItemSelected(item);
     }
 
-    private void deleteInventory() {
-        int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null, null);
-        if (rowsDeleted != 0) {
-            Toast.makeText(this, R.string.main_delete_inventory_successful, Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(this, R.string.main_delete_inventory_failed, Toast.LENGTH_SHORT).show();
+    /**
+     * Asks the user for a CSV or JSON catalog to import
+     */
+    private void pickCatalog() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{
+                    "text/csv", "text/comma-separated-values", "application/json", "text/plain"
+            });
+        }
+        startActivityForResult(intent, REQUEST_IMPORT_CATALOG);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        if (requestCode == REQUEST_IMPORT_CATALOG) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                Uri source = data.getData();
+                CatalogImportService.start(this, source, getContentResolver().getType(source));
+            }
+            return;
         }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    private void deleteInventory() {
+        WriteQueue.get(this).submit(this, new WriteQueue.Write<Integer>() {
+            @Override
+            public Integer write(ContentResolver contentResolver) {
+                return contentResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+            }
+        }, new WriteQueue.Callback<Integer>() {
+            @Override
+            public void onWritten(Integer rowsDeleted) {
+                if (rowsDeleted != 0) {
+                    Toast.makeText(MainActivity.this, R.string.main_delete_inventory_successful, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(MainActivity.this, R.string.main_delete_inventory_failed, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     @NonNull
     @Override
-    public Loader<Cursor> onCreateLoader(int i, @Nullable Bundle bundle) {
-
-        String[] projection = new String[]{
-                InventoryEntry._ID,
-                InventoryEntry.COLUMN_PRODUCT_NAME,
-                InventoryEntry.COLUMN_PRICE,
-                InventoryEntry.COLUMN_QUANTITY
-        };
-
-        return new CursorLoader(
-                this,
-                InventoryEntry.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null
-        );
+    public Loader<List<Product>> onCreateLoader(int i, @Nullable Bundle bundle) {
+        String query = bundle != null ? bundle.getString(ARG_SEARCH_QUERY) : null;
+        return new ProductPageLoader(this, query);
     }
 
     @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor cursor) {
-        adapter.swapCursor(cursor);
+    public void onLoadFinished(@NonNull Loader<List<Product>> loader, List<Product> products) {
+        adapter.submitList(products);
+        emptyView.setVisibility(products.isEmpty() ? View.VISIBLE : View.GONE);
     }
 
     @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        adapter.swapCursor(null);
+    public void onLoaderReset(@NonNull Loader<List<Product>> loader) {
+        adapter.submitList(null);
     }
 }
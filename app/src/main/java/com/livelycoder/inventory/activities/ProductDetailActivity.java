@@ -1,6 +1,7 @@
 package com.livelycoder.inventory.activities;
 
-import android.content.ContentValues;
+import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
@@ -19,6 +20,9 @@ import android.widget.Toast;
 
 import com.livelycoder.inventory.R;
 import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Prices;
+import com.livelycoder.inventory.data.QuantityBuffer;
+import com.livelycoder.inventory.data.WriteQueue;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -44,8 +48,18 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
     @BindView(R.id.detail_supplier_phone)
     TextView detailSupplierPhone;
 
+    /**
+     * Quantity as last read from the database
+     */
     private int productQuantity;
 
+    /**
+     * Stock across every location as last read from the database
+     */
+    private int productTotalQuantity;
+
+    private QuantityBuffer quantityBuffer;
+
     private long supplierPhone;
 
     @Override
@@ -56,6 +70,23 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
 
         currentProductUri = getIntent().getData();
 
+        quantityBuffer = new QuantityBuffer(WriteQueue.get(this), this,
+                getResources().getInteger(R.integer.quantity_flush_idle_millis),
+                new QuantityBuffer.Listener() {
+                    @Override
+                    public void onQuantityFlushed(long id, int delta, int quantity) {
+                        if (quantity == -1) {
+                            // Someone else sold the stock the taps were counting on
+                            Toast.makeText(ProductDetailActivity.this, R.string.item_out_of_stock,
+                                    Toast.LENGTH_SHORT).show();
+                        } else {
+                            productTotalQuantity += quantity - productQuantity;
+                            productQuantity = quantity;
+                        }
+                        showQuantity();
+                    }
+                });
+
         if (currentProductUri != null) {
             getSupportLoaderManager().initLoader(LOADER_ID, null, this);
         }
@@ -82,18 +113,20 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
             int productNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
             int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
             int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
+            int totalQuantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_TOTAL_QUANTITY);
             int supplierNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NAME);
             int supplierPhoneColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
 
             String productName = cursor.getString(productNameColumnIndex);
             detailName.setText(getString(R.string.item_product_name, productName));
 
-            float productPrice = cursor.getFloat(priceColumnIndex);
-            detailPrice.setText(getString(R.string.item_product_price, productPrice));
+            long productPrice = cursor.getLong(priceColumnIndex);
+            detailPrice.setText(getString(R.string.item_product_price, Prices.toMajor(productPrice)));
 
             productQuantity = cursor.getInt(quantityColumnIndex);
+            productTotalQuantity = cursor.getInt(totalQuantityColumnIndex);
 
-            detailQuantity.setText(getString(R.string.item_product_quantity, productQuantity));
+            showQuantity();
 
             String productSupplier = cursor.getString(supplierNameColumnIndex);
 
@@ -120,40 +153,50 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
 
     @OnClick(R.id.minus_button)
     public void decreaseQuantity() {
-        if (productQuantity == 0) {
+        if (displayedQuantity() == 0) {
             return;
         }
-        productQuantity--;
-        ContentValues values = new ContentValues();
-        values.put(InventoryEntry.COLUMN_QUANTITY, productQuantity);
-        int rowsUpdated = getContentResolver().update(
-                currentProductUri,
-                values,
-                null,
-                null
-        );
-
-        if (rowsUpdated != 0) {
-            detailQuantity.setText(getString(R.string.item_product_quantity, productQuantity));
-        }
-
+        adjustQuantity(-1);
     }
 
     @OnClick(R.id.plus_button)
     public void increaseQuantity() {
-        productQuantity++;
-        ContentValues values = new ContentValues();
-        values.put(InventoryEntry.COLUMN_QUANTITY, productQuantity);
-        int rowsUpdated = getContentResolver().update(
-                currentProductUri,
-                values,
-                null,
-                null
-        );
+        adjustQuantity(1);
+    }
+
+    /**
+     * Buffers delta for the product and shows the quantity it will have once written
+     *
+     * @param delta to add to the quantity
+     */
+    private void adjustQuantity(int delta) {
+        quantityBuffer.add(ContentUris.parseId(currentProductUri), delta);
+        showQuantity();
+    }
 
-        if (rowsUpdated != 0) {
-            detailQuantity.setText(getString(R.string.item_product_quantity, productQuantity));
+    /**
+     * Returns the stored quantity with the adjustments not written yet applied
+     */
+    private int displayedQuantity() {
+        if (currentProductUri == null) {
+            return productQuantity;
         }
+        return productQuantity + quantityBuffer.pending(ContentUris.parseId(currentProductUri));
+    }
+
+    private void showQuantity() {
+        int quantity = displayedQuantity();
+        // Taps only move the store's stock, so the total moves by the same amount
+        detailQuantity.setText(getString(R.string.item_product_stock, quantity,
+                productTotalQuantity + quantity - productQuantity));
+    }
+
+    @Override
+    protected void onPause() {
+        // Queue the buffered taps while the process is still in the foreground. They are
+        // written soon after, not before this returns, see QuantityBuffer.
+        quantityBuffer.flush();
+        super.onPause();
     }
 
     @OnClick(R.id.order_button)
@@ -165,6 +208,13 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
         Intent callIntent = new Intent(Intent.ACTION_DIAL, Uri.parse("tel:" + supplierPhone));
         startActivity(callIntent);
     }
+
+    @Override
+    protected void onDestroy() {
+        WriteQueue.get(this).cancel(this);
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.product_detail, menu);
@@ -174,16 +224,26 @@ public class ProductDetailActivity extends AppCompatActivity implements LoaderMa
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.action_delete) {
-            int rowsDeleted = getContentResolver().delete(
-                    currentProductUri,
-                    null,
-                    null
-            );
-
-            if (rowsDeleted != 0) {
-                Toast.makeText(this, R.string.editor_delete_successful, Toast.LENGTH_SHORT).show();
-                finish();
-            }
+            final Uri uri = currentProductUri;
+            WriteQueue.get(this).submit(this, new WriteQueue.Write<Integer>() {
+                @Override
+                public Integer write(ContentResolver contentResolver) {
+                    return contentResolver.delete(
+                            uri,
+                            null,
+                            null
+                    );
+                }
+            }, new WriteQueue.Callback<Integer>() {
+                @Override
+                public void onWritten(Integer rowsDeleted) {
+                    if (rowsDeleted != 0) {
+                        Toast.makeText(ProductDetailActivity.this, R.string.editor_delete_successful,
+                                Toast.LENGTH_SHORT).show();
+                        finish();
+                    }
+                }
+            });
             return true;
         }
         return super.onOptionsItemSelected(item);
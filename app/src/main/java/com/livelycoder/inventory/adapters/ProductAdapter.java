@@ -0,0 +1,198 @@
+package com.livelycoder.inventory.adapters;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.livelycoder.inventory.R;
+import com.livelycoder.inventory.activities.ProductDetailActivity;
+import com.livelycoder.inventory.data.InventoryContract;
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Prices;
+import com.livelycoder.inventory.data.Product;
+import com.livelycoder.inventory.data.WriteQueue;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * Shows the products in a RecyclerView. New lists are diffed against the current one on a
+ * background thread, so a change to one product only rebinds that product's row.
+ * <p>
+ * Null items are placeholders for products the loader dropped or hasn't read yet, and show
+ * as an empty row.
+ */
+public class ProductAdapter extends ListAdapter<Product, ProductAdapter.ViewHolder> {
+
+    /**
+     * Callback for clicks on a product row
+     */
+    public interface OnProductClickListener {
+        void onProductClick(long id);
+    }
+
+    private static final DiffUtil.ItemCallback<Product> DIFF_CALLBACK = new DiffUtil.ItemCallback<Product>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Product oldItem, @NonNull Product newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Product oldItem, @NonNull Product newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private final Context context;
+
+    private final OnProductClickListener productClickListener;
+
+    public ProductAdapter(Context context, OnProductClickListener productClickListener) {
+        super(DIFF_CALLBACK);
+        this.context = context;
+        this.productClickListener = productClickListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Product product = getItem(position);
+        return product != null ? product.getId() : RecyclerView.NO_ID;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_product, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Product product = getItem(position);
+        if (product == null) {
+            holder.productName.setText(null);
+            holder.productPrice.setText(null);
+            holder.productQuantity.setText(null);
+            holder.saleButton.setVisibility(View.INVISIBLE);
+            holder.infoButton.setVisibility(View.INVISIBLE);
+            return;
+        }
+        holder.saleButton.setVisibility(View.VISIBLE);
+        holder.infoButton.setVisibility(View.VISIBLE);
+
+        holder.productName.setText(context.getString(R.string.item_product_name, product.getName()));
+        holder.productPrice.setText(context.getString(R.string.item_product_price,
+                Prices.toMajor(product.getPrice())));
+        holder.productQuantity.setText(context.getString(R.string.item_product_stock,
+                product.getQuantity(), product.getTotalQuantity()));
+    }
+
+    /**
+     * Returns the id of the product shown by the row containing the view, or -1 if the row is
+     * being removed.
+     */
+    private static long productId(View v) {
+        ViewHolder holder = (ViewHolder) v.getTag(R.id.item_view_holder);
+        return holder.getItemId();
+    }
+
+    private final View.OnClickListener rowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            long id = productId(v);
+            if (id != RecyclerView.NO_ID) {
+                productClickListener.onProductClick(id);
+            }
+        }
+    };
+
+    private final View.OnClickListener saleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            final long id = productId(v);
+            if (id == RecyclerView.NO_ID) {
+                return;
+            }
+
+            final Bundle extras = new Bundle();
+            extras.putInt(InventoryContract.EXTRA_DELTA, -1);
+
+            // Tagged with the context, so the activity's onDestroy drops the result
+            WriteQueue.get(context).submit(context, new WriteQueue.Write<Bundle>() {
+                @Override
+                public Bundle write(ContentResolver contentResolver) {
+                    return contentResolver.call(
+                            InventoryEntry.CONTENT_URI,
+                            InventoryContract.METHOD_ADJUST_QUANTITY,
+                            String.valueOf(id),
+                            extras
+                    );
+                }
+            }, new WriteQueue.Callback<Bundle>() {
+                @Override
+                public void onWritten(Bundle result) {
+                    if (result == null || !result.containsKey(InventoryContract.EXTRA_QUANTITY)) {
+                        Toast.makeText(context, R.string.item_out_of_stock, Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
+        }
+    };
+
+    private final View.OnClickListener infoClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            long id = productId(v);
+            if (id == RecyclerView.NO_ID) {
+                return;
+            }
+            Intent intent = new Intent(context, ProductDetailActivity.class);
+            intent.setData(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+            context.startActivity(intent);
+        }
+    };
+
+    class ViewHolder extends RecyclerView.ViewHolder {
+        @BindView(R.id.item_name)
+        TextView productName;
+
+        @BindView(R.id.item_price)
+        TextView productPrice;
+
+        @BindView(R.id.item_quantity)
+        TextView productQuantity;
+
+        @BindView(R.id.sale_button)
+        Button saleButton;
+
+        @BindView(R.id.info_button)
+        ImageView infoButton;
+
+        ViewHolder(View view) {
+            super(view);
+            ButterKnife.bind(this, view);
+
+            view.setTag(R.id.item_view_holder, this);
+            saleButton.setTag(R.id.item_view_holder, this);
+            infoButton.setTag(R.id.item_view_holder, this);
+
+            view.setOnClickListener(rowClickListener);
+            saleButton.setOnClickListener(saleClickListener);
+            infoButton.setOnClickListener(infoClickListener);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.data.InventoryContract.ChangeEntry;
+
+/**
+ * Builds the query reading the change feed after a sequence number, bound as the first
+ * argument.
+ */
+final class ChangeFeed {
+    /**
+     * Sequence number a change feed query continues after, bound as text like every argument
+     */
+    private static final String SINCE = "CAST(?1 AS INTEGER)";
+
+    /**
+     * Last sequence number handed out, which AUTOINCREMENT keeps even when every entry is pruned
+     */
+    private static final String LAST = "(SELECT IFNULL(MAX(seq), 0) FROM sqlite_sequence"
+            + " WHERE name = '" + ChangeEntry.TABLE_NAME + "')";
+
+    /**
+     * Sequence number up to which entries were pruned. Entries are only pruned from the
+     * oldest on, so the remaining ones follow it without gaps.
+     */
+    private static final String PRUNED = "IFNULL((SELECT MIN(" + ChangeEntry._ID + ") FROM "
+            + ChangeEntry.TABLE_NAME + ") - 1, " + LAST + ")";
+
+    /**
+     * One row for every product changed after {@link #SINCE}, or a single reset row if part of
+     * the range was pruned. One statement, so pruning can't slip in between.
+     * <p>
+     * The row sits at the product's first change in the range and carries its latest one,
+     * reporting an update as an insert when the product was added in the range too. A
+     * consumer reading a page continues after the last row it got, so every product left out
+     * of the page has all of its changes after that and still has its insert reported.
+     * <p>
+     * The "+" keeps SQLite from walking the whole product index to group; it reads the range
+     * by _ID instead, so the cost follows the number of changes rather than the table.
+     */
+    private static final String SQL = "SELECT g.first AS " + ChangeEntry._ID + ","
+            + " c." + ChangeEntry.COLUMN_PRODUCT_ID + " AS " + ChangeEntry.COLUMN_PRODUCT_ID + ","
+            + " CASE WHEN c." + ChangeEntry.COLUMN_OP + " = " + ChangeEntry.OP_UPDATE + " AND EXISTS (SELECT 1 FROM "
+            + ChangeEntry.TABLE_NAME + " i WHERE i." + ChangeEntry.COLUMN_PRODUCT_ID + " = c." + ChangeEntry.COLUMN_PRODUCT_ID
+            + " AND i." + ChangeEntry.COLUMN_OP + " = " + ChangeEntry.OP_INSERT
+            + " AND i." + ChangeEntry._ID + " > " + SINCE + ")"
+            + " THEN " + ChangeEntry.OP_INSERT + " ELSE c." + ChangeEntry.COLUMN_OP + " END AS " + ChangeEntry.COLUMN_OP + ","
+            + " c." + ChangeEntry.COLUMN_TIME + " AS " + ChangeEntry.COLUMN_TIME
+            + " FROM (SELECT MIN(" + ChangeEntry._ID + ") AS first, MAX(" + ChangeEntry._ID + ") AS last"
+            + " FROM " + ChangeEntry.TABLE_NAME + " WHERE " + ChangeEntry._ID + " > " + SINCE
+            + " GROUP BY +" + ChangeEntry.COLUMN_PRODUCT_ID + ") g"
+            + " JOIN " + ChangeEntry.TABLE_NAME + " c ON c." + ChangeEntry._ID + " = g.last"
+            + " WHERE " + SINCE + " >= " + PRUNED
+            + " UNION ALL SELECT " + LAST + ", NULL, " + ChangeEntry.OP_RESET + ", NULL"
+            + " WHERE " + SINCE + " < " + PRUNED;
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * Builds the query
+     *
+     * @param projection columns to return, null for all of them
+     * @param limit      maximum number of rows, null for no limit
+     */
+    static String build(String[] projection, String limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (projection == null) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < projection.length; i++) {
+                if (i != 0) {
+                    sql.append(", ");
+                }
+                sql.append(projection[i]);
+            }
+        }
+        sql.append(" FROM (").append(SQL).append(") ORDER BY ").append(ChangeEntry._ID);
+        if (limit != null) {
+            sql.append(" LIMIT ").append(Integer.parseInt(limit));
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,224 @@
+package com.livelycoder.inventory.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.InventoryContract.LocationEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends the provider's change notifications.
+ * <ul>
+ * <li>A change to one product notifies that product's URI, which observers of the directory
+ * registered for descendants, like every loader in the app, see too, while observers of
+ * other products don't wake up. The directory URI is notified as well for observers
+ * registered without descendants, skipping the ones that already saw the product's URI on
+ * API 24 and up. Older versions can't skip them, so there the directory URI alone is
+ * notified, which reaches every product observer.</li>
+ * <li>Notifications raised while the calling thread has a batch open are held back until the
+ * batch ends, and dropped if it rolls back.</li>
+ * <li>Notifications within the coalescing window are merged, so a burst of writes causes one
+ * requery per observer instead of one per write. The merged ones are sent from a background
+ * thread of the notifier's own, as notifyChange is a binder call per observer that the main
+ * thread shouldn't wait on.</li>
+ * </ul>
+ */
+final class ChangeNotifier {
+    private final ContentResolver contentResolver;
+
+    private final long windowMillis;
+
+    private final Handler handler;
+
+    /**
+     * Notifications of the batch open on the calling thread, null when there is none
+     */
+    private final ThreadLocal<Set<Uri>> batch = new ThreadLocal<>();
+
+    /**
+     * Notifications waiting for the end of the coalescing window. Guarded by this.
+     */
+    private final Set<Uri> pending = new LinkedHashSet<>();
+
+    private boolean flushScheduled;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param contentResolver to notify through
+     * @param windowMillis    time notifications are held back to be merged, 0 to send them
+     *                        straight away
+     */
+    ChangeNotifier(ContentResolver contentResolver, long windowMillis) {
+        this.contentResolver = contentResolver;
+        this.windowMillis = windowMillis;
+
+        HandlerThread thread = new HandlerThread("inventory-notify", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Records a change to a single product
+     */
+    void notifyProduct(long id) {
+        notifyUri(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+    }
+
+    /**
+     * Records a change that may touch any product
+     */
+    void notifyDirectory() {
+        notifyUri(InventoryEntry.CONTENT_URI);
+    }
+
+    /**
+     * Records a change to the stock locations
+     */
+    void notifyLocations() {
+        notifyUri(LocationEntry.CONTENT_URI);
+    }
+
+    /**
+     * Holds back the notifications of the calling thread until {@link #endBatch(boolean, boolean)}
+     *
+     * @return whether this call opened the batch; nested calls return false
+     */
+    boolean beginBatch() {
+        if (batch.get() != null) {
+            return false;
+        }
+        batch.set(new LinkedHashSet<Uri>());
+        return true;
+    }
+
+    /**
+     * Ends the batch of the calling thread
+     *
+     * @param opened     value returned by the matching {@link #beginBatch()}
+     * @param successful whether the batch committed; otherwise its notifications are dropped
+     */
+    void endBatch(boolean opened, boolean successful) {
+        if (!opened) {
+            return;
+        }
+        Set<Uri> uris = batch.get();
+        batch.remove();
+        if (successful) {
+            enqueue(uris);
+        }
+    }
+
+    private void notifyUri(Uri uri) {
+        Set<Uri> uris = batch.get();
+        if (uris != null) {
+            uris.add(uri);
+            return;
+        }
+
+        Set<Uri> single = new LinkedHashSet<>(1);
+        single.add(uri);
+        enqueue(single);
+    }
+
+    private void enqueue(Set<Uri> uris) {
+        if (uris.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            pending.addAll(uris);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+
+        if (windowMillis == 0) {
+            flush();
+        } else {
+            handler.postDelayed(flushRunnable, windowMillis);
+        }
+    }
+
+    private void flush() {
+        List<Uri> uris;
+        boolean directoryChanged;
+        synchronized (this) {
+            flushScheduled = false;
+            directoryChanged = pending.remove(InventoryEntry.CONTENT_URI);
+            uris = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        if (directoryChanged) {
+            // A directory notification reaches every other observer as well
+            contentResolver.notifyChange(InventoryEntry.CONTENT_URI, null);
+            return;
+        }
+
+        boolean productChanged = false;
+        for (Uri uri : uris) {
+            if (isProduct(uri)) {
+                productChanged = true;
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+                    // The directory notification below reaches this product's observers
+                    continue;
+                }
+            }
+            contentResolver.notifyChange(uri, null);
+        }
+
+        if (!productChanged) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            contentResolver.notifyChange(InventoryEntry.CONTENT_URI, null);
+        } else {
+            notifyDirectoryOnly();
+        }
+    }
+
+    /**
+     * Notifies the directory's observers that weren't registered for descendants, the others
+     * having seen the product URIs
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private void notifyDirectoryOnly() {
+        contentResolver.notifyChange(InventoryEntry.CONTENT_URI, null,
+                ContentResolver.NOTIFY_SKIP_NOTIFY_FOR_DESCENDANTS);
+    }
+
+    /**
+     * @return whether the URI is that of a single product
+     */
+    private static boolean isProduct(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !InventoryContract.PATH_INVENTORY.equals(segments.get(0))) {
+            return false;
+        }
+        String id = segments.get(1);
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return false;
+            }
+        }
+        return !id.isEmpty();
+    }
+}
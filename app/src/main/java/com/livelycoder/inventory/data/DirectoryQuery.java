@@ -0,0 +1,262 @@
+package com.livelycoder.inventory.data;
+
+import android.net.Uri;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the query parameters of an inventory directory URI into a selection and order that
+ * SQLite can serve from one of the inventory indexes. Combinations that would need a full
+ * table scan or a temporary sort are rejected instead of silently running slowly.
+ */
+final class DirectoryQuery {
+    /**
+     * Selection of the low stock query. It matches the partial index's WHERE clause exactly,
+     * so SQLite walks only the index's rows.
+     */
+    static final String LOW_STOCK_SELECTION =
+            InventoryEntry.COLUMN_QUANTITY + " <= " + InventoryEntry.COLUMN_REORDER_THRESHOLD;
+
+    /**
+     * Order of the low stock query, the order of the partial index
+     */
+    static final String LOW_STOCK_ORDER = InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry._ID;
+
+    /**
+     * Source of the query parameters, the URI on the device
+     */
+    interface Parameters {
+        /**
+         * @return the decoded value of the parameter, or null if it is missing
+         */
+        String get(String name);
+    }
+
+    final String selection;
+    final String[] selectionArgs;
+    final String sortOrder;
+    final String limit;
+
+    private DirectoryQuery(String selection, String[] selectionArgs, String sortOrder, String limit) {
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+        this.limit = limit;
+    }
+
+    /**
+     * Builds the query for a directory URI
+     *
+     * @param uri           directory URI, possibly carrying sort and prefix parameters
+     * @param selection     passed by the caller
+     * @param selectionArgs passed by the caller
+     * @param sortOrder     passed by the caller, must be null when a sort parameter is used
+     * @return the combined query
+     */
+    static DirectoryQuery from(final Uri uri, String selection, String[] selectionArgs, String sortOrder) {
+        return from(new Parameters() {
+            @Override
+            public String get(String name) {
+                return uri.getQueryParameter(name);
+            }
+        }, uri, selection, selectionArgs, sortOrder);
+    }
+
+    /**
+     * Builds the query for a set of directory query parameters
+     *
+     * @param parameters    of the query
+     * @param source        the parameters came from, only used in error messages
+     * @param selection     passed by the caller
+     * @param selectionArgs passed by the caller
+     * @param sortOrder     passed by the caller, must be null when a sort parameter is used
+     * @return the combined query
+     */
+    static DirectoryQuery from(Parameters parameters, Object source, String selection,
+                               String[] selectionArgs, String sortOrder) {
+        String sort = parameters.get(InventoryEntry.QUERY_PARAMETER_SORT);
+        String namePrefix = parameters.get(InventoryEntry.QUERY_PARAMETER_NAME_PREFIX);
+        String supplierPrefix = parameters.get(InventoryEntry.QUERY_PARAMETER_SUPPLIER_PREFIX);
+
+        String limit = parameters.get(InventoryEntry.QUERY_PARAMETER_LIMIT);
+        if (limit != null && Integer.parseInt(limit) < 0) {
+            throw new IllegalArgumentException("Limit can't be negative : " + source);
+        }
+        String afterId = parameters.get(InventoryEntry.QUERY_PARAMETER_AFTER_ID);
+        String afterValue = parameters.get(InventoryEntry.QUERY_PARAMETER_AFTER_VALUE);
+
+        if (sort == null && namePrefix == null && supplierPrefix == null && afterId == null) {
+            return new DirectoryQuery(selection, selectionArgs, sortOrder, limit);
+        }
+
+        if (namePrefix != null && supplierPrefix != null) {
+            throw new IllegalArgumentException("Only one prefix filter is supported : " + source);
+        }
+
+        if (namePrefix != null) {
+            sort = requireSort(source, sort, InventoryEntry.SORT_PRODUCT_NAME);
+        } else if (supplierPrefix != null) {
+            sort = requireSort(source, sort, InventoryEntry.SORT_SUPPLIER_NAME);
+        }
+
+        if (sortOrder != null) {
+            throw new IllegalArgumentException("Sort order can't be combined with a sort parameter : " + source);
+        }
+
+        List<String> clauses = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        if (!isEmpty(selection)) {
+            clauses.add("(" + selection + ")");
+            if (selectionArgs != null) {
+                args.addAll(Arrays.asList(selectionArgs));
+            }
+        }
+
+        if (!isEmpty(namePrefix)) {
+            addPrefixRange(InventoryEntry.COLUMN_PRODUCT_NAME, " COLLATE NOCASE",
+                    lowerCaseAscii(namePrefix), clauses, args);
+        } else if (!isEmpty(supplierPrefix)) {
+            addPrefixRange(InventoryEntry.COLUMN_SUPPLIER_NAME, "", supplierPrefix, clauses, args);
+        }
+
+        if (afterId != null) {
+            addKeyset(source, sort, Long.parseLong(afterId), afterValue, clauses, args);
+        }
+
+        return new DirectoryQuery(
+                clauses.isEmpty() ? null : join(clauses),
+                args.isEmpty() ? null : args.toArray(new String[args.size()]),
+                sort == null ? InventoryEntry._ID : orderBy(source, sort),
+                limit
+        );
+    }
+
+    /**
+     * Restricts the query to rows ordered after (afterValue, afterId). The leading
+     * column >= value term is what lets SQLite start the index scan at the key, the OR only
+     * filters out the rows sharing the value that were already returned.
+     */
+    private static void addKeyset(Object source, String sort, long afterId, String afterValue,
+                                  List<String> clauses, List<String> args) {
+        if (sort == null) {
+            clauses.add(InventoryEntry._ID + " > ?");
+            args.add(String.valueOf(afterId));
+            return;
+        }
+
+        if (afterValue == null) {
+            throw new IllegalArgumentException("Sorted pagination requires "
+                    + InventoryEntry.QUERY_PARAMETER_AFTER_VALUE + " : " + source);
+        }
+
+        String column;
+        String collation = "";
+        switch (sort) {
+            case InventoryEntry.SORT_PRODUCT_NAME:
+                column = InventoryEntry.COLUMN_PRODUCT_NAME;
+                collation = " COLLATE NOCASE";
+                break;
+            case InventoryEntry.SORT_SUPPLIER_NAME:
+                column = InventoryEntry.COLUMN_SUPPLIER_NAME;
+                break;
+            case InventoryEntry.SORT_QUANTITY:
+                column = InventoryEntry.COLUMN_QUANTITY;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sort " + sort + " : " + source);
+        }
+
+        clauses.add(column + " >= ?" + collation);
+        clauses.add("(" + column + " > ?" + collation + " OR " + InventoryEntry._ID + " > ?)");
+        args.add(afterValue);
+        args.add(afterValue);
+        args.add(String.valueOf(afterId));
+    }
+
+    private static String requireSort(Object source, String sort, String expected) {
+        if (sort != null && !sort.equals(expected)) {
+            throw new IllegalArgumentException("Prefix filter requires sort " + expected + " : " + source);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the ORDER BY clause for a sort parameter. The collation and the trailing _ID
+     * match the index, so SQLite walks the index instead of sorting.
+     */
+    private static String orderBy(Object source, String sort) {
+        switch (sort) {
+            case InventoryEntry.SORT_PRODUCT_NAME:
+                return InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE, " + InventoryEntry._ID;
+            case InventoryEntry.SORT_SUPPLIER_NAME:
+                return InventoryEntry.COLUMN_SUPPLIER_NAME + ", " + InventoryEntry._ID;
+            case InventoryEntry.SORT_QUANTITY:
+                return InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry._ID;
+            default:
+                throw new IllegalArgumentException("Unsupported sort " + sort + " : " + source);
+        }
+    }
+
+    /**
+     * Adds column >= prefix AND column < successor(prefix). Unlike LIKE this is always a range
+     * scan on the index, whatever characters the prefix contains.
+     */
+    private static void addPrefixRange(String column, String collation, String prefix,
+                                       List<String> clauses, List<String> args) {
+        clauses.add(column + " >= ?" + collation);
+        args.add(prefix);
+
+        String upperBound = successor(prefix, !collation.isEmpty());
+        if (upperBound != null) {
+            clauses.add(column + " < ?" + collation);
+            args.add(upperBound);
+        }
+    }
+
+    /**
+     * Returns the smallest string greater than every string starting with prefix, or null if
+     * there is none. Under NOCASE upper case letters compare as lower case, so an incremented
+     * '@' has to skip past them.
+     */
+    private static String successor(String prefix, boolean noCase) {
+        StringBuilder builder = new StringBuilder(prefix);
+        for (int i = builder.length() - 1; i >= 0; i--) {
+            char c = builder.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                builder.setCharAt(i, noCase && c == '@' ? '[' : (char) (c + 1));
+                builder.setLength(i + 1);
+                return builder.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * SQLite's NOCASE only folds ASCII letters, so the bounds are folded the same way.
+     */
+    private static String lowerCaseAscii(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] = (char) (chars[i] + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static String join(List<String> clauses) {
+        StringBuilder builder = new StringBuilder(clauses.get(0));
+        for (int i = 1; i < clauses.size(); i++) {
+            builder.append(" AND ").append(clauses.get(i));
+        }
+        return builder.toString();
+    }
+}
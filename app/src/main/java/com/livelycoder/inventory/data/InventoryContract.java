@@ -11,6 +11,139 @@ public final class InventoryContract {
 
     public static final String PATH_INVENTORY = "inventory";
 
+    public static final String PATH_SEARCH = "search";
+
+    public static final String PATH_EXPORT = "export";
+
+    public static final String PATH_SUMMARY = "summary";
+
+    public static final String PATH_MOVEMENTS = "movements";
+
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    public static final String PATH_SKU = "sku";
+
+    public static final String PATH_STOCK = "stock";
+
+    public static final String PATH_LOCATIONS = "locations";
+
+    public static final String PATH_CHANGES = "changes";
+
+    public static final String PATH_TOMBSTONES = "tombstones";
+
+    /**
+     * Provider method that atomically adds a signed delta to a product's quantity.
+     * The product id is passed as the call argument and the delta as {@link #EXTRA_DELTA}.
+     * The result bundle holds the new quantity under {@link #EXTRA_QUANTITY}, or no quantity
+     * when the product doesn't exist or the adjustment would make the stock negative.
+     */
+    public static final String METHOD_ADJUST_QUANTITY = "adjust_quantity";
+
+    public static final String EXTRA_DELTA = "delta";
+
+    public static final String EXTRA_QUANTITY = "quantity";
+
+    /**
+     * Provider method selling scanned items: looks a product up by its SKU, passed as the call
+     * argument, and takes {@link #EXTRA_COUNT} items off its stock, one by default, in a single
+     * transaction. The result bundle holds the product's {@link #EXTRA_ID} unless the SKU is
+     * unknown, and the new quantity under {@link #EXTRA_QUANTITY} unless the sale was
+     * rejected for lack of stock.
+     */
+    public static final String METHOD_SELL_SKU = "sell_sku";
+
+    public static final String EXTRA_COUNT = "count";
+
+    public static final String EXTRA_ID = "id";
+
+    /**
+     * Provider method returning the counters of the single product row cache under
+     * {@link #EXTRA_CACHE_HITS}, {@link #EXTRA_CACHE_MISSES} and {@link #EXTRA_CACHE_EVICTIONS}.
+     */
+    public static final String METHOD_CACHE_STATS = "cache_stats";
+
+    public static final String EXTRA_CACHE_HITS = "cache_hits";
+
+    public static final String EXTRA_CACHE_MISSES = "cache_misses";
+
+    public static final String EXTRA_CACHE_EVICTIONS = "cache_evictions";
+
+    /**
+     * Provider method folding the stock movements older than a cutoff into per-product
+     * snapshots. The cutoff, in milliseconds since the epoch, is passed as the call argument;
+     * without one movements older than 30 days are compacted. The result bundle holds the
+     * number of movements removed under {@link #EXTRA_COMPACTED}.
+     */
+    public static final String METHOD_COMPACT_MOVEMENTS = "compact_movements";
+
+    public static final String EXTRA_COMPACTED = "compacted";
+
+    /**
+     * Provider method removing the change feed entries older than a cutoff. The cutoff, in
+     * milliseconds since the epoch, is passed as the call argument; without one entries older
+     * than 7 days are removed. The result bundle holds the number of entries removed under
+     * {@link #EXTRA_PRUNED}.
+     */
+    public static final String METHOD_PRUNE_CHANGES = "prune_changes";
+
+    public static final String EXTRA_PRUNED = "pruned";
+
+    /**
+     * Provider method returning the provider's call counters. The result bundle holds a long
+     * array for every operation and URI that was called, keyed "operation:uri", e.g.
+     * "query:product". The arrays are indexed by {@link #METRICS_CALLS},
+     * {@link #METRICS_ERRORS}, {@link #METRICS_ROWS} and {@link #METRICS_TOTAL_MICROS},
+     * followed by a latency histogram of {@link #METRICS_BUCKETS} buckets from
+     * {@link #METRICS_FIRST_BUCKET}. Bucket i counts calls faster than 2^i microseconds that
+     * didn't fit the bucket before; the last one also counts all slower calls.
+     */
+    public static final String METHOD_PROVIDER_METRICS = "provider_metrics";
+
+    public static final int METRICS_CALLS = 0;
+
+    public static final int METRICS_ERRORS = 1;
+
+    /**
+     * Rows changed by writes. Queries don't count their rows, since that would mean filling
+     * the cursor.
+     */
+    public static final int METRICS_ROWS = 2;
+
+    public static final int METRICS_TOTAL_MICROS = 3;
+
+    public static final int METRICS_FIRST_BUCKET = 4;
+
+    public static final int METRICS_BUCKETS = 24;
+
+    /**
+     * Provider method returning a chunk of the inventory in _ID order as parallel primitive
+     * arrays: {@link #EXTRA_IDS}, {@link #EXTRA_PRICES} in minor units and
+     * {@link #EXTRA_QUANTITIES}. The call argument is the _ID to continue after, null to
+     * start from the beginning; pass back {@link #EXTRA_LAST_ID} to read the next chunk.
+     * {@link #EXTRA_LIMIT} optionally sets the chunk size, up to {@link #MAX_COLUMNS_CHUNK}.
+     * A chunk shorter than asked for is the last one.
+     */
+    public static final String METHOD_READ_COLUMNS = "read_columns";
+
+    public static final String EXTRA_LIMIT = "limit";
+
+    public static final String EXTRA_IDS = "ids";
+
+    public static final String EXTRA_PRICES = "prices";
+
+    public static final String EXTRA_QUANTITIES = "quantities";
+
+    /**
+     * _ID of the last row in the chunk, absent when the chunk is empty
+     */
+    public static final String EXTRA_LAST_ID = "last_id";
+
+    /**
+     * Largest chunk {@link #METHOD_READ_COLUMNS} returns, keeping the bundle well under the
+     * binder transaction limit
+     */
+    public static final int MAX_COLUMNS_CHUNK = 20000;
+
     private InventoryContract() {
         // Make this class uninstantiable
     }
@@ -29,9 +162,506 @@ public final class InventoryContract {
 
         public static final String _ID = BaseColumns._ID;
         public static final String COLUMN_PRODUCT_NAME = "product_name";
+        /**
+         * Price in integer minor units, e.g. cents. Use {@link Prices} to convert.
+         */
         public static final String COLUMN_PRICE = "price";
+        /**
+         * Stock at the store, {@link LocationEntry#STORE_ID}. The store row of
+         * {@link StockEntry} mirrors it.
+         */
         public static final String COLUMN_QUANTITY = "quantity";
+        /**
+         * Stock across every location, kept up to date by triggers on {@link StockEntry}.
+         * Read only.
+         */
+        public static final String COLUMN_TOTAL_QUANTITY = "total_quantity";
         public static final String COLUMN_SUPPLIER_NAME = "supplier_name";
         public static final String COLUMN_SUPPLIER_PHONE_NUMBER = "supplier_phone_number";
+        /**
+         * Quantity at or below which the product needs reordering, 0 by default
+         */
+        public static final String COLUMN_REORDER_THRESHOLD = "reorder_threshold";
+        /**
+         * Stock keeping unit or barcode, unique when set, null by default
+         */
+        public static final String COLUMN_SKU = "sku";
+        /**
+         * Id of the product shared by every device, assigned on insert when not given
+         */
+        public static final String COLUMN_SYNC_ID = "sync_id";
+        /**
+         * Backend version the product was last synced at, 0 if it never was. Negative while
+         * a sync batch moves the product's SKU to another product.
+         */
+        public static final String COLUMN_SYNC_VERSION = "sync_version";
+        /**
+         * Quantity as of the last sync, which local sales and restocks are counted from
+         */
+        public static final String COLUMN_SYNC_QUANTITY = "sync_quantity";
+        /**
+         * 1 when the product changed since the last sync, set by a trigger on every change
+         * that doesn't also move {@link #COLUMN_SYNC_VERSION}
+         */
+        public static final String COLUMN_SYNC_DIRTY = "sync_dirty";
+        /**
+         * Time of the last local change in milliseconds since the epoch, set along with
+         * {@link #COLUMN_SYNC_DIRTY}
+         */
+        public static final String COLUMN_MODIFIED_TIME = "modified_time";
+        /**
+         * Sync device id of the device that made the last change, null for this device
+         */
+        public static final String COLUMN_MODIFIED_BY = "modified_by";
+
+        public static final String INDEX_PRODUCT_NAME = "inventory_product_name_index";
+        public static final String INDEX_SUPPLIER_NAME = "inventory_supplier_name_index";
+        public static final String INDEX_QUANTITY = "inventory_quantity_index";
+        public static final String INDEX_SKU = "inventory_sku_index";
+        public static final String INDEX_SYNC_ID = "inventory_sync_id_index";
+        public static final String INDEX_SYNC_DIRTY = "inventory_sync_dirty_index";
+
+        /**
+         * Partial index holding only the products at or below their reorder threshold
+         */
+        public static final String INDEX_LOW_STOCK = "inventory_low_stock_index";
+
+        /**
+         * Products whose quantity is at or below their {@link #COLUMN_REORDER_THRESHOLD}, lowest
+         * quantity first. Takes an optional {@link #QUERY_PARAMETER_LIMIT}.
+         */
+        public static final Uri LOW_STOCK_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
+        /**
+         * Base of the URIs looking a product up by its {@link #COLUMN_SKU}
+         */
+        public static final Uri SKU_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SKU);
+
+        /**
+         * Builds the URI of the product with the given SKU
+         */
+        public static Uri buildSkuUri(String sku) {
+            return Uri.withAppendedPath(SKU_URI, sku);
+        }
+
+        /**
+         * Full-text index over product and supplier names, kept in sync by triggers.
+         * Its docid is the _ID of the product.
+         */
+        public static final String FTS_TABLE_NAME = "inventory_fts";
+
+        /**
+         * Ranked full-text search over product and supplier names. The search terms go in
+         * {@link #QUERY_PARAMETER_SEARCH}, every term is matched as a prefix, and products
+         * matching on their name come before those matching only on their supplier.
+         */
+        public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        public static final String QUERY_PARAMETER_SEARCH = "q";
+
+        /**
+         * Query parameter capping the number of rows returned
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Keyset pagination on {@link #CONTENT_URI}: only rows ordered after the row with this
+         * _ID are returned. When a sort parameter is used {@link #QUERY_PARAMETER_AFTER_VALUE}
+         * must hold that row's value of the sort column. Without a sort parameter rows are
+         * returned in _ID order.
+         */
+        public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+
+        public static final String QUERY_PARAMETER_AFTER_VALUE = "after_value";
+
+        /**
+         * Streams the whole inventory through {@link ContentResolver#openInputStream(Uri)}.
+         * The format is chosen with {@link #QUERY_PARAMETER_FORMAT} and the stream is gzip
+         * compressed when {@link #QUERY_PARAMETER_GZIP} is true.
+         */
+        public static final Uri EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+
+        public static final String QUERY_PARAMETER_FORMAT = "format";
+
+        public static final String QUERY_PARAMETER_GZIP = "gzip";
+
+        /**
+         * CSV with a header row naming the columns, readable by the catalog importer. The default.
+         */
+        public static final String FORMAT_CSV = "csv";
+
+        /**
+         * Big-endian binary: the int {@link #EXPORT_BINARY_MAGIC}, the int
+         * {@link #EXPORT_BINARY_VERSION}, then for every product a byte 1 followed by
+         * long _ID, modified UTF-8 name, long price in minor units, int quantity, modified
+         * UTF-8 supplier name, long supplier phone number, the SKU as a byte 1 and modified
+         * UTF-8 or a byte 0 when there is none, int reorder threshold and int total quantity.
+         * A byte 0 ends the stream.
+         */
+        public static final String FORMAT_BINARY = "binary";
+
+        public static final int EXPORT_BINARY_MAGIC = 0x494e5631;
+
+        public static final int EXPORT_BINARY_VERSION = 3;
+
+        public static final String EXPORT_CSV_TYPE = "text/csv";
+
+        public static final String EXPORT_BINARY_TYPE = "application/octet-stream";
+
+        public static final String EXPORT_GZIP_TYPE = "application/gzip";
+
+        /**
+         * Query parameter on {@link #CONTENT_URI} selecting one of the SORT_* orders.
+         * Each order is served straight from an index, with _ID breaking ties.
+         */
+        public static final String QUERY_PARAMETER_SORT = "sort";
+
+        /**
+         * Case insensitive product name order
+         */
+        public static final String SORT_PRODUCT_NAME = "product_name";
+
+        /**
+         * Supplier name order
+         */
+        public static final String SORT_SUPPLIER_NAME = "supplier_name";
+
+        /**
+         * Ascending quantity order
+         */
+        public static final String SORT_QUANTITY = "quantity";
+
+        /**
+         * Query parameter on {@link #CONTENT_URI} keeping only products whose name starts with
+         * the given value, ignoring ASCII case. Implies {@link #SORT_PRODUCT_NAME}.
+         */
+        public static final String QUERY_PARAMETER_NAME_PREFIX = "name_prefix";
+
+        /**
+         * Query parameter on {@link #CONTENT_URI} keeping only products whose supplier name
+         * starts with the given value. Implies {@link #SORT_SUPPLIER_NAME}.
+         */
+        public static final String QUERY_PARAMETER_SUPPLIER_PREFIX = "supplier_prefix";
+    }
+
+    /**
+     * Single row of inventory totals, kept up to date by triggers on the inventory table so
+     * reading it costs the same whatever the size of the inventory. Quantities are the
+     * products' {@link InventoryEntry#COLUMN_TOTAL_QUANTITY}, the stock at every location.
+     */
+    public static final class SummaryEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_SUMMARY);
+
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_SUMMARY;
+
+        public static final String TABLE_NAME = "inventory_summary";
+
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * Sum of price * total quantity over all products, in minor units
+         */
+        public static final String COLUMN_TOTAL_VALUE = "total_value";
+
+        /**
+         * Number of products
+         */
+        public static final String COLUMN_PRODUCT_COUNT = "product_count";
+
+        /**
+         * Sum of the total quantities of all products
+         */
+        public static final String COLUMN_TOTAL_QUANTITY = "total_quantity";
+
+        /**
+         * Number of products with no stock left at any location
+         */
+        public static final String COLUMN_OUT_OF_STOCK_COUNT = "out_of_stock_count";
+
+        /**
+         * _ID of the only row
+         */
+        static final long ROW_ID = 1;
+    }
+
+    /**
+     * Append-only log of every change to a product's quantity, written by triggers on the
+     * inventory table in the same transaction as the change. Rows are never updated; old ones
+     * are only removed by {@link #METHOD_COMPACT_MOVEMENTS}, which keeps the quantity they
+     * led to in {@link SnapshotEntry}.
+     */
+    public static final class MovementEntry implements BaseColumns {
+
+        public static final String CONTENT_DIR_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS;
+
+        public static final String TABLE_NAME = "inventory_movements";
+
+        public static final String INDEX_PRODUCT_TIME = "inventory_movements_product_time";
+
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * _ID of the product that changed
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Signed change to the quantity. A new product moves in its whole quantity, and a
+         * deleted one moves it all out.
+         */
+        public static final String COLUMN_DELTA = "delta";
+
+        /**
+         * Quantity after the change
+         */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Time of the change in milliseconds since the epoch
+         */
+        public static final String COLUMN_TIME = "time";
+
+        /**
+         * Query parameter on a movements URI keeping movements at or after the given time
+         */
+        public static final String QUERY_PARAMETER_SINCE = "since";
+
+        /**
+         * Query parameter on a movements URI keeping movements before the given time
+         */
+        public static final String QUERY_PARAMETER_UNTIL = "until";
+
+        /**
+         * Returns the URI of the movements of a product, oldest first
+         */
+        public static Uri buildUri(long productId) {
+            return InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(productId))
+                    .appendPath(PATH_MOVEMENTS)
+                    .build();
+        }
+    }
+
+    /**
+     * Feed of the changes to the inventory table, appended to by triggers in the same
+     * transaction as the change. Its _ID is the sequence number of the change, and only ever
+     * grows.
+     * <p>
+     * {@link #buildUri(long)} returns one row per product changed after a sequence number, at
+     * its first change after it and in sequence order: the product's _ID under
+     * {@link #COLUMN_PRODUCT_ID} and what happened to it since under {@link #COLUMN_OP}.
+     * A consumer keeps the largest _ID it has read and passes it back to read the next changes,
+     * which may report a product again if it changed more than once. Stock moving at any
+     * location counts as a change of the product.
+     * When changes after the given number have already been pruned, the only row is an
+     * {@link #OP_RESET}: the consumer must reload the whole inventory, then continue from that
+     * row's _ID.
+     */
+    public static final class ChangeEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_CHANGES);
+
+        public static final String CONTENT_DIR_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_CHANGES;
+
+        public static final String TABLE_NAME = "inventory_changes";
+
+        public static final String INDEX_PRODUCT_OP = "inventory_changes_product_op_index";
+
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * _ID of the product that changed, null for {@link #OP_RESET}
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * One of the OP_* codes
+         */
+        public static final String COLUMN_OP = "op";
+
+        /**
+         * Time of the change in milliseconds since the epoch
+         */
+        public static final String COLUMN_TIME = "time";
+
+        /**
+         * The changes asked for were pruned; reload everything
+         */
+        public static final int OP_RESET = 0;
+
+        /**
+         * The product was added
+         */
+        public static final int OP_INSERT = 1;
+
+        /**
+         * The product existed before and was changed
+         */
+        public static final int OP_UPDATE = 2;
+
+        /**
+         * The product was deleted
+         */
+        public static final int OP_DELETE = 3;
+
+        /**
+         * Query parameter on {@link #CONTENT_URI} keeping the changes after the given _ID
+         */
+        public static final String QUERY_PARAMETER_SINCE = "since";
+
+        /**
+         * Returns the URI of the changes after a sequence number, 0 for all of them. Takes an
+         * optional {@link InventoryEntry#QUERY_PARAMETER_LIMIT}.
+         */
+        public static Uri buildUri(long since) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, String.valueOf(since))
+                    .build();
+        }
+    }
+
+    /**
+     * Products deleted locally after they were synced, written by a trigger so the deletion
+     * can be pushed. Removed once the backend has it.
+     */
+    public static final class TombstoneEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_TOMBSTONES);
+
+        public static final String CONTENT_DIR_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_TOMBSTONES;
+
+        public static final String TABLE_NAME = "inventory_tombstones";
+
+        /**
+         * {@link InventoryEntry#COLUMN_SYNC_ID} of the deleted product, the primary key
+         */
+        public static final String COLUMN_SYNC_ID = "sync_id";
+
+        /**
+         * Time of the deletion in milliseconds since the epoch
+         */
+        public static final String COLUMN_TIME = "time";
+
+        private TombstoneEntry() {
+        }
+    }
+
+    /**
+     * Places stock is kept. The store, where sales come from, always exists.
+     */
+    public static final class LocationEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_LOCATIONS);
+
+        public static final String CONTENT_DIR_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        public static final String TABLE_NAME = "inventory_locations";
+
+        public static final String _ID = BaseColumns._ID;
+
+        public static final String COLUMN_NAME = "name";
+
+        /**
+         * _ID of the store, whose stock is {@link InventoryEntry#COLUMN_QUANTITY}
+         */
+        public static final long STORE_ID = 1;
+
+        /**
+         * Returns the URI of the stock held at a location: one row per product stocked there
+         * with its _ID, {@link InventoryEntry#COLUMN_PRODUCT_NAME} and
+         * {@link StockEntry#COLUMN_QUANTITY}, in product name order
+         */
+        public static Uri buildStockUri(long locationId) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(locationId))
+                    .appendPath(PATH_STOCK)
+                    .build();
+        }
+    }
+
+    /**
+     * Quantity of a product at a location, keyed by both. Triggers keep the store row equal to
+     * the product's {@link InventoryEntry#COLUMN_QUANTITY} and every change reflected in its
+     * {@link InventoryEntry#COLUMN_TOTAL_QUANTITY}.
+     * <p>
+     * {@link #buildUri(long)} lists a product's stock per location, with the location's
+     * {@link LocationEntry#COLUMN_NAME}; inserting there with a {@link #COLUMN_LOCATION_ID}
+     * and a {@link #COLUMN_QUANTITY} stocks the product at a new location.
+     * {@link #buildUri(long, long)} addresses one location, whose quantity can be updated, or
+     * deleted unless it is the store.
+     */
+    public static final class StockEntry {
+
+        public static final String CONTENT_DIR_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        public static final String TABLE_NAME = "inventory_stock";
+
+        public static final String INDEX_LOCATION = "inventory_stock_location_index";
+
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        public static final String COLUMN_LOCATION_ID = "location_id";
+
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Returns the URI of the stock of a product at every location
+         */
+        public static Uri buildUri(long productId) {
+            return InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(productId))
+                    .appendPath(PATH_STOCK)
+                    .build();
+        }
+
+        /**
+         * Returns the URI of the stock of a product at one location
+         */
+        public static Uri buildUri(long productId, long locationId) {
+            return buildUri(productId).buildUpon()
+                    .appendPath(String.valueOf(locationId))
+                    .build();
+        }
+
+        private StockEntry() {
+        }
+    }
+
+    /**
+     * Quantity of every product as of its last compacted movement
+     */
+    public static final class SnapshotEntry {
+
+        public static final String TABLE_NAME = "inventory_snapshots";
+
+        /**
+         * _ID of the product, the primary key
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Time of the last compacted movement
+         */
+        public static final String COLUMN_TIME = "time";
+
+        /**
+         * _ID of the last compacted movement
+         */
+        public static final String COLUMN_MOVEMENT_ID = "movement_id";
+
+        private SnapshotEntry() {
+        }
     }
 }
@@ -1,33 +1,120 @@
 package com.livelycoder.inventory.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
-import static com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class InventoryDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "inventory.db";
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 10;
+
+    /**
+     * Page size in bytes. Only takes effect when the database file is first created.
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    /**
+     * Page cache size per connection. Negative values are in KiB, so this is 2MB.
+     */
+    private static final int CACHE_SIZE_KIB = -2048;
+
+    /**
+     * Prepared statements kept per connection
+     */
+    private static final int MAX_SQL_CACHE_SIZE = 50;
 
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, null);
+    }
+
+    /**
+     * @param factory to create cursors with, null for the default
+     */
+    InventoryDbHelper(Context context, SQLiteDatabase.CursorFactory factory) {
+        super(context, DATABASE_NAME, factory, DATABASE_VERSION);
+    }
+
+    /**
+     * Sets the connection up before the schema is created or upgraded. Write-ahead logging lets
+     * the loaders keep reading while a write is in progress, and NORMAL synchronous mode is safe
+     * in WAL mode while avoiding an fsync on every commit.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA page_size = " + PAGE_SIZE);
+        db.enableWriteAheadLogging();
+        db.execSQL("PRAGMA cache_size = " + CACHE_SIZE_KIB);
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        // Room for every fixed-shape statement the provider issues, so none of them is
+        // prepared twice on the same connection
+        db.setMaxSqlCacheSize(MAX_SQL_CACHE_SIZE);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // onConfigure is only called from Jelly Bean onwards
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL(
-                "CREATE TABLE " + InventoryEntry.TABLE_NAME + "("
-                        + InventoryEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
-                        + InventoryEntry.COLUMN_PRODUCT_NAME + " TINYTEXT NOT NULL,"
-                        + InventoryEntry.COLUMN_PRICE + " FLOAT NOT NULL,"
-                        + InventoryEntry.COLUMN_QUANTITY + " INT NOT NULL,"
-                        + InventoryEntry.COLUMN_SUPPLIER_NAME + " TINYTEXT NOT NULL,"
-                        + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + " BIGINT NOT NULL);"
-        );
+        // A fresh database starts from the version 1 schema and goes through the same steps
+        // as an upgraded one, so both end up with an identical schema.
+        MigrationDatabase database = wrap(db);
+        Migrations.createVersion1(database);
+        Migrations.migrate(database, 1, DATABASE_VERSION);
     }
 
+    /**
+     * Runs the migrations for every version after oldVersion up to newVersion. SQLiteOpenHelper
+     * already wraps this in a transaction, so a failing step leaves the database untouched.
+     */
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Migrations.migrate(wrap(db), oldVersion, newVersion);
+    }
+
+    private static MigrationDatabase wrap(final SQLiteDatabase db) {
+        return new MigrationDatabase() {
+            @Override
+            public void execSQL(String sql) {
+                db.execSQL(sql);
+            }
+
+            @Override
+            public void execSQL(String sql, Object[] bindArgs) {
+                db.execSQL(sql, bindArgs);
+            }
+
+            @Override
+            public List<String> queryStrings(String sql, String[] selectionArgs) {
+                List<String> values = new ArrayList<>();
+                Cursor cursor = db.rawQuery(sql, selectionArgs);
+                try {
+                    while (cursor.moveToNext()) {
+                        values.add(cursor.getString(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                return values;
+            }
+
+            @Override
+            public int sdkVersion() {
+                return Build.VERSION.SDK_INT;
+            }
+        };
     }
 }
@@ -0,0 +1,232 @@
+package com.livelycoder.inventory.data;
+
+import android.content.ContentProvider;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the inventory table into the pipe handed out for the export URI. The table is read
+ * in _ID order, one chunk at a time, so only one chunk is ever held in memory.
+ */
+final class InventoryExporter implements ContentProvider.PipeDataWriter<Void> {
+    private static final String LOG_TAG = InventoryExporter.class.getSimpleName();
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COLUMNS = new String[]{
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+            InventoryEntry.COLUMN_SKU,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_TOTAL_QUANTITY
+    };
+
+    private static final int ID = 0;
+    private static final int PRODUCT_NAME = 1;
+    private static final int PRICE = 2;
+    private static final int QUANTITY = 3;
+    private static final int SUPPLIER_NAME = 4;
+    private static final int SUPPLIER_PHONE_NUMBER = 5;
+    private static final int SKU = 6;
+    private static final int REORDER_THRESHOLD = 7;
+    private static final int TOTAL_QUANTITY = 8;
+
+    private final InventoryDbHelper dbHelper;
+
+    InventoryExporter(InventoryDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Returns the MIME type of the stream for an export URI
+     */
+    static String getType(Uri uri) {
+        if (uri.getBooleanQueryParameter(InventoryEntry.QUERY_PARAMETER_GZIP, false)) {
+            return InventoryEntry.EXPORT_GZIP_TYPE;
+        }
+        return InventoryEntry.FORMAT_BINARY.equals(uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_FORMAT))
+                ? InventoryEntry.EXPORT_BINARY_TYPE
+                : InventoryEntry.EXPORT_CSV_TYPE;
+    }
+
+    @Override
+    public void writeDataToPipe(@NonNull ParcelFileDescriptor output, @NonNull Uri uri,
+                                @NonNull String mimeType, @Nullable Bundle opts, @Nullable Void args) {
+        boolean binary = InventoryEntry.FORMAT_BINARY.equals(
+                uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_FORMAT));
+        boolean gzip = uri.getBooleanQueryParameter(InventoryEntry.QUERY_PARAMETER_GZIP, false);
+
+        OutputStream stream = new FileOutputStream(output.getFileDescriptor());
+        try {
+            if (gzip) {
+                stream = new GZIPOutputStream(stream, STREAM_BUFFER_SIZE);
+            } else {
+                stream = new BufferedOutputStream(stream, STREAM_BUFFER_SIZE);
+            }
+
+            if (binary) {
+                writeBinary(new DataOutputStream(stream));
+            } else {
+                writeCsv(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
+            }
+        } catch (IOException e) {
+            // Usually the reader closing its end of the pipe early
+            Log.w(LOG_TAG, "Export of " + uri + " stopped", e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to close export pipe", e);
+            }
+        }
+    }
+
+    private void writeCsv(Writer writer) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i != 0) {
+                writer.write(',');
+            }
+            writer.write(COLUMNS[i]);
+        }
+        writer.write('\n');
+
+        long lastId = -1;
+        while (true) {
+            Cursor cursor = queryChunk(lastId);
+            try {
+                if (!cursor.moveToFirst()) {
+                    break;
+                }
+                do {
+                    lastId = cursor.getLong(ID);
+                    writer.write(Long.toString(lastId));
+                    writer.write(',');
+                    writeCsvField(writer, cursor.getString(PRODUCT_NAME));
+                    writer.write(',');
+                    writer.write(Prices.format(cursor.getLong(PRICE)));
+                    writer.write(',');
+                    writer.write(Integer.toString(cursor.getInt(QUANTITY)));
+                    writer.write(',');
+                    writeCsvField(writer, cursor.getString(SUPPLIER_NAME));
+                    writer.write(',');
+                    writer.write(Long.toString(cursor.getLong(SUPPLIER_PHONE_NUMBER)));
+                    writer.write(',');
+                    writeCsvField(writer, cursor.getString(SKU));
+                    writer.write(',');
+                    writer.write(Integer.toString(cursor.getInt(REORDER_THRESHOLD)));
+                    writer.write(',');
+                    writer.write(Integer.toString(cursor.getInt(TOTAL_QUANTITY)));
+                    writer.write('\n');
+                } while (cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Writes the layout documented on {@link InventoryEntry#FORMAT_BINARY}
+     */
+    private void writeBinary(DataOutputStream out) throws IOException {
+        out.writeInt(InventoryEntry.EXPORT_BINARY_MAGIC);
+        out.writeInt(InventoryEntry.EXPORT_BINARY_VERSION);
+
+        long lastId = -1;
+        while (true) {
+            Cursor cursor = queryChunk(lastId);
+            try {
+                if (!cursor.moveToFirst()) {
+                    break;
+                }
+                do {
+                    lastId = cursor.getLong(ID);
+                    out.writeByte(1);
+                    out.writeLong(lastId);
+                    out.writeUTF(cursor.getString(PRODUCT_NAME));
+                    out.writeLong(cursor.getLong(PRICE));
+                    out.writeInt(cursor.getInt(QUANTITY));
+                    out.writeUTF(cursor.getString(SUPPLIER_NAME));
+                    out.writeLong(cursor.getLong(SUPPLIER_PHONE_NUMBER));
+                    if (cursor.isNull(SKU)) {
+                        out.writeByte(0);
+                    } else {
+                        out.writeByte(1);
+                        out.writeUTF(cursor.getString(SKU));
+                    }
+                    out.writeInt(cursor.getInt(REORDER_THRESHOLD));
+                    out.writeInt(cursor.getInt(TOTAL_QUANTITY));
+                } while (cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+        }
+        out.writeByte(0);
+        out.flush();
+    }
+
+    /**
+     * Reads the chunk of rows following lastId in _ID order
+     */
+    private Cursor queryChunk(long lastId) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        return database.query(
+                InventoryEntry.TABLE_NAME,
+                COLUMNS,
+                InventoryEntry._ID + " > ?",
+                new String[]{Long.toString(lastId)},
+                null,
+                null,
+                InventoryEntry._ID,
+                Integer.toString(CHUNK_SIZE)
+        );
+    }
+}
@@ -1,22 +1,82 @@
 package com.livelycoder.inventory.data;
 
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.livelycoder.inventory.BuildConfig;
+import com.livelycoder.inventory.R;
+import com.livelycoder.inventory.data.InventoryContract.ChangeEntry;
 import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.InventoryContract.LocationEntry;
+import com.livelycoder.inventory.data.InventoryContract.MovementEntry;
+import com.livelycoder.inventory.data.InventoryContract.SnapshotEntry;
+import com.livelycoder.inventory.data.InventoryContract.StockEntry;
+import com.livelycoder.inventory.data.InventoryContract.SummaryEntry;
+import com.livelycoder.inventory.data.InventoryContract.TombstoneEntry;
+
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class InventoryProvider extends ContentProvider {
     private static final String LOG_TAG = InventoryProvider.class.getSimpleName();
     private InventoryDbHelper dbHelper;
 
+    private ChangeNotifier changeNotifier;
+
+    /**
+     * Logs operations over budget in debug builds, null otherwise
+     */
+    private SlowQueryLog slowQueryLog;
+
+    /**
+     * Estimated bytes of product rows kept for single product queries
+     */
+    private static final int PRODUCT_CACHE_BYTES = 256 * 1024;
+
+    private final ProductCache productCache = new ProductCache(PRODUCT_CACHE_BYTES);
+
+    /**
+     * Names of the URI match codes from INVENTORY on, for the metrics. Keep in step with the
+     * codes below.
+     */
+    private static final String[] URI_NAMES = new String[]{
+            "inventory", "product", "search", "export", "summary", "movements", "low_stock", "sku",
+            "locations", "product_stock", "stock", "location_stock", "changes", "tombstones"
+    };
+
+    private final ProviderMetrics metrics = new ProviderMetrics(INVENTORY, URI_NAMES);
+
+    /**
+     * Compiled single product statements, shared by the binder threads
+     */
+    private ProductStatements statements;
+
     /**
      * URI matcher code for the content URI for the inventory table
      */
@@ -27,6 +87,116 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final int PRODUCT_ID = 101;
 
+    /**
+     * URI matcher code for the full-text search URI
+     */
+    private static final int SEARCH = 102;
+
+    /**
+     * URI matcher code for the export stream URI
+     */
+    private static final int EXPORT = 103;
+
+    /**
+     * URI matcher code for the inventory summary row
+     */
+    private static final int SUMMARY = 104;
+
+    /**
+     * URI matcher code for the stock movements of a product
+     */
+    private static final int MOVEMENTS = 105;
+
+    /**
+     * URI matcher code for the low stock products
+     */
+    private static final int LOW_STOCK = 106;
+
+    /**
+     * URI matcher code for a product looked up by its SKU
+     */
+    private static final int SKU = 107;
+
+    /**
+     * URI matcher code for the stock locations
+     */
+    private static final int LOCATIONS = 108;
+
+    /**
+     * URI matcher code for the stock of a product at every location
+     */
+    private static final int PRODUCT_STOCK = 109;
+
+    /**
+     * URI matcher code for the stock of a product at one location
+     */
+    private static final int STOCK = 110;
+
+    /**
+     * URI matcher code for the products stocked at a location
+     */
+    private static final int LOCATION_STOCK = 111;
+
+    /**
+     * URI matcher code for the change feed
+     */
+    private static final int CHANGES = 112;
+
+    /**
+     * URI matcher code for the tombstones of deleted products
+     */
+    private static final int TOMBSTONES = 113;
+
+    /**
+     * Stock rows joined with the name of their location
+     */
+    private static final String STOCK_LOCATION_TABLES = StockEntry.TABLE_NAME
+            + " JOIN " + LocationEntry.TABLE_NAME
+            + " ON " + LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " = " + StockEntry.COLUMN_LOCATION_ID;
+
+    private static final String[] STOCK_LOCATION_PROJECTION = new String[]{
+            StockEntry.COLUMN_LOCATION_ID,
+            LocationEntry.COLUMN_NAME,
+            StockEntry.COLUMN_QUANTITY
+    };
+
+    /**
+     * Stock rows joined with their product
+     */
+    private static final String STOCK_PRODUCT_TABLES = StockEntry.TABLE_NAME
+            + " JOIN " + InventoryEntry.TABLE_NAME
+            + " ON " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " = " + StockEntry.COLUMN_PRODUCT_ID;
+
+    private static final String[] STOCK_PRODUCT_PROJECTION = new String[]{
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            StockEntry.COLUMN_QUANTITY
+    };
+
+    /**
+     * Columns read by {@link InventoryContract#METHOD_READ_COLUMNS}, in array order
+     */
+    private static final String[] COLUMNS_PROJECTION = new String[]{
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY
+    };
+
+    /**
+     * Age of the movements compacted when the caller doesn't give a cutoff
+     */
+    private static final long DEFAULT_MOVEMENT_RETENTION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Age of the change feed entries pruned when the caller doesn't give a cutoff
+     */
+    private static final long DEFAULT_CHANGE_RETENTION_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Number of search results returned when the URI doesn't set a limit
+     */
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -39,6 +209,43 @@ public class InventoryProvider extends ContentProvider {
         uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY, INVENTORY);
 
         uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", PRODUCT_ID);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH, SEARCH);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_EXPORT, EXPORT);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUMMARY, SUMMARY);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_MOVEMENTS, MOVEMENTS);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOW_STOCK, LOW_STOCK);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SKU + "/*", SKU);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOCATIONS, LOCATIONS);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_STOCK, PRODUCT_STOCK);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_STOCK + "/#", STOCK);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOCATIONS
+                        + "/#/" + InventoryContract.PATH_STOCK, LOCATION_STOCK);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_CHANGES, CHANGES);
+
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_TOMBSTONES, TOMBSTONES);
     }
 
     /**
@@ -46,10 +253,30 @@ public class InventoryProvider extends ContentProvider {
      */
     @Override
     public boolean onCreate() {
-        dbHelper = new InventoryDbHelper(getContext());
+        if (BuildConfig.DEBUG) {
+            slowQueryLog = new SlowQueryLog(
+                    getContext().getResources().getInteger(R.integer.slow_query_threshold_millis));
+            dbHelper = new InventoryDbHelper(getContext(), slowQueryLog.cursorFactory);
+        } else {
+            dbHelper = new InventoryDbHelper(getContext());
+        }
+        statements = new ProductStatements(dbHelper);
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver(),
+                getContext().getResources().getInteger(R.integer.provider_notify_window_millis));
         return true;
     }
 
+    /**
+     * Releases the compiled statements and closes the database. The system never stops a
+     * provider, so only tests call this.
+     */
+    @Override
+    public void shutdown() {
+        statements.close();
+        dbHelper.close();
+        super.shutdown();
+    }
+
     /**
      * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
      */
@@ -57,24 +284,77 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
                         String[] selectionArgs, @Nullable String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Same as {@link #query(Uri, String[], String, String[], String)}, but lets a search be
+     * abandoned half way when the loader that asked for it is restarted.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        String[] selectionArgs, @Nullable String sortOrder,
+                        @Nullable CancellationSignal cancellationSignal) {
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Cursor cursor = query(match, uri, projection, selection, selectionArgs, sortOrder,
+                    cancellationSignal);
+            failed = false;
+            return cursor;
+        } finally {
+            metrics.record(ProviderMetrics.QUERY, match, start, 0, failed);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Cursor query(int match, Uri uri, String[] projection, String selection,
+                         String[] selectionArgs, String sortOrder,
+                         CancellationSignal cancellationSignal) {
 
         SQLiteDatabase database = dbHelper.getReadableDatabase();
 
         Cursor cursor;
 
-        switch (uriMatcher.match(uri)) {
+        switch (match) {
             case INVENTORY:
+                DirectoryQuery directoryQuery = DirectoryQuery.from(uri, selection, selectionArgs, sortOrder);
+                if (cancellationSignal != null) {
+                    // Lets the product list abandon a page when its loader is restarted
+                    cursor = database.query(
+                            false,
+                            InventoryEntry.TABLE_NAME,
+                            projection,
+                            directoryQuery.selection,
+                            directoryQuery.selectionArgs,
+                            null,
+                            null,
+                            directoryQuery.sortOrder,
+                            directoryQuery.limit,
+                            cancellationSignal
+                    );
+                    break;
+                }
                 cursor = database.query(
                         InventoryEntry.TABLE_NAME,
                         projection,
-                        selection,
-                        selectionArgs,
+                        directoryQuery.selection,
+                        directoryQuery.selectionArgs,
                         null,
                         null,
-                        sortOrder
+                        directoryQuery.sortOrder,
+                        directoryQuery.limit
                 );
                 break;
             case PRODUCT_ID:
+                if (ProductCache.covers(projection)) {
+                    cursor = ProductCache.toCursor(projection, queryProduct(database, ContentUris.parseId(uri)));
+                    break;
+                }
+
                 selection = InventoryEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
 
@@ -88,6 +368,99 @@ public class InventoryProvider extends ContentProvider {
                         sortOrder
                 );
                 break;
+            case SEARCH:
+                cursor = searchProducts(database, uri, projection, cancellationSignal);
+                // Results change whenever any product does, so observe the whole directory
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case SUMMARY:
+                cursor = database.query(
+                        SummaryEntry.TABLE_NAME,
+                        projection,
+                        null,
+                        null,
+                        null,
+                        null,
+                        null
+                );
+                // Kept up to date by triggers, so it changes whenever any product does
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case LOW_STOCK:
+                cursor = database.query(
+                        InventoryEntry.TABLE_NAME,
+                        projection,
+                        DirectoryQuery.LOW_STOCK_SELECTION,
+                        null,
+                        null,
+                        null,
+                        DirectoryQuery.LOW_STOCK_ORDER,
+                        uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT)
+                );
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case SKU:
+                // Served by the unique SKU index
+                cursor = database.query(
+                        InventoryEntry.TABLE_NAME,
+                        projection,
+                        InventoryEntry.COLUMN_SKU + " = ?",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        null
+                );
+                // The product behind a SKU may change, so observe the whole directory
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case LOCATIONS:
+                cursor = database.query(
+                        LocationEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                );
+                uri = LocationEntry.CONTENT_URI;
+                break;
+            case PRODUCT_STOCK:
+            case STOCK:
+                cursor = queryProductStock(database, uri, match == STOCK, projection);
+                // Stock only changes along with the product's total
+                uri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI,
+                        Long.parseLong(uri.getPathSegments().get(1)));
+                break;
+            case LOCATION_STOCK:
+                cursor = queryLocationStock(database, uri, projection);
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case TOMBSTONES:
+                cursor = database.query(
+                        TombstoneEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT)
+                );
+                // Written by the delete trigger
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case CHANGES:
+                cursor = queryChanges(database, uri, projection);
+                // Every change to a product appends to the feed
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case MOVEMENTS:
+                cursor = queryMovements(database, uri, projection);
+                // New movements come with a change to the product
+                uri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI,
+                        Long.parseLong(uri.getPathSegments().get(1)));
+                break;
             default:
                 throw new IllegalArgumentException("Can't query known uri : " + uri);
         }
@@ -99,56 +472,478 @@ public class InventoryProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Reads a whole product row through the row cache
+     *
+     * @return the row in {@link ProductCache#COLUMNS} order, or null if there is no such product
+     */
+    private Object[] queryProduct(SQLiteDatabase database, long id) {
+        Object[] row = productCache.get(id);
+        if (row != null) {
+            return row;
+        }
+
+        long generation = productCache.generation();
+        Cursor cursor = database.query(
+                InventoryEntry.TABLE_NAME,
+                ProductCache.COLUMNS,
+                InventoryEntry._ID + "=?",
+                new String[]{String.valueOf(id)},
+                null,
+                null,
+                null
+        );
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            row = ProductCache.readRow(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        productCache.put(generation, id, row);
+        return row;
+    }
+
+    /**
+     * Reads the stock of a product at every location, or at the one in the URI, with the
+     * location names. The primary key serves the lookup.
+     */
+    private static Cursor queryProductStock(SQLiteDatabase database, Uri uri, boolean single,
+                                            String[] projection) {
+        List<String> segments = uri.getPathSegments();
+        String selection = StockEntry.COLUMN_PRODUCT_ID + " = ?";
+        String[] selectionArgs;
+        if (single) {
+            selection += " AND " + StockEntry.COLUMN_LOCATION_ID + " = ?";
+            selectionArgs = new String[]{segments.get(1), segments.get(3)};
+        } else {
+            selectionArgs = new String[]{segments.get(1)};
+        }
+
+        return database.query(
+                STOCK_LOCATION_TABLES,
+                projection != null ? projection : STOCK_LOCATION_PROJECTION,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                StockEntry.COLUMN_LOCATION_ID
+        );
+    }
+
+    /**
+     * Reads the products stocked at a location in name order, through the location index
+     */
+    private static Cursor queryLocationStock(SQLiteDatabase database, Uri uri, String[] projection) {
+        if (projection == null) {
+            projection = STOCK_PRODUCT_PROJECTION;
+        }
+        // _ID and quantity are in both tables; here they mean the product and its stock there
+        String[] columns = new String[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (InventoryEntry._ID.equals(projection[i])) {
+                columns[i] = InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " AS " + InventoryEntry._ID;
+            } else if (StockEntry.COLUMN_QUANTITY.equals(projection[i])) {
+                columns[i] = StockEntry.TABLE_NAME + "." + StockEntry.COLUMN_QUANTITY
+                        + " AS " + StockEntry.COLUMN_QUANTITY;
+            } else {
+                columns[i] = projection[i];
+            }
+        }
+
+        return database.query(
+                STOCK_PRODUCT_TABLES,
+                columns,
+                StockEntry.COLUMN_LOCATION_ID + " = ?",
+                new String[]{uri.getPathSegments().get(2)},
+                null,
+                null,
+                InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE, " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+        );
+    }
+
+    /**
+     * Reads the change feed after the sequence number in the URI
+     */
+    private static Cursor queryChanges(SQLiteDatabase database, Uri uri, String[] projection) {
+        String since = uri.getQueryParameter(ChangeEntry.QUERY_PARAMETER_SINCE);
+        String limit = uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT);
+
+        return database.rawQuery(ChangeFeed.build(projection, limit),
+                new String[]{String.valueOf(since != null ? Long.parseLong(since) : 0)});
+    }
+
+    /**
+     * Reads the movements of a product in time order, within the optional time range of the
+     * URI. The (product_id, time) index serves both the filter and the order.
+     */
+    private static Cursor queryMovements(SQLiteDatabase database, Uri uri, String[] projection) {
+        StringBuilder selection = new StringBuilder(MovementEntry.COLUMN_PRODUCT_ID + " = ?");
+        List<String> selectionArgs = new ArrayList<>(3);
+        selectionArgs.add(uri.getPathSegments().get(1));
+
+        String since = uri.getQueryParameter(MovementEntry.QUERY_PARAMETER_SINCE);
+        if (since != null) {
+            selection.append(" AND ").append(MovementEntry.COLUMN_TIME).append(" >= ?");
+            selectionArgs.add(String.valueOf(Long.parseLong(since)));
+        }
+        String until = uri.getQueryParameter(MovementEntry.QUERY_PARAMETER_UNTIL);
+        if (until != null) {
+            selection.append(" AND ").append(MovementEntry.COLUMN_TIME).append(" < ?");
+            selectionArgs.add(String.valueOf(Long.parseLong(until)));
+        }
+
+        return database.query(
+                MovementEntry.TABLE_NAME,
+                projection,
+                selection.toString(),
+                selectionArgs.toArray(new String[selectionArgs.size()]),
+                null,
+                null,
+                MovementEntry.COLUMN_TIME + ", " + MovementEntry._ID
+        );
+    }
+
+    /**
+     * Runs a ranked full-text search for the terms in the search URI
+     *
+     * @param database           to search
+     * @param uri                search URI with the terms and an optional limit
+     * @param projection         inventory columns to return
+     * @param cancellationSignal to abandon the search with, may be null
+     * @return cursor over the matching products
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Cursor searchProducts(SQLiteDatabase database, Uri uri, String[] projection,
+                                  CancellationSignal cancellationSignal) {
+        String match = buildMatchExpression(uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_SEARCH));
+        if (match == null) {
+            // Nothing searchable was typed yet, e.g. only punctuation
+            // Without a projection, the columns a query of the whole table would return
+            return new MatrixCursor(projection != null ? projection : ProductCache.COLUMNS);
+        }
+
+        int limit = DEFAULT_SEARCH_LIMIT;
+        String limitParameter = uri.getQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT);
+        if (limitParameter != null) {
+            limit = Integer.parseInt(limitParameter);
+        }
+
+        StringBuilder columns = new StringBuilder();
+        if (projection == null) {
+            columns.append(InventoryEntry.TABLE_NAME).append(".*");
+        } else {
+            for (String column : projection) {
+                if (columns.length() != 0) {
+                    columns.append(", ");
+                }
+                columns.append(InventoryEntry.TABLE_NAME).append('.').append(column);
+            }
+        }
+
+        // offsets() lists the matches column by column, so its first number is 0 when the
+        // product name matched and 1 when only the supplier did. Shorter names are closer
+        // to the typed prefix, so they come first within each group.
+        String sql = "SELECT " + columns
+                + " FROM " + InventoryEntry.FTS_TABLE_NAME
+                + " JOIN " + InventoryEntry.TABLE_NAME
+                + " ON " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+                + " = " + InventoryEntry.FTS_TABLE_NAME + ".docid"
+                + " WHERE " + InventoryEntry.FTS_TABLE_NAME + " MATCH ?"
+                + " ORDER BY substr(offsets(" + InventoryEntry.FTS_TABLE_NAME + "), 1, 1),"
+                + " length(" + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRODUCT_NAME + "),"
+                + " " + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE"
+                + " LIMIT " + limit;
+
+        if (cancellationSignal != null) {
+            return database.rawQuery(sql, new String[]{match}, cancellationSignal);
+        }
+        return database.rawQuery(sql, new String[]{match});
+    }
+
+    /**
+     * Turns user input into an FTS expression matching every term as a prefix. Everything but
+     * letters and digits is dropped, the same as the tokenizer does, so the input can't inject
+     * FTS operators.
+     *
+     * @param query as typed by the user
+     * @return the MATCH expression, or null if the query holds no terms
+     */
+    private static String buildMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (match.length() != 0) {
+                    match.append(' ');
+                }
+                match.append(query, start, i).append('*');
+            }
+        }
+
+        return match.length() == 0 ? null : match.toString();
+    }
+
     /**
      * Insert new data into the provider with the given ContentValues.
      */
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        boolean failed = true;
+        Uri inserted = null;
+        try {
+            inserted = insert(match, uri, values);
+            failed = false;
+            return inserted;
+        } finally {
+            metrics.record(ProviderMetrics.INSERT, match, start, inserted != null ? 1 : 0, failed);
+            if (slowQueryLog != null) {
+                slowQueryLog.onWrite("insert", uri, start);
+            }
+        }
+    }
+
+    private Uri insert(int match, Uri uri, ContentValues values) {
+        switch (match) {
+            case INVENTORY:
+                validateInsert(values);
+                return insertProduct(values, uri);
+            case PRODUCT_STOCK:
+                return insertStock(values, uri);
+            case LOCATIONS:
+                return insertLocation(values, uri);
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for : " + uri);
+        }
+    }
+
+    /**
+     * Checks that the values for a new product carry every required column.
+     *
+     * @param values to validate
+     */
+    private static void validateInsert(ContentValues values) {
         String productName = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
         if (productName == null) {
             throw new IllegalArgumentException("Product requires a name");
         }
 
-        String productPrice = values.getAsString(InventoryEntry.COLUMN_PRICE);
-        if (productPrice == null) {
-            throw new IllegalArgumentException("Product requires a price");
-        }
+        validatePrice(values);
 
         String productQuantity = values.getAsString(InventoryEntry.COLUMN_QUANTITY);
         if (productQuantity == null) {
             throw new IllegalArgumentException("Product requires a quantity");
         }
 
-        switch (uriMatcher.match(uri)) {
-            case INVENTORY:
-                return insertProduct(values, uri);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for : " + uri);
+        validateReorderThreshold(values);
+        validateNoTotal(values);
+    }
+
+    /**
+     * Checks that the values don't set the total quantity, which only the stock triggers write
+     *
+     * @param values to validate
+     */
+    private static void validateNoTotal(ContentValues values) {
+        if (values.containsKey(InventoryEntry.COLUMN_TOTAL_QUANTITY)) {
+            throw new IllegalArgumentException("Total quantity is the sum of the stock at every location");
         }
     }
 
+    /**
+     * Checks that the values carry a quantity of stock that isn't negative
+     *
+     * @param values to validate
+     * @return the quantity
+     */
+    private static int validateStockQuantity(ContentValues values) {
+        Integer quantity = values.getAsInteger(StockEntry.COLUMN_QUANTITY);
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Stock requires a quantity");
+        }
+        return quantity;
+    }
+
+    /**
+     * Checks that a reorder threshold, if given, isn't negative
+     *
+     * @param values to validate
+     */
+    private static void validateReorderThreshold(ContentValues values) {
+        if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            Integer threshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (threshold == null || threshold < 0) {
+                throw new IllegalArgumentException("Reorder threshold must be a quantity");
+            }
+        }
+    }
+
+    /**
+     * Checks that the values carry a price in whole minor units. A fractional value is almost
+     * certainly a price in major units from a caller that predates the integer column.
+     *
+     * @param values to validate
+     */
+    private static void validatePrice(ContentValues values) {
+        Object price = values.get(InventoryEntry.COLUMN_PRICE);
+        if (price == null) {
+            throw new IllegalArgumentException("Product requires a price");
+        }
+        if (price instanceof Float || price instanceof Double) {
+            throw new IllegalArgumentException("Price must be in minor units : " + price);
+        }
+    }
+
+    /**
+     * Inserts all the given rows in a single transaction. Rows with the same set of columns share
+     * one compiled INSERT statement, and a single change notification is sent after commit.
+     * If any row fails validation the whole batch is rolled back.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] valuesArray) {
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        boolean failed = true;
+        int rowsInserted = 0;
+        try {
+            rowsInserted = bulkInsert(match, uri, valuesArray);
+            failed = false;
+            return rowsInserted;
+        } finally {
+            metrics.record(ProviderMetrics.BULK_INSERT, match, start, rowsInserted, failed);
+            if (slowQueryLog != null) {
+                slowQueryLog.onWrite("bulkInsert", uri, start);
+            }
+        }
+    }
+
+    private int bulkInsert(int match, Uri uri, ContentValues[] valuesArray) {
+        if (match != INVENTORY) {
+            throw new IllegalArgumentException("Insertion is not supported for : " + uri);
+        }
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Map<String, SQLiteStatement> insertStatements = new HashMap<>();
+        int rowsInserted = 0;
+
+        database.beginTransaction();
+        try {
+            for (ContentValues values : valuesArray) {
+                validateInsert(values);
+
+                Set<String> columns = new TreeSet<>(values.keySet());
+                String key = columns.toString();
+                SQLiteStatement statement = insertStatements.get(key);
+                if (statement == null) {
+                    statement = database.compileStatement(buildInsertSql(columns));
+                    insertStatements.put(key, statement);
+                }
+
+                statement.clearBindings();
+                int index = 1;
+                for (String column : columns) {
+                    DatabaseUtils.bindObjectToProgram(statement, index++, values.get(column));
+                }
+
+                if (statement.executeInsert() != -1) {
+                    rowsInserted++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            for (SQLiteStatement statement : insertStatements.values()) {
+                statement.close();
+            }
+        }
+
+        if (rowsInserted != 0) {
+            changeNotifier.notifyDirectory();
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Builds a parameterised INSERT for the inventory table over the given columns.
+     */
+    private static String buildInsertSql(Set<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(InventoryEntry.TABLE_NAME)
+                .append(" (");
+        StringBuilder params = new StringBuilder();
+        for (String column : columns) {
+            if (params.length() != 0) {
+                sql.append(',');
+                params.append(',');
+            }
+            sql.append(column);
+            params.append('?');
+        }
+        return sql.append(") VALUES (").append(params).append(')').toString();
+    }
+
+    /**
+     * Applies all operations inside one transaction. Notifications raised by the individual
+     * insert/update/delete calls are held back and sent once, after the batch commits.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        boolean successful = false;
+
+        boolean batchOpened = changeNotifier.beginBatch();
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            database.endTransaction();
+            // Rows read between an operation and the commit may have been cached
+            productCache.invalidateAll();
+            changeNotifier.endBatch(batchOpened, successful);
+        }
+
+        return results;
+    }
+
     /**
      * Helper method to insert a product to the inventory table
      *
      * @param values to insert
      * @param uri    to insert at
      * @return uri of the newly inserted row
+     * @throws android.database.sqlite.SQLiteConstraintException if the SKU is already in use
      */
     private Uri insertProduct(ContentValues values, Uri uri) {
 
         SQLiteDatabase database = dbHelper.getWritableDatabase();
 
-        long rowId = database.insert(InventoryEntry.TABLE_NAME, null, values);
-
-        if (rowId == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
-        }
+        // Throws rather than returning -1, so callers can tell a taken SKU from other failures
+        long rowId = database.insertOrThrow(InventoryEntry.TABLE_NAME, null, values);
 
-        if (getContext() != null) {
-            getContext().getContentResolver().notifyChange(uri, null);
-        }
+        changeNotifier.notifyProduct(rowId);
 
         return ContentUris.withAppendedId(uri, rowId);
 
@@ -160,6 +955,24 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public int update(@NonNull Uri uri, ContentValues values, @Nullable String selection,
                       @Nullable String[] selectionArgs) {
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        boolean failed = true;
+        int rowsUpdated = 0;
+        try {
+            rowsUpdated = update(match, uri, values, selection, selectionArgs);
+            failed = false;
+            return rowsUpdated;
+        } finally {
+            metrics.record(ProviderMetrics.UPDATE, match, start, rowsUpdated, failed);
+            if (slowQueryLog != null) {
+                slowQueryLog.onWrite("update", uri, start);
+            }
+        }
+    }
+
+    private int update(int match, Uri uri, ContentValues values, String selection,
+                       String[] selectionArgs) {
         if (values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)) {
             String productName = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
             if (productName == null) {
@@ -168,10 +981,7 @@ public class InventoryProvider extends ContentProvider {
         }
 
         if (values.containsKey(InventoryEntry.COLUMN_PRICE)) {
-            String productPrice = values.getAsString(InventoryEntry.COLUMN_PRICE);
-            if (productPrice == null) {
-                throw new IllegalArgumentException("Product requires a price");
-            }
+            validatePrice(values);
         }
 
         if (values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
@@ -181,21 +991,150 @@ public class InventoryProvider extends ContentProvider {
             }
         }
 
+        validateReorderThreshold(values);
+        validateNoTotal(values);
+
         if (values.size() == 0) {
             return 0;
         }
-        switch (uriMatcher.match(uri)) {
+        switch (match) {
             case INVENTORY:
                 return updatePets(values, selection, selectionArgs, uri);
             case PRODUCT_ID:
+                if (values.size() == 1 && values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
+                    // Null for text that isn't a number
+                    Long quantity = values.getAsLong(InventoryEntry.COLUMN_QUANTITY);
+                    if (quantity == null) {
+                        throw new IllegalArgumentException("Product requires a numeric quantity");
+                    }
+                    int rowsUpdated = statements.updateQuantity(ContentUris.parseId(uri), quantity);
+                    productCache.invalidate(ContentUris.parseId(uri));
+                    if (rowsUpdated != 0) {
+                        changeNotifier.notifyProduct(ContentUris.parseId(uri));
+                    }
+                    return rowsUpdated;
+                }
                 selection = InventoryEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 return updatePets(values, selection, selectionArgs, uri);
+            case STOCK:
+                return updateStock(values, uri);
             default:
                 throw new IllegalArgumentException("Updating not supported for uri : " + uri);
         }
     }
 
+    /**
+     * Stocks a product at a location it isn't stocked at yet
+     *
+     * @param values holding the location and the quantity there
+     * @param uri    of the product's stock
+     * @return uri of the new stock row, or null if the product, the location or the row
+     * already exists
+     */
+    private Uri insertStock(ContentValues values, Uri uri) {
+        long productId = Long.parseLong(uri.getPathSegments().get(1));
+        Long locationId = values.getAsLong(StockEntry.COLUMN_LOCATION_ID);
+        if (locationId == null) {
+            throw new IllegalArgumentException("Stock requires a location");
+        }
+        if (locationId == LocationEntry.STORE_ID) {
+            throw new IllegalArgumentException("Stock at the store is the product's quantity : " + uri);
+        }
+
+        ContentValues row = new ContentValues(3);
+        row.put(StockEntry.COLUMN_PRODUCT_ID, productId);
+        row.put(StockEntry.COLUMN_LOCATION_ID, locationId);
+        row.put(StockEntry.COLUMN_QUANTITY, validateStockQuantity(values));
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        long rowId = -1;
+
+        database.beginTransaction();
+        try {
+            if (statements.quantity(productId) != -1
+                    && DatabaseUtils.queryNumEntries(database, LocationEntry.TABLE_NAME,
+                    LocationEntry._ID + " = ?", new String[]{String.valueOf(locationId)}) != 0) {
+                rowId = database.insert(StockEntry.TABLE_NAME, null, row);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            productCache.invalidate(productId);
+        }
+
+        if (rowId == -1) {
+            Log.e(LOG_TAG, "Failed to insert stock for " + uri);
+            return null;
+        }
+
+        changeNotifier.notifyProduct(productId);
+
+        return StockEntry.buildUri(productId, locationId);
+    }
+
+    /**
+     * Sets the quantity of a product at a location. The store's goes through the product's
+     * quantity, which the triggers mirror into its stock row.
+     *
+     * @param values holding only the quantity
+     * @param uri    of the stock row
+     * @return number of rows updated
+     */
+    private int updateStock(ContentValues values, Uri uri) {
+        if (values.size() != 1) {
+            throw new IllegalArgumentException("Only the quantity of stock can be updated : " + uri);
+        }
+        int quantity = validateStockQuantity(values);
+        long productId = Long.parseLong(uri.getPathSegments().get(1));
+        long locationId = Long.parseLong(uri.getPathSegments().get(3));
+
+        int rowsUpdated;
+        if (locationId == LocationEntry.STORE_ID) {
+            rowsUpdated = statements.updateQuantity(productId, quantity);
+        } else {
+            ContentValues row = new ContentValues(1);
+            row.put(StockEntry.COLUMN_QUANTITY, quantity);
+            rowsUpdated = dbHelper.getWritableDatabase().update(
+                    StockEntry.TABLE_NAME,
+                    row,
+                    StockEntry.COLUMN_PRODUCT_ID + " = ? AND " + StockEntry.COLUMN_LOCATION_ID + " = ?",
+                    new String[]{String.valueOf(productId), String.valueOf(locationId)}
+            );
+        }
+
+        productCache.invalidate(productId);
+        if (rowsUpdated != 0) {
+            changeNotifier.notifyProduct(productId);
+        }
+
+        return rowsUpdated;
+    }
+
+    /**
+     * Adds a stock location
+     *
+     * @param values holding the name of the location
+     * @param uri    of the locations
+     * @return uri of the new location
+     */
+    private Uri insertLocation(ContentValues values, Uri uri) {
+        if (values.getAsString(LocationEntry.COLUMN_NAME) == null) {
+            throw new IllegalArgumentException("Location requires a name");
+        }
+
+        long rowId = dbHelper.getWritableDatabase().insert(LocationEntry.TABLE_NAME, null, values);
+
+        if (rowId == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        changeNotifier.notifyLocations();
+
+        return ContentUris.withAppendedId(uri, rowId);
+    }
+
     /**
      * Update a product
      *
@@ -214,8 +1153,9 @@ public class InventoryProvider extends ContentProvider {
                 selectionArgs
         );
 
-        if (getContext() != null && rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        invalidateCache(uri);
+        if (rowsUpdated != 0) {
+            notifyChange(uri);
         }
 
         return rowsUpdated;
@@ -223,16 +1163,56 @@ public class InventoryProvider extends ContentProvider {
     }
 
 
+    /**
+     * Drops the cached rows addressed by a directory or single product URI. Called after the
+     * write, even a failed one, so no row read before it stays cached.
+     */
+    private void invalidateCache(Uri uri) {
+        if (uriMatcher.match(uri) == PRODUCT_ID) {
+            productCache.invalidate(ContentUris.parseId(uri));
+        } else {
+            productCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Records a change to the rows addressed by a directory or single product URI
+     */
+    private void notifyChange(Uri uri) {
+        if (uriMatcher.match(uri) == PRODUCT_ID) {
+            changeNotifier.notifyProduct(ContentUris.parseId(uri));
+        } else {
+            changeNotifier.notifyDirectory();
+        }
+    }
+
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        boolean failed = true;
+        int rowsDeleted = 0;
+        try {
+            rowsDeleted = delete(match, uri, selection, selectionArgs);
+            failed = false;
+            return rowsDeleted;
+        } finally {
+            metrics.record(ProviderMetrics.DELETE, match, start, rowsDeleted, failed);
+            if (slowQueryLog != null) {
+                slowQueryLog.onWrite("delete", uri, start);
+            }
+        }
+    }
+
+    private int delete(int match, Uri uri, String selection, String[] selectionArgs) {
         SQLiteDatabase database = dbHelper.getWritableDatabase();
 
         int rowsDeleted;
 
-        switch (uriMatcher.match(uri)) {
+        switch (match) {
             case INVENTORY:
                 rowsDeleted = database.delete(
                         InventoryEntry.TABLE_NAME,
@@ -240,30 +1220,341 @@ public class InventoryProvider extends ContentProvider {
                         selectionArgs
                 );
 
-                if (getContext() != null && rowsDeleted != 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                invalidateCache(uri);
+                if (rowsDeleted != 0) {
+                    notifyChange(uri);
                 }
 
                 return rowsDeleted;
             case PRODUCT_ID:
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(
-                        InventoryEntry.TABLE_NAME,
-                        selection,
-                        selectionArgs
-                );
+                rowsDeleted = statements.delete(ContentUris.parseId(uri));
 
-                if (getContext() != null) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                invalidateCache(uri);
+                if (rowsDeleted != 0) {
+                    notifyChange(uri);
                 }
 
                 return rowsDeleted;
+            case STOCK:
+                return deleteStock(database, uri);
+            case TOMBSTONES:
+                // Nothing observes tombstones but the sync engine, which just wrote them
+                return database.delete(TombstoneEntry.TABLE_NAME, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Deletion not supported for uri : " + uri);
         }
     }
 
+    /**
+     * Removes a product's stock at a location other than the store
+     *
+     * @return number of rows deleted
+     */
+    private int deleteStock(SQLiteDatabase database, Uri uri) {
+        long productId = Long.parseLong(uri.getPathSegments().get(1));
+        long locationId = Long.parseLong(uri.getPathSegments().get(3));
+        if (locationId == LocationEntry.STORE_ID) {
+            throw new IllegalArgumentException("Stock at the store goes with the product : " + uri);
+        }
+
+        int rowsDeleted = database.delete(
+                StockEntry.TABLE_NAME,
+                StockEntry.COLUMN_PRODUCT_ID + " = ? AND " + StockEntry.COLUMN_LOCATION_ID + " = ?",
+                new String[]{String.valueOf(productId), String.valueOf(locationId)}
+        );
+
+        productCache.invalidate(productId);
+        if (rowsDeleted != 0) {
+            changeNotifier.notifyProduct(productId);
+        }
+
+        return rowsDeleted;
+    }
+
+    /**
+     * Opens the export stream. The table is written into a pipe on a background thread, so the
+     * reader can start consuming rows before the export is complete.
+     */
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (uriMatcher.match(uri) != EXPORT) {
+            throw new FileNotFoundException("No file for uri : " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export is read only : " + uri);
+        }
+        return openPipeHelper(uri, InventoryExporter.getType(uri), null, null,
+                new InventoryExporter(dbHelper));
+    }
+
+    /**
+     * Handles the provider methods declared in {@link InventoryContract}.
+     */
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        long start = System.nanoTime();
+        try {
+            return callMethod(method, arg, extras);
+        } finally {
+            if (slowQueryLog != null) {
+                slowQueryLog.onWrite(method, InventoryEntry.CONTENT_URI, start);
+            }
+        }
+    }
+
+    private Bundle callMethod(String method, String arg, Bundle extras) {
+        if (InventoryContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            if (arg == null || extras == null || !extras.containsKey(InventoryContract.EXTRA_DELTA)) {
+                throw new IllegalArgumentException("Adjusting quantity requires a product id and a delta");
+            }
+            return adjustQuantity(Long.parseLong(arg), extras.getInt(InventoryContract.EXTRA_DELTA));
+        }
+        if (InventoryContract.METHOD_SELL_SKU.equals(method)) {
+            if (arg == null) {
+                throw new IllegalArgumentException("Selling by SKU requires a SKU");
+            }
+            int count = extras != null ? extras.getInt(InventoryContract.EXTRA_COUNT, 1) : 1;
+            if (count <= 0) {
+                throw new IllegalArgumentException("Count must be positive : " + count);
+            }
+            return sellSku(arg, count);
+        }
+        if (InventoryContract.METHOD_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_CACHE_HITS, productCache.hitCount());
+            result.putInt(InventoryContract.EXTRA_CACHE_MISSES, productCache.missCount());
+            result.putInt(InventoryContract.EXTRA_CACHE_EVICTIONS, productCache.evictionCount());
+            return result;
+        }
+        if (InventoryContract.METHOD_READ_COLUMNS.equals(method)) {
+            int limit = InventoryContract.MAX_COLUMNS_CHUNK;
+            if (extras != null && extras.containsKey(InventoryContract.EXTRA_LIMIT)) {
+                limit = Math.min(extras.getInt(InventoryContract.EXTRA_LIMIT), limit);
+            }
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive : " + limit);
+            }
+            return readColumns(arg != null ? Long.parseLong(arg) : -1, limit);
+        }
+        if (InventoryContract.METHOD_PROVIDER_METRICS.equals(method)) {
+            return metrics.toBundle();
+        }
+        if (InventoryContract.METHOD_COMPACT_MOVEMENTS.equals(method)) {
+            long cutoff = arg != null
+                    ? Long.parseLong(arg)
+                    : System.currentTimeMillis() - DEFAULT_MOVEMENT_RETENTION_MILLIS;
+            return compactMovements(cutoff);
+        }
+        if (InventoryContract.METHOD_PRUNE_CHANGES.equals(method)) {
+            long cutoff = arg != null
+                    ? Long.parseLong(arg)
+                    : System.currentTimeMillis() - DEFAULT_CHANGE_RETENTION_MILLIS;
+            return pruneChanges(cutoff);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Adds delta to the quantity of a product with a single conditional UPDATE, so concurrent
+     * callers can't lose each other's changes or drive the stock below zero.
+     *
+     * @param id    of the product
+     * @param delta to add to the quantity, may be negative
+     * @return bundle holding the new quantity, without it if the adjustment was rejected
+     */
+    private Bundle adjustQuantity(long id, int delta) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Bundle result = new Bundle();
+
+        database.beginTransaction();
+        try {
+            if (statements.addQuantity(id, delta) != 0) {
+                result.putInt(InventoryContract.EXTRA_QUANTITY, (int) statements.quantity(id));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            productCache.invalidate(id);
+        }
+
+        if (result.containsKey(InventoryContract.EXTRA_QUANTITY)) {
+            changeNotifier.notifyProduct(id);
+        }
+
+        return result;
+    }
+
+    /**
+     * Looks a scanned SKU up and takes count items off its stock in one transaction, so a
+     * scan costs one index lookup and one conditional UPDATE, both precompiled, and the
+     * product can't be deleted or sold out in between.
+     *
+     * @param sku   of the product
+     * @param count items sold
+     * @return bundle holding the product id unless the SKU is unknown, and the new quantity
+     * unless there wasn't enough stock
+     */
+    private Bundle sellSku(String sku, int count) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Bundle result = new Bundle();
+        long id = -1;
+
+        database.beginTransaction();
+        try {
+            id = statements.idBySku(sku);
+            if (id != -1) {
+                result.putLong(InventoryContract.EXTRA_ID, id);
+                if (statements.addQuantity(id, -count) != 0) {
+                    result.putInt(InventoryContract.EXTRA_QUANTITY, (int) statements.quantity(id));
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            if (id != -1) {
+                productCache.invalidate(id);
+            }
+        }
+
+        if (result.containsKey(InventoryContract.EXTRA_QUANTITY)) {
+            changeNotifier.notifyProduct(id);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a chunk of ids, prices and quantities straight into primitive arrays. The cursor
+     * never leaves the provider, so the rows are copied once, without boxing, and the caller
+     * gets three arrays instead of a window to walk row by row.
+     *
+     * @param afterId _ID to continue after
+     * @param limit   rows to read at most
+     */
+    private Bundle readColumns(long afterId, int limit) {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        Cursor cursor = database.query(
+                InventoryEntry.TABLE_NAME,
+                COLUMNS_PROJECTION,
+                InventoryEntry._ID + " > ?",
+                new String[]{String.valueOf(afterId)},
+                null,
+                null,
+                InventoryEntry._ID,
+                String.valueOf(limit)
+        );
+
+        Bundle result = new Bundle();
+        try {
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            long[] prices = new long[count];
+            int[] quantities = new int[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                prices[i] = cursor.getLong(1);
+                quantities[i] = cursor.getInt(2);
+            }
+
+            result.putLongArray(InventoryContract.EXTRA_IDS, ids);
+            result.putLongArray(InventoryContract.EXTRA_PRICES, prices);
+            result.putIntArray(InventoryContract.EXTRA_QUANTITIES, quantities);
+            if (count != 0) {
+                result.putLong(InventoryContract.EXTRA_LAST_ID, ids[count - 1]);
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Folds every movement older than cutoff into the snapshot of its product and removes it.
+     * Each product's snapshot takes the quantity of its latest compacted movement, so the
+     * snapshot plus the remaining movements still give the full quantity history.
+     *
+     * @param cutoff time in milliseconds since the epoch
+     * @return bundle holding the number of movements removed
+     */
+    private Bundle compactMovements(long cutoff) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int compacted = 0;
+
+        database.beginTransaction();
+        try {
+            // Movements are appended in time order, so everything up to the last old one goes
+            long lastId = DatabaseUtils.longForQuery(database,
+                    "SELECT IFNULL(MAX(" + MovementEntry._ID + "), 0) FROM " + MovementEntry.TABLE_NAME
+                            + " WHERE " + MovementEntry.COLUMN_TIME + " < ?",
+                    new String[]{String.valueOf(cutoff)});
+            if (lastId != 0) {
+                database.execSQL("INSERT OR REPLACE INTO " + SnapshotEntry.TABLE_NAME + "("
+                                + SnapshotEntry.COLUMN_PRODUCT_ID + ", " + SnapshotEntry.COLUMN_QUANTITY + ", "
+                                + SnapshotEntry.COLUMN_TIME + ", " + SnapshotEntry.COLUMN_MOVEMENT_ID + ")"
+                                + " SELECT " + MovementEntry.COLUMN_PRODUCT_ID + ", " + MovementEntry.COLUMN_QUANTITY + ", "
+                                + MovementEntry.COLUMN_TIME + ", " + MovementEntry._ID
+                                + " FROM " + MovementEntry.TABLE_NAME
+                                + " WHERE " + MovementEntry._ID + " IN (SELECT MAX(" + MovementEntry._ID + ")"
+                                + " FROM " + MovementEntry.TABLE_NAME + " WHERE " + MovementEntry._ID + " <= ?"
+                                + " GROUP BY " + MovementEntry.COLUMN_PRODUCT_ID + ")",
+                        new Object[]{lastId});
+                compacted = database.delete(MovementEntry.TABLE_NAME, MovementEntry._ID + " <= ?",
+                        new String[]{String.valueOf(lastId)});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_COMPACTED, compacted);
+        return result;
+    }
+
+    /**
+     * Removes the change feed entries older than cutoff. Entries go oldest first, up to the
+     * first one to keep, so the feed never has gaps and finding the cut reads only what goes.
+     *
+     * @param cutoff time in milliseconds since the epoch
+     * @return bundle holding the number of entries removed
+     */
+    private Bundle pruneChanges(long cutoff) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int pruned;
+
+        database.beginTransaction();
+        try {
+            long firstKept = DatabaseUtils.longForQuery(database,
+                    "SELECT IFNULL((SELECT " + ChangeEntry._ID + " FROM " + ChangeEntry.TABLE_NAME
+                            + " WHERE " + ChangeEntry.COLUMN_TIME + " >= ? ORDER BY " + ChangeEntry._ID + " LIMIT 1),"
+                            + " (SELECT IFNULL(MAX(" + ChangeEntry._ID + "), 0) + 1 FROM " + ChangeEntry.TABLE_NAME + "))",
+                    new String[]{String.valueOf(cutoff)});
+            pruned = database.delete(ChangeEntry.TABLE_NAME, ChangeEntry._ID + " < ?",
+                    new String[]{String.valueOf(firstKept)});
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_PRUNED, pruned);
+        return result;
+    }
+
+    /**
+     * Prints the provider metrics, for
+     * {@code adb shell dumpsys activity provider com.livelycoder.inventory}
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        metrics.dump(writer);
+        writer.println("Product cache: hits=" + productCache.hitCount()
+                + " misses=" + productCache.missCount()
+                + " evictions=" + productCache.evictionCount());
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -273,9 +1564,30 @@ public class InventoryProvider extends ContentProvider {
         int match = uriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
+            case SEARCH:
+            case LOW_STOCK:
                 return InventoryEntry.CONTENT_DIR_TYPE;
             case PRODUCT_ID:
+            case SKU:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case SUMMARY:
+                return SummaryEntry.CONTENT_ITEM_TYPE;
+            case MOVEMENTS:
+                return MovementEntry.CONTENT_DIR_TYPE;
+            case LOCATIONS:
+                return LocationEntry.CONTENT_DIR_TYPE;
+            case PRODUCT_STOCK:
+                return StockEntry.CONTENT_DIR_TYPE;
+            case STOCK:
+                return StockEntry.CONTENT_ITEM_TYPE;
+            case LOCATION_STOCK:
+                return InventoryEntry.CONTENT_DIR_TYPE;
+            case CHANGES:
+                return ChangeEntry.CONTENT_DIR_TYPE;
+            case TOMBSTONES:
+                return TombstoneEntry.CONTENT_DIR_TYPE;
+            case EXPORT:
+                return InventoryExporter.getType(uri);
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
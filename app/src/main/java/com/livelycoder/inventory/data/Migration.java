@@ -0,0 +1,23 @@
+package com.livelycoder.inventory.data;
+
+/**
+ * A single schema upgrade step. Each migration moves the database from {@code version - 1}
+ * to {@link #version} and is run by {@link Migrations#migrate} inside the upgrade transaction.
+ */
+abstract class Migration {
+    /**
+     * Database version this migration upgrades to
+     */
+    final int version;
+
+    Migration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Applies the schema changes for this step
+     *
+     * @param db database being upgraded, already inside a transaction
+     */
+    abstract void migrate(MigrationDatabase db);
+}
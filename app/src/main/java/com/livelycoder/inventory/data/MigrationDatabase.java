@@ -0,0 +1,26 @@
+package com.livelycoder.inventory.data;
+
+import java.util.List;
+
+/**
+ * The part of a database the {@link Migrations} need. On the device it wraps the
+ * SQLiteDatabase being upgraded.
+ */
+interface MigrationDatabase {
+
+    void execSQL(String sql);
+
+    void execSQL(String sql, Object[] bindArgs);
+
+    /**
+     * Runs a query
+     *
+     * @return the first column of every row, as text
+     */
+    List<String> queryStrings(String sql, String[] selectionArgs);
+
+    /**
+     * Android version the database belongs to, which decides the SQLite features available
+     */
+    int sdkVersion();
+}
@@ -0,0 +1,550 @@
+package com.livelycoder.inventory.data;
+
+import android.os.Build;
+
+import java.util.List;
+
+import static com.livelycoder.inventory.data.InventoryContract.ChangeEntry;
+import static com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import static com.livelycoder.inventory.data.InventoryContract.LocationEntry;
+import static com.livelycoder.inventory.data.InventoryContract.MovementEntry;
+import static com.livelycoder.inventory.data.InventoryContract.SnapshotEntry;
+import static com.livelycoder.inventory.data.InventoryContract.StockEntry;
+import static com.livelycoder.inventory.data.InventoryContract.TombstoneEntry;
+import static com.livelycoder.inventory.data.InventoryContract.SummaryEntry;
+
+/**
+ * The schema of the inventory database: the version 1 table and the steps upgrading it to
+ * every later version. The steps only talk to a {@link MigrationDatabase}, so the upgrade
+ * path can be run against any SQLite, not just the one on a device.
+ */
+final class Migrations {
+    /**
+     * SQL expression for the current time in milliseconds since the epoch
+     */
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /**
+     * SQL expression for a new random sync id, 32 hex digits
+     */
+    private static final String NEW_SYNC_ID = "lower(hex(randomblob(16)))";
+
+    private Migrations() {
+    }
+
+    /**
+     * Upgrade steps, ordered by the version they upgrade to. A step must be added here, along
+     * with a bump of {@link InventoryDbHelper#DATABASE_VERSION}, for every schema change.
+     */
+    private static final Migration[] MIGRATIONS = new Migration[]{
+            // Indexes backing the sort and prefix filter query parameters of the provider
+            new Migration(2) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("CREATE INDEX " + InventoryEntry.INDEX_PRODUCT_NAME
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + "(" + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)");
+                    db.execSQL("CREATE INDEX " + InventoryEntry.INDEX_SUPPLIER_NAME
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + "(" + InventoryEntry.COLUMN_SUPPLIER_NAME + ")");
+                    db.execSQL("CREATE INDEX " + InventoryEntry.INDEX_QUANTITY
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + "(" + InventoryEntry.COLUMN_QUANTITY + ")");
+                }
+            },
+            // Full-text index for product search, maintained by triggers on the inventory table
+            new Migration(3) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    // Prefix indexes make "term*" queries a direct lookup; SQLite only knows
+                    // the option from 3.7.7, which ships with Jelly Bean.
+                    String prefixOption = db.sdkVersion() >= Build.VERSION_CODES.JELLY_BEAN
+                            ? ", prefix=\"2,3\"" : "";
+                    db.execSQL("CREATE VIRTUAL TABLE " + InventoryEntry.FTS_TABLE_NAME + " USING fts4("
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                            + InventoryEntry.COLUMN_SUPPLIER_NAME
+                            + prefixOption + ")");
+
+                    db.execSQL("INSERT INTO " + InventoryEntry.FTS_TABLE_NAME + "(docid, "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ")"
+                            + " SELECT " + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                            + InventoryEntry.COLUMN_SUPPLIER_NAME + " FROM " + InventoryEntry.TABLE_NAME);
+
+                    db.execSQL("CREATE TRIGGER inventory_fts_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN INSERT INTO " + InventoryEntry.FTS_TABLE_NAME + "(docid, "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ")"
+                            + " VALUES (new." + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_PRODUCT_NAME
+                            + ", new." + InventoryEntry.COLUMN_SUPPLIER_NAME + "); END");
+
+                    db.execSQL("CREATE TRIGGER inventory_fts_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN UPDATE " + InventoryEntry.FTS_TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + " = new." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                            + InventoryEntry.COLUMN_SUPPLIER_NAME + " = new." + InventoryEntry.COLUMN_SUPPLIER_NAME
+                            + " WHERE docid = old." + InventoryEntry._ID + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_fts_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN DELETE FROM " + InventoryEntry.FTS_TABLE_NAME
+                            + " WHERE docid = old." + InventoryEntry._ID + "; END");
+                }
+            },
+            // Prices in integer minor units, and the trigger-maintained summary row
+            new Migration(4) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    rebuildTable(db, InventoryEntry.TABLE_NAME, "("
+                                    + InventoryEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
+                                    + InventoryEntry.COLUMN_PRODUCT_NAME + " TINYTEXT NOT NULL,"
+                                    + InventoryEntry.COLUMN_PRICE + " INTEGER NOT NULL,"
+                                    + InventoryEntry.COLUMN_QUANTITY + " INT NOT NULL,"
+                                    + InventoryEntry.COLUMN_SUPPLIER_NAME + " TINYTEXT NOT NULL,"
+                                    + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + " BIGINT NOT NULL)",
+                            InventoryEntry._ID + ", "
+                                    + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                                    + "CAST(ROUND(" + InventoryEntry.COLUMN_PRICE + " * 100) AS INTEGER), "
+                                    + InventoryEntry.COLUMN_QUANTITY + ", "
+                                    + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                                    + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
+
+                    db.execSQL("CREATE TABLE " + SummaryEntry.TABLE_NAME + "("
+                            + SummaryEntry._ID + " INTEGER NOT NULL PRIMARY KEY,"
+                            + SummaryEntry.COLUMN_TOTAL_VALUE + " INTEGER NOT NULL,"
+                            + SummaryEntry.COLUMN_PRODUCT_COUNT + " INTEGER NOT NULL,"
+                            + SummaryEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL,"
+                            + SummaryEntry.COLUMN_OUT_OF_STOCK_COUNT + " INTEGER NOT NULL)");
+
+                    db.execSQL("INSERT INTO " + SummaryEntry.TABLE_NAME + " SELECT " + SummaryEntry.ROW_ID + ", "
+                            + "IFNULL(SUM(" + InventoryEntry.COLUMN_PRICE + " * " + InventoryEntry.COLUMN_QUANTITY + "), 0), "
+                            + "COUNT(*), "
+                            + "IFNULL(SUM(" + InventoryEntry.COLUMN_QUANTITY + "), 0), "
+                            + "IFNULL(SUM(" + InventoryEntry.COLUMN_QUANTITY + " <= 0), 0)"
+                            + " FROM " + InventoryEntry.TABLE_NAME);
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("new", "+", InventoryEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_PRICE + ", " + InventoryEntry.COLUMN_QUANTITY
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("old", "-", InventoryEntry.COLUMN_QUANTITY) + "; "
+                            + updateSummary("new", "+", InventoryEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("old", "-", InventoryEntry.COLUMN_QUANTITY) + "; END");
+                }
+            },
+            // Stock movement ledger, appended to by triggers, and the snapshots it compacts into
+            new Migration(5) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("CREATE TABLE " + MovementEntry.TABLE_NAME + "("
+                            + MovementEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
+                            + MovementEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL,"
+                            + MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL,"
+                            + MovementEntry.COLUMN_QUANTITY + " INTEGER NOT NULL,"
+                            + MovementEntry.COLUMN_TIME + " INTEGER NOT NULL)");
+                    db.execSQL("CREATE INDEX " + MovementEntry.INDEX_PRODUCT_TIME
+                            + " ON " + MovementEntry.TABLE_NAME
+                            + "(" + MovementEntry.COLUMN_PRODUCT_ID + ", " + MovementEntry.COLUMN_TIME + ")");
+
+                    db.execSQL("CREATE TABLE " + SnapshotEntry.TABLE_NAME + "("
+                            + SnapshotEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL PRIMARY KEY,"
+                            + SnapshotEntry.COLUMN_QUANTITY + " INTEGER NOT NULL,"
+                            + SnapshotEntry.COLUMN_TIME + " INTEGER NOT NULL,"
+                            + SnapshotEntry.COLUMN_MOVEMENT_ID + " INTEGER NOT NULL)");
+
+                    // The history of existing products starts with their current stock
+                    db.execSQL("INSERT INTO " + MovementEntry.TABLE_NAME + "("
+                            + MovementEntry.COLUMN_PRODUCT_ID + ", " + MovementEntry.COLUMN_DELTA + ", "
+                            + MovementEntry.COLUMN_QUANTITY + ", " + MovementEntry.COLUMN_TIME + ")"
+                            + " SELECT " + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_QUANTITY + ", "
+                            + InventoryEntry.COLUMN_QUANTITY + ", " + NOW_MILLIS
+                            + " FROM " + InventoryEntry.TABLE_NAME + " ORDER BY " + InventoryEntry._ID);
+
+                    db.execSQL("CREATE TRIGGER inventory_movements_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + appendMovement("new." + InventoryEntry._ID,
+                            "new." + InventoryEntry.COLUMN_QUANTITY, "new." + InventoryEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_movements_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+                            + " WHEN new." + InventoryEntry.COLUMN_QUANTITY + " != old." + InventoryEntry.COLUMN_QUANTITY
+                            + " BEGIN " + appendMovement("new." + InventoryEntry._ID,
+                            "new." + InventoryEntry.COLUMN_QUANTITY + " - old." + InventoryEntry.COLUMN_QUANTITY,
+                            "new." + InventoryEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_movements_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + appendMovement("old." + InventoryEntry._ID,
+                            "-old." + InventoryEntry.COLUMN_QUANTITY, "0") + "; END");
+                }
+            },
+            // Per-product reorder threshold and the index behind the low stock query
+            new Migration(6) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0");
+
+                    // Only the low stock rows are in the index, so reading it costs as much as
+                    // there are such products. Partial indexes need SQLite 3.8.0, which ships
+                    // with Lollipop; older versions scan the table instead.
+                    if (db.sdkVersion() >= Build.VERSION_CODES.LOLLIPOP) {
+                        db.execSQL("CREATE INDEX " + InventoryEntry.INDEX_LOW_STOCK
+                                + " ON " + InventoryEntry.TABLE_NAME + "(" + InventoryEntry.COLUMN_QUANTITY + ")"
+                                + " WHERE " + InventoryEntry.COLUMN_QUANTITY
+                                + " <= " + InventoryEntry.COLUMN_REORDER_THRESHOLD);
+                    }
+                }
+            },
+            // SKU or barcode, looked up on every scan. NULLs don't collide in a unique index,
+            // so products without one are fine.
+            new Migration(7) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_SKU + " TEXT");
+                    db.execSQL("CREATE UNIQUE INDEX " + InventoryEntry.INDEX_SKU
+                            + " ON " + InventoryEntry.TABLE_NAME + "(" + InventoryEntry.COLUMN_SKU + ")");
+                }
+            },
+            // Stock per location. The product's quantity stays the store's stock, mirrored into
+            // the store row, and the total over all locations is kept on the product.
+            new Migration(8) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("CREATE TABLE " + LocationEntry.TABLE_NAME + "("
+                            + LocationEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
+                            + LocationEntry.COLUMN_NAME + " TEXT NOT NULL)");
+                    // One row per INSERT, as multi-row VALUES needs SQLite 3.7.11 and API 15
+                    // ships 3.7.4
+                    String insertLocation = "INSERT INTO " + LocationEntry.TABLE_NAME + "("
+                            + LocationEntry._ID + ", " + LocationEntry.COLUMN_NAME + ") VALUES (?, ?)";
+                    db.execSQL(insertLocation, new Object[]{LocationEntry.STORE_ID, "Store"});
+                    db.execSQL(insertLocation, new Object[]{2, "Back room"});
+                    db.execSQL(insertLocation, new Object[]{3, "Warehouse"});
+
+                    db.execSQL("CREATE TABLE " + StockEntry.TABLE_NAME + "("
+                            + StockEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL,"
+                            + StockEntry.COLUMN_LOCATION_ID + " INTEGER NOT NULL,"
+                            + StockEntry.COLUMN_QUANTITY + " INTEGER NOT NULL,"
+                            + "PRIMARY KEY (" + StockEntry.COLUMN_PRODUCT_ID + ", " + StockEntry.COLUMN_LOCATION_ID + "))");
+                    db.execSQL("CREATE INDEX " + StockEntry.INDEX_LOCATION
+                            + " ON " + StockEntry.TABLE_NAME + "(" + StockEntry.COLUMN_LOCATION_ID + ")");
+                    db.execSQL("INSERT INTO " + StockEntry.TABLE_NAME
+                            + " SELECT " + InventoryEntry._ID + ", " + LocationEntry.STORE_ID + ", "
+                            + InventoryEntry.COLUMN_QUANTITY + " FROM " + InventoryEntry.TABLE_NAME);
+
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_TOTAL_QUANTITY + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_TOTAL_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY);
+
+                    // The product keeps its store row in step. These only write the stock table,
+                    // and the stock triggers only write the total, so nothing loops.
+                    db.execSQL("CREATE TRIGGER inventory_stock_store_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN INSERT INTO " + StockEntry.TABLE_NAME + " VALUES (new." + InventoryEntry._ID
+                            + ", " + LocationEntry.STORE_ID + ", new." + InventoryEntry.COLUMN_QUANTITY + "); END");
+
+                    db.execSQL("CREATE TRIGGER inventory_stock_store_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN UPDATE " + StockEntry.TABLE_NAME
+                            + " SET " + StockEntry.COLUMN_QUANTITY + " = new." + InventoryEntry.COLUMN_QUANTITY
+                            + " WHERE " + StockEntry.COLUMN_PRODUCT_ID + " = new." + InventoryEntry._ID
+                            + " AND " + StockEntry.COLUMN_LOCATION_ID + " = " + LocationEntry.STORE_ID + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_stock_product_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN DELETE FROM " + StockEntry.TABLE_NAME
+                            + " WHERE " + StockEntry.COLUMN_PRODUCT_ID + " = old." + InventoryEntry._ID + "; END");
+
+                    // Totals move by the change, so keeping them costs the same however many
+                    // locations a product is stocked at
+                    db.execSQL("CREATE TRIGGER inventory_stock_total_insert AFTER INSERT ON " + StockEntry.TABLE_NAME
+                            + " BEGIN " + addToTotal("new", "new." + StockEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_stock_total_update AFTER UPDATE OF "
+                            + StockEntry.COLUMN_QUANTITY + " ON " + StockEntry.TABLE_NAME
+                            + " BEGIN " + addToTotal("new", "new." + StockEntry.COLUMN_QUANTITY
+                            + " - old." + StockEntry.COLUMN_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_stock_total_delete AFTER DELETE ON " + StockEntry.TABLE_NAME
+                            + " BEGIN " + addToTotal("old", "-old." + StockEntry.COLUMN_QUANTITY) + "; END");
+
+                    // The summary counts stock at every location from now on. A product's total
+                    // only changes through the stock triggers, which update it after the product
+                    // row is written, so the summary follows the total rather than the quantity.
+                    db.execSQL("DROP TRIGGER inventory_summary_insert");
+                    db.execSQL("DROP TRIGGER inventory_summary_update");
+                    db.execSQL("DROP TRIGGER inventory_summary_delete");
+
+                    db.execSQL("UPDATE " + SummaryEntry.TABLE_NAME + " SET "
+                            + SummaryEntry.COLUMN_TOTAL_VALUE + " = (SELECT IFNULL(SUM(" + InventoryEntry.COLUMN_PRICE
+                            + " * " + InventoryEntry.COLUMN_TOTAL_QUANTITY + "), 0) FROM " + InventoryEntry.TABLE_NAME + "), "
+                            + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = (SELECT IFNULL(SUM("
+                            + InventoryEntry.COLUMN_TOTAL_QUANTITY + "), 0) FROM " + InventoryEntry.TABLE_NAME + "), "
+                            + SummaryEntry.COLUMN_OUT_OF_STOCK_COUNT + " = (SELECT IFNULL(SUM("
+                            + InventoryEntry.COLUMN_TOTAL_QUANTITY + " <= 0), 0) FROM " + InventoryEntry.TABLE_NAME + ")"
+                            + " WHERE " + SummaryEntry._ID + " = " + SummaryEntry.ROW_ID);
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("new", "+", InventoryEntry.COLUMN_TOTAL_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_PRICE + ", " + InventoryEntry.COLUMN_TOTAL_QUANTITY
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("old", "-", InventoryEntry.COLUMN_TOTAL_QUANTITY) + "; "
+                            + updateSummary("new", "+", InventoryEntry.COLUMN_TOTAL_QUANTITY) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_summary_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + updateSummary("old", "-", InventoryEntry.COLUMN_TOTAL_QUANTITY) + "; END");
+                }
+            },
+            // Change feed for consumers mirroring the inventory
+            new Migration(9) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("CREATE TABLE " + ChangeEntry.TABLE_NAME + "("
+                            + ChangeEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
+                            + ChangeEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL,"
+                            + ChangeEntry.COLUMN_OP + " INTEGER NOT NULL,"
+                            + ChangeEntry.COLUMN_TIME + " INTEGER NOT NULL)");
+                    db.execSQL("CREATE INDEX " + ChangeEntry.INDEX_PRODUCT_OP + " ON " + ChangeEntry.TABLE_NAME
+                            + "(" + ChangeEntry.COLUMN_PRODUCT_ID + ", " + ChangeEntry.COLUMN_OP + ")");
+
+                    db.execSQL("CREATE TRIGGER inventory_changes_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + appendChange("new", ChangeEntry.OP_INSERT) + "; END");
+
+                    // Only the product's own columns: the totals and sync state written by other
+                    // triggers would log extra updates, including one for every insert
+                    db.execSQL("CREATE TRIGGER inventory_changes_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRICE + ", "
+                            + InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + ", " + InventoryEntry.COLUMN_SKU + ", "
+                            + InventoryEntry.COLUMN_REORDER_THRESHOLD
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + appendChange("new", ChangeEntry.OP_UPDATE) + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_changes_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " BEGIN " + appendChange("old", ChangeEntry.OP_DELETE) + "; END");
+
+                    // Stock elsewhere than the store changes the product's total without touching
+                    // the product's own columns. The store's stock is the product's quantity,
+                    // whose change is already logged.
+                    db.execSQL("CREATE TRIGGER inventory_changes_stock_insert AFTER INSERT ON " + StockEntry.TABLE_NAME
+                            + " WHEN new." + StockEntry.COLUMN_LOCATION_ID + " != " + LocationEntry.STORE_ID
+                            + " BEGIN " + appendStockChange("new") + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_changes_stock_update AFTER UPDATE OF "
+                            + StockEntry.COLUMN_QUANTITY + " ON " + StockEntry.TABLE_NAME
+                            + " WHEN new." + StockEntry.COLUMN_LOCATION_ID + " != " + LocationEntry.STORE_ID
+                            + " AND new." + StockEntry.COLUMN_QUANTITY + " != old." + StockEntry.COLUMN_QUANTITY
+                            + " BEGIN " + appendStockChange("new") + "; END");
+
+                    db.execSQL("CREATE TRIGGER inventory_changes_stock_delete AFTER DELETE ON " + StockEntry.TABLE_NAME
+                            + " WHEN old." + StockEntry.COLUMN_LOCATION_ID + " != " + LocationEntry.STORE_ID
+                            + " BEGIN " + appendStockChange("old") + "; END");
+                }
+            },
+            // Sync state of every product and the tombstones of synced products deleted here
+            new Migration(10) {
+                @Override
+                void migrate(MigrationDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_SYNC_ID + " TEXT");
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_SYNC_VERSION + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_SYNC_QUANTITY + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_SYNC_DIRTY + " INTEGER NOT NULL DEFAULT 1");
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_MODIFIED_TIME + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_MODIFIED_BY + " TEXT");
+                    db.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_SYNC_ID + " = " + NEW_SYNC_ID + ", "
+                            + InventoryEntry.COLUMN_MODIFIED_TIME + " = " + NOW_MILLIS);
+
+                    db.execSQL("CREATE UNIQUE INDEX " + InventoryEntry.INDEX_SYNC_ID
+                            + " ON " + InventoryEntry.TABLE_NAME + "(" + InventoryEntry.COLUMN_SYNC_ID + ")");
+                    db.execSQL("CREATE INDEX " + InventoryEntry.INDEX_SYNC_DIRTY
+                            + " ON " + InventoryEntry.TABLE_NAME + "(" + InventoryEntry.COLUMN_SYNC_DIRTY + ")");
+
+                    db.execSQL("CREATE TABLE " + TombstoneEntry.TABLE_NAME + "("
+                            + TombstoneEntry.COLUMN_SYNC_ID + " TEXT NOT NULL PRIMARY KEY,"
+                            + TombstoneEntry.COLUMN_TIME + " INTEGER NOT NULL)");
+
+                    // Rows the sync engine inserts come with their id
+                    db.execSQL("CREATE TRIGGER inventory_sync_insert AFTER INSERT ON " + InventoryEntry.TABLE_NAME
+                            + " WHEN new." + InventoryEntry.COLUMN_SYNC_ID + " IS NULL"
+                            + " BEGIN UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_SYNC_ID + " = " + NEW_SYNC_ID + ", "
+                            + InventoryEntry.COLUMN_MODIFIED_TIME + " = " + NOW_MILLIS
+                            + " WHERE " + InventoryEntry._ID + " = new." + InventoryEntry._ID + "; END");
+
+                    // The sync engine moves the version when it writes what the backend sent,
+                    // so only local changes make the row dirty, and make this device its author
+                    db.execSQL("CREATE TRIGGER inventory_sync_update AFTER UPDATE OF "
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRICE + ", "
+                            + InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + ", "
+                            + InventoryEntry.COLUMN_REORDER_THRESHOLD + ", " + InventoryEntry.COLUMN_SKU
+                            + " ON " + InventoryEntry.TABLE_NAME
+                            + " WHEN new." + InventoryEntry.COLUMN_SYNC_VERSION + " = old." + InventoryEntry.COLUMN_SYNC_VERSION
+                            + " BEGIN UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_SYNC_DIRTY + " = 1, "
+                            + InventoryEntry.COLUMN_MODIFIED_TIME + " = " + NOW_MILLIS + ", "
+                            + InventoryEntry.COLUMN_MODIFIED_BY + " = NULL"
+                            + " WHERE " + InventoryEntry._ID + " = new." + InventoryEntry._ID + "; END");
+
+                    // Products the backend never saw need no tombstone
+                    db.execSQL("CREATE TRIGGER inventory_sync_delete AFTER DELETE ON " + InventoryEntry.TABLE_NAME
+                            + " WHEN old." + InventoryEntry.COLUMN_SYNC_VERSION + " != 0"
+                            + " BEGIN INSERT OR REPLACE INTO " + TombstoneEntry.TABLE_NAME + " VALUES (old."
+                            + InventoryEntry.COLUMN_SYNC_ID + ", " + NOW_MILLIS + "); END");
+                }
+            }
+    };
+
+    /**
+     * Builds the INSERT appending to the change feed
+     *
+     * @param row "new" or "old", the product row in the trigger
+     * @param op  one of the ChangeEntry.OP_* codes
+     */
+    private static String appendChange(String row, int op) {
+        return "INSERT INTO " + ChangeEntry.TABLE_NAME + "("
+                + ChangeEntry.COLUMN_PRODUCT_ID + ", " + ChangeEntry.COLUMN_OP + ", " + ChangeEntry.COLUMN_TIME + ")"
+                + " VALUES (" + row + "." + InventoryEntry._ID + ", " + op + ", " + NOW_MILLIS + ")";
+    }
+
+    /**
+     * Builds the INSERT logging an update of a stock row's product. Nothing is logged when the
+     * product is gone, as when its stock is deleted along with it.
+     *
+     * @param row "new" or "old", the stock row in the trigger
+     */
+    private static String appendStockChange(String row) {
+        String productId = row + "." + StockEntry.COLUMN_PRODUCT_ID;
+        return "INSERT INTO " + ChangeEntry.TABLE_NAME + "("
+                + ChangeEntry.COLUMN_PRODUCT_ID + ", " + ChangeEntry.COLUMN_OP + ", " + ChangeEntry.COLUMN_TIME + ")"
+                + " SELECT " + productId + ", " + ChangeEntry.OP_UPDATE + ", " + NOW_MILLIS
+                + " WHERE EXISTS (SELECT 1 FROM " + InventoryEntry.TABLE_NAME
+                + " WHERE " + InventoryEntry._ID + " = " + productId + ")";
+    }
+
+    /**
+     * Builds the UPDATE adding a SQL expression to the total quantity of a stock row's product
+     *
+     * @param row   "new" or "old", the stock row in the trigger
+     * @param delta SQL expression to add
+     */
+    private static String addToTotal(String row, String delta) {
+        return "UPDATE " + InventoryEntry.TABLE_NAME
+                + " SET " + InventoryEntry.COLUMN_TOTAL_QUANTITY + " = "
+                + InventoryEntry.COLUMN_TOTAL_QUANTITY + " + " + delta
+                + " WHERE " + InventoryEntry._ID + " = " + row + "." + StockEntry.COLUMN_PRODUCT_ID;
+    }
+
+    /**
+     * Builds the INSERT appending a stock movement, from SQL expressions for its values
+     */
+    private static String appendMovement(String productId, String delta, String quantity) {
+        return "INSERT INTO " + MovementEntry.TABLE_NAME + "("
+                + MovementEntry.COLUMN_PRODUCT_ID + ", " + MovementEntry.COLUMN_DELTA + ", "
+                + MovementEntry.COLUMN_QUANTITY + ", " + MovementEntry.COLUMN_TIME + ")"
+                + " VALUES (" + productId + ", " + delta + ", " + quantity + ", " + NOW_MILLIS + ")";
+    }
+
+    /**
+     * Builds the UPDATE adding a row to, or removing it from, the summary counters
+     *
+     * @param row      "new" or "old", the trigger row to account for
+     * @param sign     "+" to add the row, "-" to remove it
+     * @param quantity column of the product holding the quantity to count
+     */
+    private static String updateSummary(String row, String sign, String quantity) {
+        return "UPDATE " + SummaryEntry.TABLE_NAME + " SET "
+                + SummaryEntry.COLUMN_TOTAL_VALUE + " = " + SummaryEntry.COLUMN_TOTAL_VALUE + " " + sign + " "
+                + row + "." + InventoryEntry.COLUMN_PRICE + " * " + row + "." + quantity + ", "
+                + SummaryEntry.COLUMN_PRODUCT_COUNT + " = " + SummaryEntry.COLUMN_PRODUCT_COUNT + " " + sign + " 1, "
+                + SummaryEntry.COLUMN_TOTAL_QUANTITY + " = " + SummaryEntry.COLUMN_TOTAL_QUANTITY + " " + sign + " "
+                + row + "." + quantity + ", "
+                + SummaryEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + SummaryEntry.COLUMN_OUT_OF_STOCK_COUNT + " " + sign
+                + " (" + row + "." + quantity + " <= 0)"
+                + " WHERE " + SummaryEntry._ID + " = " + SummaryEntry.ROW_ID;
+    }
+
+    /**
+     * Recreates a table with a new definition, for changes ALTER TABLE can't make. Rows are
+     * copied over, and the table's indexes and triggers are recreated as they were, along
+     * with its AUTOINCREMENT counter so deleted ids are never handed out again.
+     *
+     * @param db         to change
+     * @param table      to rebuild
+     * @param definition column list of the new table, in parentheses
+     * @param select     result columns filling the new table from the old one
+     */
+    static void rebuildTable(MigrationDatabase db, String table, String definition, String select) {
+        List<String> dependents = db.queryStrings("SELECT sql FROM sqlite_master WHERE tbl_name = ?"
+                + " AND type IN ('index', 'trigger') AND sql IS NOT NULL", new String[]{table});
+        List<String> sequence = db.queryStrings("SELECT seq FROM sqlite_sequence WHERE name = ?",
+                new String[]{table});
+
+        String rebuilt = table + "_rebuild";
+        db.execSQL("CREATE TABLE " + rebuilt + definition);
+        db.execSQL("INSERT INTO " + rebuilt + " SELECT " + select + " FROM " + table);
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + table);
+
+        if (!sequence.isEmpty()) {
+            // The copy only moved the counter up to the highest surviving id
+            db.execSQL("DELETE FROM sqlite_sequence WHERE name = ?", new Object[]{table});
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)",
+                    new Object[]{table, Long.parseLong(sequence.get(0))});
+        }
+        for (String sql : dependents) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Creates the version 1 schema, which a fresh database starts from before being migrated
+     */
+    static void createVersion1(MigrationDatabase db) {
+        db.execSQL(
+                "CREATE TABLE " + InventoryEntry.TABLE_NAME + "("
+                        + InventoryEntry._ID + " INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT,"
+                        + InventoryEntry.COLUMN_PRODUCT_NAME + " TINYTEXT NOT NULL,"
+                        + InventoryEntry.COLUMN_PRICE + " FLOAT NOT NULL,"
+                        + InventoryEntry.COLUMN_QUANTITY + " INT NOT NULL,"
+                        + InventoryEntry.COLUMN_SUPPLIER_NAME + " TINYTEXT NOT NULL,"
+                        + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + " BIGINT NOT NULL);"
+        );
+    }
+
+    /**
+     * Applies the migrations in order. The caller runs this inside a transaction, so a failing
+     * step leaves the database untouched.
+     *
+     * @param db         to migrate
+     * @param oldVersion current version of the schema
+     * @param newVersion version to migrate to
+     */
+    static void migrate(MigrationDatabase db, int oldVersion, int newVersion) {
+        int version = oldVersion;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= oldVersion || migration.version > newVersion) {
+                continue;
+            }
+            if (migration.version != version + 1) {
+                throw new IllegalStateException("Missing migration to version " + (version + 1));
+            }
+            migration.migrate(db);
+            version = migration.version;
+        }
+
+        if (version != newVersion) {
+            throw new IllegalStateException("Missing migration to version " + (version + 1));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.livelycoder.inventory.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between prices as typed or shown (major units, e.g. 25.23) and as stored
+ * (integer minor units, e.g. 2523).
+ */
+public final class Prices {
+    private static final int MINOR_DIGITS = 2;
+
+    /**
+     * Digits of {@link Long#MAX_VALUE}, the most a price in minor units can have
+     */
+    private static final int MAX_DIGITS = 19;
+
+    private Prices() {
+        // Make this class uninstantiable
+    }
+
+    /**
+     * Parses a price in major units, rounding half up to the nearest minor unit
+     *
+     * @throws NumberFormatException if the text isn't a number or is out of range
+     */
+    public static long parse(String text) {
+        BigDecimal price = new BigDecimal(text.trim());
+        // Settled before setScale, which would work through every digit of an exponent such
+        // as 9e99999999 or 1e-99999999
+        long integerDigits = (long) price.precision() - price.scale();
+        if (price.signum() == 0 || integerDigits < -MINOR_DIGITS) {
+            // Below a thousandth, which rounds to nothing
+            return 0;
+        }
+        if (integerDigits > MAX_DIGITS - MINOR_DIGITS) {
+            throw new NumberFormatException(text);
+        }
+
+        try {
+            return price.setScale(MINOR_DIGITS, RoundingMode.HALF_UP)
+                    .movePointRight(MINOR_DIGITS)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(text);
+        }
+    }
+
+    /**
+     * Returns the price in major units, exactly
+     */
+    public static BigDecimal toMajor(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, MINOR_DIGITS);
+    }
+
+    /**
+     * Formats the price in major units for editing, e.g. "25.23"
+     */
+    public static String format(long minorUnits) {
+        return toMajor(minorUnits).toPlainString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.livelycoder.inventory.data;
+
+/**
+ * Immutable snapshot of the inventory columns shown in the product list
+ */
+public final class Product {
+    private final long id;
+    private final String name;
+    private final long price;
+    private final int quantity;
+    private final int totalQuantity;
+
+    public Product(long id, String name, long price, int quantity, int totalQuantity) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.totalQuantity = totalQuantity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the price in minor units
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Returns the stock at the store
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Returns the stock across every location
+     */
+    public int getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Product)) {
+            return false;
+        }
+        Product product = (Product) o;
+        return id == product.id
+                && price == product.price
+                && quantity == product.quantity
+                && totalQuantity == product.totalQuantity
+                && (name != null ? name.equals(product.name) : product.name == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + (int) (price ^ (price >>> 32));
+        result = 31 * result + quantity;
+        result = 31 * result + totalQuantity;
+        return result;
+    }
+}
@@ -0,0 +1,192 @@
+package com.livelycoder.inventory.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * Least recently used cache of whole product rows, keyed by _ID, in front of the provider's
+ * single product queries. Its size is an estimate of the bytes the rows take.
+ * <p>
+ * A read that started before a write may finish after it. Every invalidation bumps a
+ * generation, and a row read from the database is only cached if no invalidation happened
+ * since the read began, so such a read can't put a stale row back.
+ */
+final class ProductCache {
+
+    /**
+     * Columns of a cached row, in order. A query without a projection gets these, so every
+     * inventory column belongs here.
+     */
+    static final String[] COLUMNS = new String[]{
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_SKU,
+            InventoryEntry.COLUMN_TOTAL_QUANTITY,
+            InventoryEntry.COLUMN_SYNC_ID,
+            InventoryEntry.COLUMN_SYNC_VERSION,
+            InventoryEntry.COLUMN_SYNC_QUANTITY,
+            InventoryEntry.COLUMN_SYNC_DIRTY,
+            InventoryEntry.COLUMN_MODIFIED_TIME,
+            InventoryEntry.COLUMN_MODIFIED_BY
+    };
+
+    /**
+     * Rough cost of an entry besides its strings: the key, the array and the boxed numbers
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final LruCache<Long, Object[]> rows;
+
+    /**
+     * Guarded by this
+     */
+    private long generation;
+
+    /**
+     * @param maxBytes estimated size the cached rows may take
+     */
+    ProductCache(int maxBytes) {
+        rows = new LruCache<Long, Object[]>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Object[] row) {
+                int size = ENTRY_OVERHEAD_BYTES;
+                for (Object value : row) {
+                    if (value instanceof String) {
+                        size += 2 * ((String) value).length();
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns true if a cached row can answer a query for the given columns
+     */
+    static boolean covers(String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (indexOf(column) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the generation to pass to {@link #put(long, long, Object[])} for a read
+     * starting now
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * @return the cached row, or null on a miss
+     */
+    Object[] get(long id) {
+        return rows.get(id);
+    }
+
+    /**
+     * Caches a row read from the database, unless it was invalidated since the read began
+     *
+     * @param generation returned by {@link #generation()} before the read
+     */
+    synchronized void put(long generation, long id, Object[] row) {
+        if (generation == this.generation) {
+            rows.put(id, row);
+        }
+    }
+
+    /**
+     * Drops a product that was changed or deleted
+     */
+    synchronized void invalidate(long id) {
+        generation++;
+        rows.remove(id);
+    }
+
+    /**
+     * Drops every product, after a change whose rows aren't known
+     */
+    synchronized void invalidateAll() {
+        generation++;
+        rows.evictAll();
+    }
+
+    int hitCount() {
+        return rows.hitCount();
+    }
+
+    int missCount() {
+        return rows.missCount();
+    }
+
+    int evictionCount() {
+        return rows.evictionCount();
+    }
+
+    /**
+     * Decodes the current row of a cursor over {@link #COLUMNS}
+     */
+    static Object[] readRow(Cursor cursor) {
+        Object[] row = new Object[COLUMNS.length];
+        for (int i = 0; i < row.length; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row[i] = cursor.getLong(i);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    row[i] = cursor.getDouble(i);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    row[i] = cursor.getBlob(i);
+                    break;
+                default:
+                    row[i] = cursor.getString(i);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Builds a cursor over the requested columns of a row
+     *
+     * @param projection columns to return, all of {@link #COLUMNS} when null
+     * @param row        to return, null for an empty cursor
+     */
+    static Cursor toCursor(String[] projection, Object[] row) {
+        String[] columns = projection != null ? projection : COLUMNS;
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        if (row != null) {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = row[indexOf(columns[i])];
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,196 @@
+package com.livelycoder.inventory.data;
+
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayDeque;
+
+/**
+ * Precompiled statements for the fixed-shape single product operations. Arguments are bound
+ * directly, so the hot paths neither build SQL nor allocate selection arguments.
+ * <p>
+ * A statement keeps its bindings while it runs, so every call borrows a statement of its own
+ * from a small pool and hands it back cleared. One instance is shared by all the binder
+ * threads: a statement is only compiled when every pooled one is in use, at most
+ * {@link #MAX_IDLE} of each kind are kept, and {@link #close()} releases them. No lock is
+ * held while a statement runs, so a call waiting on the database never blocks another
+ * thread's call.
+ */
+final class ProductStatements {
+    /**
+     * Idle statements kept per kind, enough for the binder threads that write at once
+     */
+    private static final int MAX_IDLE = 4;
+
+    private final SQLiteOpenHelper dbHelper;
+
+    private final Pool idBySku = new Pool(
+            "SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryEntry.COLUMN_SKU + " = ?");
+
+    private final Pool quantityById = new Pool(
+            "SELECT " + InventoryEntry.COLUMN_QUANTITY + " FROM " + InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryEntry._ID + " = ?");
+
+    private final Pool updateQuantityById = new Pool(
+            "UPDATE " + InventoryEntry.TABLE_NAME
+                    + " SET " + InventoryEntry.COLUMN_QUANTITY + " = ?"
+                    + " WHERE " + InventoryEntry._ID + " = ?");
+
+    private final Pool addQuantityById = new Pool(
+            "UPDATE " + InventoryEntry.TABLE_NAME
+                    + " SET " + InventoryEntry.COLUMN_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY + " + ?"
+                    + " WHERE " + InventoryEntry._ID + " = ?"
+                    + " AND " + InventoryEntry.COLUMN_QUANTITY + " + ? >= 0");
+
+    private final Pool deleteById = new Pool(
+            "DELETE FROM " + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry._ID + " = ?");
+
+    /**
+     * @param dbHelper whose writable database the statements are compiled on, opened on first use
+     */
+    ProductStatements(SQLiteOpenHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Looks a product up through the unique SKU index
+     *
+     * @return _ID of the product, or -1 if no product has the SKU
+     */
+    long idBySku(String sku) {
+        SQLiteStatement statement = idBySku.acquire();
+        try {
+            statement.bindString(1, sku);
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        } finally {
+            idBySku.release(statement);
+        }
+    }
+
+    /**
+     * @return quantity of the product, or -1 if there is no such product
+     */
+    long quantity(long id) {
+        SQLiteStatement statement = quantityById.acquire();
+        try {
+            statement.bindLong(1, id);
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        } finally {
+            quantityById.release(statement);
+        }
+    }
+
+    /**
+     * Sets the quantity of a product
+     *
+     * @return number of rows updated
+     */
+    int updateQuantity(long id, long quantity) {
+        SQLiteStatement statement = updateQuantityById.acquire();
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, id);
+            return statement.executeUpdateDelete();
+        } finally {
+            updateQuantityById.release(statement);
+        }
+    }
+
+    /**
+     * Adds delta to the quantity of a product unless that would make it negative
+     *
+     * @return number of rows updated
+     */
+    int addQuantity(long id, long delta) {
+        SQLiteStatement statement = addQuantityById.acquire();
+        try {
+            statement.bindLong(1, delta);
+            statement.bindLong(2, id);
+            statement.bindLong(3, delta);
+            return statement.executeUpdateDelete();
+        } finally {
+            addQuantityById.release(statement);
+        }
+    }
+
+    /**
+     * Deletes a product
+     *
+     * @return number of rows deleted
+     */
+    int delete(long id) {
+        SQLiteStatement statement = deleteById.acquire();
+        try {
+            statement.bindLong(1, id);
+            return statement.executeUpdateDelete();
+        } finally {
+            deleteById.release(statement);
+        }
+    }
+
+    /**
+     * Closes the pooled statements. Statements still borrowed are closed when handed back.
+     */
+    void close() {
+        idBySku.close();
+        quantityById.close();
+        updateQuantityById.close();
+        addQuantityById.close();
+        deleteById.close();
+    }
+
+    /**
+     * Compiled statements of one kind that aren't in use
+     */
+    private final class Pool {
+        private final String sql;
+
+        /**
+         * Guarded by this, as is closed
+         */
+        private final ArrayDeque<SQLiteStatement> idle = new ArrayDeque<>();
+
+        private boolean closed;
+
+        Pool(String sql) {
+            this.sql = sql;
+        }
+
+        SQLiteStatement acquire() {
+            synchronized (this) {
+                SQLiteStatement statement = idle.poll();
+                if (statement != null) {
+                    return statement;
+                }
+            }
+            return dbHelper.getWritableDatabase().compileStatement(sql);
+        }
+
+        void release(SQLiteStatement statement) {
+            statement.clearBindings();
+            synchronized (this) {
+                if (!closed && idle.size() < MAX_IDLE) {
+                    idle.push(statement);
+                    return;
+                }
+            }
+            statement.close();
+        }
+
+        synchronized void close() {
+            closed = true;
+            for (SQLiteStatement statement : idle) {
+                statement.close();
+            }
+            idle.clear();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.livelycoder.inventory.data;
+
+import android.os.Bundle;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts and latency histograms for the provider, per operation and URI match code.
+ * <p>
+ * Everything lives in one preallocated array of atomic counters, so recording a call takes a
+ * handful of atomic increments: no lock and no allocation, cheap enough to stay on in release
+ * builds. Latencies go into power-of-two microsecond buckets; see
+ * {@link InventoryContract#METHOD_PROVIDER_METRICS} for the layout callers get.
+ */
+final class ProviderMetrics {
+
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int BULK_INSERT = 2;
+    static final int UPDATE = 3;
+    static final int DELETE = 4;
+
+    private static final String[] OPERATION_NAMES = new String[]{
+            "query", "insert", "bulk_insert", "update", "delete"
+    };
+
+    private static final int CALLS = InventoryContract.METRICS_CALLS;
+    private static final int ERRORS = InventoryContract.METRICS_ERRORS;
+    private static final int ROWS = InventoryContract.METRICS_ROWS;
+    private static final int TOTAL_MICROS = InventoryContract.METRICS_TOTAL_MICROS;
+    private static final int FIRST_BUCKET = InventoryContract.METRICS_FIRST_BUCKET;
+    private static final int BUCKETS = InventoryContract.METRICS_BUCKETS;
+
+    /**
+     * Counters per operation and URI
+     */
+    private static final int STRIDE = FIRST_BUCKET + BUCKETS;
+
+    private final int firstCode;
+
+    /**
+     * Names of the URIs by slot; slot 0 collects URIs that didn't match
+     */
+    private final String[] uriNames;
+
+    private final AtomicLongArray counters;
+
+    /**
+     * @param firstCode URI match code of uriNames[0]
+     * @param uriNames  names of the consecutive URI match codes starting at firstCode
+     */
+    ProviderMetrics(int firstCode, String[] uriNames) {
+        this.firstCode = firstCode;
+        this.uriNames = new String[uriNames.length + 1];
+        this.uriNames[0] = "unknown";
+        System.arraycopy(uriNames, 0, this.uriNames, 1, uriNames.length);
+        counters = new AtomicLongArray(OPERATION_NAMES.length * this.uriNames.length * STRIDE);
+    }
+
+    /**
+     * Records one provider call
+     *
+     * @param operation  one of the operation constants
+     * @param match      URI match code, or UriMatcher.NO_MATCH
+     * @param startNanos System.nanoTime() when the call began
+     * @param rows       rows returned or changed, 0 when not known
+     * @param failed     whether the call threw
+     */
+    void record(int operation, int match, long startNanos, int rows, boolean failed) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        int base = (operation * uriNames.length + slot(match)) * STRIDE;
+
+        counters.incrementAndGet(base + CALLS);
+        if (failed) {
+            counters.incrementAndGet(base + ERRORS);
+        }
+        if (rows > 0) {
+            counters.addAndGet(base + ROWS, rows);
+        }
+        counters.addAndGet(base + TOTAL_MICROS, micros);
+        counters.incrementAndGet(base + FIRST_BUCKET + bucket(micros));
+    }
+
+    private int slot(int match) {
+        int slot = match - firstCode + 1;
+        return slot > 0 && slot < uriNames.length ? slot : 0;
+    }
+
+    /**
+     * Bucket i holds calls that took less than 2^i microseconds and, past the first, at least
+     * 2^(i-1). The last bucket also takes everything slower.
+     */
+    private static int bucket(long micros) {
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+
+    /**
+     * Copies the counters of every operation and URI that saw a call into a bundle
+     */
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+            for (int slot = 0; slot < uriNames.length; slot++) {
+                long[] values = read(operation, slot);
+                if (values[CALLS] != 0) {
+                    bundle.putLongArray(OPERATION_NAMES[operation] + ":" + uriNames[slot], values);
+                }
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Prints a table of the counters, for dumpsys
+     */
+    void dump(PrintWriter writer) {
+        writer.println("Provider metrics (latencies in microseconds, percentiles are bucket upper bounds):");
+        writer.printf("  %-24s %8s %6s %8s %8s %8s %8s %8s%n",
+                "operation:uri", "calls", "errors", "rows", "mean", "p50", "p90", "p99");
+        for (int operation = 0; operation < OPERATION_NAMES.length; operation++) {
+            for (int slot = 0; slot < uriNames.length; slot++) {
+                long[] values = read(operation, slot);
+                long calls = values[CALLS];
+                if (calls == 0) {
+                    continue;
+                }
+                writer.printf("  %-24s %8d %6d %8d %8d %8d %8d %8d%n",
+                        OPERATION_NAMES[operation] + ":" + uriNames[slot],
+                        calls, values[ERRORS], values[ROWS], values[TOTAL_MICROS] / calls,
+                        percentile(values, 0.5), percentile(values, 0.9), percentile(values, 0.99));
+            }
+        }
+    }
+
+    private long[] read(int operation, int slot) {
+        int base = (operation * uriNames.length + slot) * STRIDE;
+        long[] values = new long[STRIDE];
+        for (int i = 0; i < STRIDE; i++) {
+            values[i] = counters.get(base + i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given fraction of the calls
+     */
+    private static long percentile(long[] values, double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += values[FIRST_BUCKET + i];
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += values[FIRST_BUCKET + i];
+            if (seen >= target && seen != 0) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.livelycoder.inventory.data;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v4.util.LongSparseArray;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * Merges quick runs of quantity taps into one adjustment per product. Taps only change an
+ * in-memory delta, and the combined delta is written through {@link WriteQueue} once no tap
+ * came for the idle window, or straight away on {@link #flush()}. The owner calls flush()
+ * from onPause.
+ * <p>
+ * This is not durable. flush() hands the adjustments to the write queue's thread and returns
+ * without waiting, so until that thread has run them they exist only in memory. If the
+ * process is killed in between, usually a few milliseconds after the screen pauses, the taps
+ * are lost. Writing them on the main thread would close the gap at the cost of disk access
+ * there, and persisting them first would need the adjustment to be idempotent.
+ * <p>
+ * Must be used on the main thread.
+ */
+public final class QuantityBuffer {
+
+    /**
+     * Receives the outcome of every flushed adjustment
+     */
+    public interface Listener {
+        /**
+         * @param id       of the product
+         * @param delta    that was written
+         * @param quantity new quantity, or -1 if the adjustment was rejected
+         */
+        void onQuantityFlushed(long id, int delta, int quantity);
+    }
+
+    private final WriteQueue writeQueue;
+    private final Object tag;
+    private final long idleMillis;
+    private final Listener listener;
+
+    private final Handler handler = new Handler();
+
+    /**
+     * Deltas not written yet, by product id
+     */
+    private final LongSparseArray<Integer> buffered = new LongSparseArray<>();
+
+    /**
+     * Deltas handed to the write queue whose outcome hasn't come back, by product id
+     */
+    private final LongSparseArray<Integer> inFlight = new LongSparseArray<>();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param writeQueue to write through
+     * @param tag        to submit writes with, see {@link WriteQueue#cancel(Object)}
+     * @param idleMillis time without taps before writing
+     * @param listener   to report the outcome of the writes to
+     */
+    public QuantityBuffer(WriteQueue writeQueue, Object tag, long idleMillis, Listener listener) {
+        this.writeQueue = writeQueue;
+        this.tag = tag;
+        this.idleMillis = idleMillis;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds delta to the buffered adjustment of a product and restarts the idle window
+     */
+    public void add(long id, int delta) {
+        buffered.put(id, buffered.get(id, 0) + delta);
+        handler.removeCallbacks(flushRunnable);
+        handler.postDelayed(flushRunnable, idleMillis);
+    }
+
+    /**
+     * Returns the adjustment of a product not reflected in the database yet, to add to the
+     * stored quantity when showing it
+     */
+    public int pending(long id) {
+        return buffered.get(id, 0) + inFlight.get(id, 0);
+    }
+
+    /**
+     * Writes every buffered adjustment now
+     */
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        for (int i = 0; i < buffered.size(); i++) {
+            long id = buffered.keyAt(i);
+            int delta = buffered.valueAt(i);
+            if (delta != 0) {
+                submit(id, delta);
+            }
+        }
+        buffered.clear();
+    }
+
+    private void submit(final long id, final int delta) {
+        inFlight.put(id, inFlight.get(id, 0) + delta);
+
+        final Bundle extras = new Bundle();
+        extras.putInt(InventoryContract.EXTRA_DELTA, delta);
+
+        writeQueue.submit(tag, new WriteQueue.Write<Bundle>() {
+            @Override
+            public Bundle write(ContentResolver contentResolver) {
+                return contentResolver.call(
+                        InventoryEntry.CONTENT_URI,
+                        InventoryContract.METHOD_ADJUST_QUANTITY,
+                        String.valueOf(id),
+                        extras
+                );
+            }
+        }, new WriteQueue.Callback<Bundle>() {
+            @Override
+            public void onWritten(Bundle result) {
+                int remaining = inFlight.get(id, 0) - delta;
+                if (remaining == 0) {
+                    inFlight.remove(id);
+                } else {
+                    inFlight.put(id, remaining);
+                }
+
+                int quantity = -1;
+                if (result != null && result.containsKey(InventoryContract.EXTRA_QUANTITY)) {
+                    quantity = result.getInt(InventoryContract.EXTRA_QUANTITY);
+                }
+                listener.onQuantityFlushed(id, delta, quantity);
+            }
+        });
+    }
+}
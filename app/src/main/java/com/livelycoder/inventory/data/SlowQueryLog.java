@@ -0,0 +1,117 @@
+package com.livelycoder.inventory.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.net.Uri;
+import android.util.Log;
+
+/**
+ * Debug build aid logging the provider's SQL that runs over a time budget.
+ * <p>
+ * Reads are timed through the cursor factory handed to the database: a query only runs when
+ * its cursor fills its first window, so that is what gets timed, and a slow one is logged
+ * with its query plan. Writes go through framework calls that don't expose their SQL, so the
+ * provider times those itself and reports them through {@link #onWrite(String, Uri, long)}.
+ */
+final class SlowQueryLog {
+    private static final String LOG_TAG = SlowQueryLog.class.getSimpleName();
+
+    private final long thresholdNanos;
+
+    /**
+     * Creates cursors that time their first fill
+     */
+    final SQLiteDatabase.CursorFactory cursorFactory = new SQLiteDatabase.CursorFactory() {
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                                String editTable, SQLiteQuery query) {
+            return new TimedCursor(db, masterQuery, editTable, query);
+        }
+    };
+
+    /**
+     * Creates plain cursors, for the query plans, so explaining a slow query can't log again
+     */
+    private static final SQLiteDatabase.CursorFactory PLAIN_CURSOR_FACTORY = new SQLiteDatabase.CursorFactory() {
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                                String editTable, SQLiteQuery query) {
+            return new SQLiteCursor(masterQuery, editTable, query);
+        }
+    };
+
+    /**
+     * @param thresholdMillis time an operation may take before it is logged
+     */
+    SlowQueryLog(long thresholdMillis) {
+        thresholdNanos = thresholdMillis * 1000000;
+    }
+
+    /**
+     * Logs a provider write if it went over the budget
+     *
+     * @param operation  name of the provider method
+     * @param uri        it was called with
+     * @param startNanos System.nanoTime() when the write began
+     */
+    void onWrite(String operation, Uri uri, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        if (elapsed > thresholdNanos) {
+            Log.w(LOG_TAG, "Slow " + operation + " (" + elapsed / 1000000 + " ms) on " + uri);
+        }
+    }
+
+    private void onQuery(SQLiteDatabase db, String sql, long elapsed) {
+        StringBuilder message = new StringBuilder("Slow query (")
+                .append(elapsed / 1000000).append(" ms): ").append(sql);
+
+        // Arguments aren't available here; unbound ones are NULL, which rarely changes the plan
+        Cursor plan = db.rawQueryWithFactory(PLAIN_CURSOR_FACTORY, "EXPLAIN QUERY PLAN " + sql,
+                null, null);
+        try {
+            int detail = plan.getColumnIndex("detail");
+            while (plan.moveToNext()) {
+                message.append("\n    ").append(plan.getString(detail));
+            }
+        } catch (RuntimeException e) {
+            message.append("\n    no plan: ").append(e.getMessage());
+        } finally {
+            plan.close();
+        }
+
+        Log.w(LOG_TAG, message.toString());
+    }
+
+    private final class TimedCursor extends SQLiteCursor {
+        private final SQLiteDatabase db;
+        private final String sql;
+        private boolean timed;
+
+        TimedCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            super(driver, editTable, query);
+            this.db = db;
+            // SQLiteQuery only exposes its SQL through toString, as "SQLiteQuery: <sql>"
+            String description = query.toString();
+            int start = description.indexOf(": ");
+            sql = start != -1 ? description.substring(start + 2) : description;
+        }
+
+        @Override
+        public int getCount() {
+            if (timed) {
+                return super.getCount();
+            }
+            timed = true;
+            long start = System.nanoTime();
+            int count = super.getCount();
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > thresholdNanos) {
+                onQuery(db, sql, elapsed);
+            }
+            return count;
+        }
+    }
+}
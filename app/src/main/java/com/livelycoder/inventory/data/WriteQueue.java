@@ -0,0 +1,162 @@
+package com.livelycoder.inventory.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the writes started from the UI one after another on a background thread, and hands
+ * their results back on the main thread.
+ * <p>
+ * Writes run in the order they were submitted, so a delete submitted after an update can't
+ * overtake it. A write the user asked for always runs; {@link #cancel(Object)} only stops
+ * its result from being delivered to a screen that has gone away.
+ * <p>
+ * {@link #submit(Object, Write, Callback)} and {@link #cancel(Object)} must be called on the
+ * main thread.
+ */
+public final class WriteQueue {
+    private static final String LOG_TAG = WriteQueue.class.getSimpleName();
+
+    /**
+     * A write to run on the background thread
+     */
+    public interface Write<T> {
+        T write(ContentResolver contentResolver);
+    }
+
+    /**
+     * Receives the outcome of a write on the main thread
+     */
+    public abstract static class Callback<T> {
+        public abstract void onWritten(T result);
+
+        /**
+         * Called when the write threw. Rethrows by default, the same as a failed write on the
+         * main thread would have.
+         */
+        public void onFailed(RuntimeException e) {
+            throw e;
+        }
+    }
+
+    private static WriteQueue instance;
+
+    private final ContentResolver contentResolver;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "inventory-writes");
+        }
+    });
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Writes whose result hasn't been delivered yet. Only touched on the main thread.
+     */
+    private final List<Task<?>> inFlight = new ArrayList<>();
+
+    private WriteQueue(Context context) {
+        contentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    public static synchronized WriteQueue get(Context context) {
+        if (instance == null) {
+            instance = new WriteQueue(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a write
+     *
+     * @param tag      identifies the caller for {@link #cancel(Object)}, usually the activity
+     * @param write    to run on the background thread
+     * @param callback to receive the result on the main thread, may be null
+     */
+    public <T> void submit(Object tag, Write<T> write, Callback<T> callback) {
+        final Task<T> task = new Task<>(tag, write, callback);
+        inFlight.add(task);
+        executor.execute(task);
+    }
+
+    /**
+     * Drops the callbacks of every write submitted with tag. The writes themselves still run.
+     */
+    public void cancel(Object tag) {
+        Iterator<Task<?>> iterator = inFlight.iterator();
+        while (iterator.hasNext()) {
+            Task<?> task = iterator.next();
+            if (task.tag == tag) {
+                task.callback = null;
+                iterator.remove();
+            }
+        }
+    }
+
+    private final class Task<T> implements Runnable {
+        final Object tag;
+        final Write<T> write;
+        /**
+         * Only touched on the main thread
+         */
+        Callback<T> callback;
+
+        Task(Object tag, Write<T> write, Callback<T> callback) {
+            this.tag = tag;
+            this.write = write;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            T result = null;
+            RuntimeException error = null;
+            try {
+                result = write.write(contentResolver);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            deliver(result, error);
+        }
+
+        private void deliver(final T result, final RuntimeException error) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    inFlight.remove(Task.this);
+                    if (callback == null) {
+                        if (error != null) {
+                            Log.e(LOG_TAG, "Write failed after its caller went away", error);
+                        }
+                        return;
+                    }
+                    if (error != null) {
+                        callback.onFailed(error);
+                    } else {
+                        callback.onWritten(result);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.livelycoder.inventory.importer;
+
+/**
+ * Thrown when a catalog file can't be parsed at all, as opposed to a single bad row
+ */
+public class CatalogFormatException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CatalogFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,158 @@
+package com.livelycoder.inventory.importer;
+
+import android.app.IntentService;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+
+import com.livelycoder.inventory.R;
+
+import java.io.IOException;
+
+/**
+ * Imports a catalog in the background and shows its progress in a notification.
+ * <p>
+ * The number of records committed is saved after every chunk. If the process dies the intent
+ * is redelivered and the import continues from there, and importing the same file again
+ * after a failure does the same.
+ */
+public class CatalogImportService extends IntentService {
+    private static final String LOG_TAG = CatalogImportService.class.getSimpleName();
+
+    private static final String EXTRA_MIME_TYPE = "mime_type";
+
+    private static final String PREFS_NAME = "catalog_import";
+
+    private static final String CHANNEL_ID = "catalog_import";
+
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Import running on the worker thread, read by onDestroy on the main thread
+     */
+    private volatile CatalogImporter importer;
+
+    /**
+     * Starts importing the catalog at source
+     *
+     * @param context  to start the service from
+     * @param source   content URI of a CSV or JSON catalog
+     * @param mimeType of the catalog, may be null
+     */
+    public static void start(Context context, Uri source, String mimeType) {
+        Intent intent = new Intent(context, CatalogImportService.class);
+        intent.setData(source);
+        intent.putExtra(EXTRA_MIME_TYPE, mimeType);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        // Foreground, so a long import isn't stopped once the app leaves the screen
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    public CatalogImportService() {
+        super(LOG_TAG);
+        setIntentRedelivery(true);
+    }
+
+    /**
+     * Called while an import runs only when the service is stopped explicitly; the importer
+     * then stops at the next record and commits the ones it read, so the run can be resumed.
+     */
+    @Override
+    public void onDestroy() {
+        CatalogImporter running = importer;
+        if (running != null) {
+            running.cancel();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null || intent.getData() == null) {
+            return;
+        }
+
+        final Uri source = intent.getData();
+        CatalogImporter.Format format = CatalogImporter.detectFormat(
+                intent.getStringExtra(EXTRA_MIME_TYPE), source);
+        if (format == null) {
+            format = CatalogImporter.Format.CSV;
+        }
+
+        final SharedPreferences progress = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        final String key = source.toString();
+        final long skipRecords = progress.getLong(key, 0);
+
+        final NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        createChannel(notificationManager);
+        final NotificationCompat.Builder notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_add)
+                .setContentTitle(getString(R.string.import_in_progress))
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .setProgress(0, 0, true);
+        startForeground(NOTIFICATION_ID, notification.build());
+
+        final long[] errors = new long[1];
+        importer = new CatalogImporter(getContentResolver());
+
+        String result;
+        try {
+            importer.importCatalog(source, format, skipRecords, new CatalogImporter.Listener() {
+                @Override
+                public void onChunkCommitted(long recordsDone, long rowsImported) {
+                    // Written through before going on, so a redelivered intent never imports
+                    // the committed chunk twice
+                    progress.edit().putLong(key, recordsDone).commit();
+                    notification.setContentText(getString(R.string.import_progress, recordsDone));
+                    notificationManager.notify(NOTIFICATION_ID, notification.build());
+                }
+
+                @Override
+                public void onRecordError(long record, String message) {
+                    errors[0]++;
+                    Log.w(LOG_TAG, "Skipping record " + record + " of " + source + " : " + message);
+                }
+            });
+            if (importer.isCancelled()) {
+                // Keep the saved position so the next run resumes
+                result = getString(R.string.import_interrupted);
+            } else {
+                progress.edit().remove(key).commit();
+                result = getString(R.string.import_finished, errors[0]);
+            }
+        } catch (IOException | CatalogFormatException e) {
+            Log.e(LOG_TAG, "Failed to import " + source, e);
+            result = getString(R.string.import_failed);
+        } catch (RuntimeException e) {
+            // Caught rather than crashing the process, which would redeliver the intent and
+            // fail the same way again. The saved position goes too, as after a finished import.
+            Log.e(LOG_TAG, "Import of " + source + " crashed", e);
+            progress.edit().remove(key).commit();
+            result = getString(R.string.import_failed);
+        }
+
+        stopForeground(false);
+        notification.setContentTitle(result)
+                .setContentText(null)
+                .setOngoing(false)
+                .setProgress(0, 0, false);
+        notificationManager.notify(NOTIFICATION_ID, notification.build());
+    }
+
+    private void createChannel(NotificationManager notificationManager) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.import_channel_name), NotificationManager.IMPORTANCE_LOW);
+            notificationManager.createNotificationChannel(channel);
+        }
+    }
+}
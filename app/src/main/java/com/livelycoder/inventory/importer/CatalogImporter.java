@@ -0,0 +1,294 @@
+package com.livelycoder.inventory.importer;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Prices;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Streams a supplier catalog into the inventory. Records are parsed one at a time and written
+ * in chunks through {@link ContentResolver#bulkInsert(Uri, ContentValues[])}, one transaction
+ * per chunk, so memory stays flat whatever the size of the file.
+ * <p>
+ * Because every chunk commits on its own, the number of records handled up to the last
+ * committed chunk is a safe point to resume from after an interruption.
+ */
+public final class CatalogImporter {
+
+    public enum Format {
+        CSV,
+        JSON
+    }
+
+    /**
+     * Receives progress while a catalog is imported. Called on the importing thread.
+     */
+    public interface Listener {
+        /**
+         * Called after every committed chunk
+         *
+         * @param recordsDone  records handled so far, including skipped and failed ones. Pass
+         *                     this back as skipRecords to resume after this chunk.
+         * @param rowsImported products inserted by this run so far
+         */
+        void onChunkCommitted(long recordsDone, long rowsImported);
+
+        /**
+         * Called for every record that couldn't be imported
+         *
+         * @param record  1-based index of the record in the file
+         * @param message why it was rejected
+         */
+        void onRecordError(long record, String message);
+    }
+
+    /**
+     * Names of the catalog fields, the same as the inventory columns
+     */
+    static final String[] FIELDS = new String[]{
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER
+    };
+
+    private static final int FIELD_PRODUCT_NAME = 0;
+    private static final int FIELD_PRICE = 1;
+    private static final int FIELD_QUANTITY = 2;
+    private static final int FIELD_SUPPLIER_NAME = 3;
+    private static final int FIELD_SUPPLIER_PHONE_NUMBER = 4;
+
+    /**
+     * Rows per transaction
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final ContentResolver contentResolver;
+
+    private volatile boolean cancelled;
+
+    public CatalogImporter(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Returns the index of a field in {@link #FIELDS}, or -1 for unknown names
+     */
+    static int fieldIndex(String name) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stops the import before the next record. The records read so far are still written, so
+     * the listener's last count covers them.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the format of a catalog from its MIME type or, failing that, its file name
+     *
+     * @return the format, or null if it can't be told
+     */
+    public static Format detectFormat(String mimeType, Uri source) {
+        if (mimeType != null) {
+            if (mimeType.contains("json")) {
+                return Format.JSON;
+            }
+            if (mimeType.contains("csv") || mimeType.contains("comma-separated")) {
+                return Format.CSV;
+            }
+        }
+        String path = source.getLastPathSegment();
+        if (path != null) {
+            path = path.toLowerCase();
+            if (path.endsWith(".json")) {
+                return Format.JSON;
+            }
+            if (path.endsWith(".csv")) {
+                return Format.CSV;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Imports the catalog at source
+     *
+     * @param source      content URI of the catalog
+     * @param format      of the catalog
+     * @param skipRecords records already imported by an earlier, interrupted run
+     * @param listener    to report progress to
+     * @return records handled in total, including skipped ones
+     * @throws IOException            if the catalog can't be read
+     * @throws CatalogFormatException if the catalog isn't valid CSV or JSON
+     */
+    public long importCatalog(Uri source, Format format, long skipRecords, Listener listener)
+            throws IOException {
+        InputStream stream = contentResolver.openInputStream(source);
+        if (stream == null) {
+            throw new IOException("Can't open " + source);
+        }
+
+        Reader reader = new InputStreamReader(new BufferedInputStream(stream, STREAM_BUFFER_SIZE),
+                Charset.forName("UTF-8"));
+        RecordSource records = format == Format.JSON
+                ? new JsonRecordSource(reader)
+                : new CsvRecordSource(reader);
+
+        try {
+            return importRecords(records, skipRecords, listener);
+        } finally {
+            records.close();
+        }
+    }
+
+    private long importRecords(RecordSource records, long skipRecords, Listener listener)
+            throws IOException {
+        String[] fields = new String[FIELDS.length];
+        ContentValues[] chunk = new ContentValues[CHUNK_SIZE];
+        long[] chunkRecords = new long[CHUNK_SIZE];
+        int chunkSize = 0;
+        long record = 0;
+        long rowsImported = 0;
+
+        while (!cancelled && records.next(fields)) {
+            record++;
+            if (record <= skipRecords) {
+                continue;
+            }
+
+            ContentValues values = toValues(fields, record, listener);
+            if (values != null) {
+                chunk[chunkSize] = values;
+                chunkRecords[chunkSize] = record;
+                chunkSize++;
+            }
+
+            if (chunkSize == CHUNK_SIZE) {
+                rowsImported += writeChunk(chunk, chunkRecords, chunkSize, listener);
+                chunkSize = 0;
+                listener.onChunkCommitted(record, rowsImported);
+            }
+        }
+
+        rowsImported += writeChunk(chunk, chunkRecords, chunkSize, listener);
+        listener.onChunkCommitted(Math.max(record, skipRecords), rowsImported);
+
+        return record;
+    }
+
+    /**
+     * Converts a record to insertable values, reporting it if it's invalid
+     *
+     * @return the values, or null if the record was rejected
+     */
+    private static ContentValues toValues(String[] fields, long record, Listener listener) {
+        String name = fields[FIELD_PRODUCT_NAME] != null ? fields[FIELD_PRODUCT_NAME].trim() : null;
+        if (TextUtils.isEmpty(name)) {
+            listener.onRecordError(record, "Product requires a name");
+            return null;
+        }
+
+        ContentValues values = new ContentValues(FIELDS.length);
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, name);
+
+        try {
+            String price = fields[FIELD_PRICE];
+            if (TextUtils.isEmpty(price)) {
+                listener.onRecordError(record, "Product requires a price");
+                return null;
+            }
+            values.put(InventoryEntry.COLUMN_PRICE, Prices.parse(price));
+
+            String quantity = fields[FIELD_QUANTITY];
+            if (TextUtils.isEmpty(quantity)) {
+                listener.onRecordError(record, "Product requires a quantity");
+                return null;
+            }
+            int parsedQuantity = Integer.parseInt(quantity.trim());
+            if (parsedQuantity < 0) {
+                listener.onRecordError(record, "Quantity can't be negative");
+                return null;
+            }
+            values.put(InventoryEntry.COLUMN_QUANTITY, parsedQuantity);
+
+            String phone = fields[FIELD_SUPPLIER_PHONE_NUMBER];
+            values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+                    TextUtils.isEmpty(phone) ? 0 : Long.parseLong(phone.trim()));
+        } catch (NumberFormatException e) {
+            listener.onRecordError(record, "Invalid number: " + e.getMessage());
+            return null;
+        }
+
+        String supplier = fields[FIELD_SUPPLIER_NAME];
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplier != null ? supplier.trim() : "");
+
+        return values;
+    }
+
+    /**
+     * Inserts a chunk in one transaction. If the provider rejects the chunk the rows are
+     * retried one by one, so a single bad row doesn't cost the whole chunk.
+     *
+     * @param chunkRecords index of the record each row came from, for error reporting
+     * @return rows inserted
+     */
+    private int writeChunk(ContentValues[] chunk, long[] chunkRecords, int size, Listener listener) {
+        if (size == 0) {
+            return 0;
+        }
+
+        ContentValues[] rows = chunk;
+        if (size != chunk.length) {
+            rows = new ContentValues[size];
+            System.arraycopy(chunk, 0, rows, 0, size);
+        }
+
+        try {
+            return contentResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+        } catch (IllegalArgumentException | SQLException e) {
+            int inserted = 0;
+            for (int i = 0; i < size; i++) {
+                try {
+                    if (contentResolver.insert(InventoryEntry.CONTENT_URI, rows[i]) != null) {
+                        inserted++;
+                    } else {
+                        listener.onRecordError(chunkRecords[i], "Failed to insert product");
+                    }
+                } catch (IllegalArgumentException | SQLException rowError) {
+                    listener.onRecordError(chunkRecords[i], rowError.getMessage());
+                }
+            }
+            return inserted;
+        } finally {
+            for (int i = 0; i < size; i++) {
+                chunk[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.livelycoder.inventory.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads RFC 4180 style CSV. The first record is a header naming the columns, in any order,
+ * with the names of {@link CatalogImporter#FIELDS}; other columns are ignored.
+ * <p>
+ * Characters are pulled through a fixed buffer and fields are assembled in one reused
+ * StringBuilder, so memory use doesn't depend on the size of the file.
+ */
+final class CsvRecordSource implements RecordSource {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int END_OF_FIELD = 0;
+    private static final int END_OF_RECORD = 1;
+    private static final int END_OF_STREAM = 2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Index into the record fields for every CSV column, -1 for ignored columns
+     */
+    private int[] columnMapping;
+
+    CsvRecordSource(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next(String[] fields) throws IOException {
+        if (columnMapping == null) {
+            readHeader();
+        }
+
+        Arrays.fill(fields, null);
+
+        int column = 0;
+        boolean sawAnything = false;
+        while (true) {
+            int end = readField();
+            if (end == END_OF_STREAM && !sawAnything && field.length() == 0) {
+                return false;
+            }
+            if (column == 0 && end == END_OF_RECORD && field.length() == 0) {
+                // Blank line
+                continue;
+            }
+            sawAnything = true;
+
+            if (column < columnMapping.length && columnMapping[column] != -1) {
+                fields[columnMapping[column]] = field.toString();
+            }
+            column++;
+
+            if (end != END_OF_FIELD) {
+                return true;
+            }
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (peek() == '\uFEFF') {
+            // Byte order mark written by spreadsheet exports
+            read();
+        }
+
+        int[] mapping = new int[CatalogImporter.FIELDS.length];
+        int count = 0;
+        while (true) {
+            int end = readField();
+            if (count == mapping.length) {
+                mapping = Arrays.copyOf(mapping, count * 2);
+            }
+            mapping[count++] = CatalogImporter.fieldIndex(field.toString().trim());
+            if (end != END_OF_FIELD) {
+                if (end == END_OF_STREAM && count == 1 && field.length() == 0) {
+                    throw new CatalogFormatException("CSV file is empty");
+                }
+                break;
+            }
+        }
+        columnMapping = Arrays.copyOf(mapping, count);
+    }
+
+    /**
+     * Reads one field into {@link #field}
+     *
+     * @return what ended the field
+     */
+    private int readField() throws IOException {
+        field.setLength(0);
+
+        int c = read();
+        if (c == '"') {
+            while (true) {
+                c = read();
+                if (c == -1) {
+                    throw new CatalogFormatException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        break;
+                    }
+                }
+                field.append((char) c);
+            }
+        }
+
+        while (true) {
+            switch (c) {
+                case -1:
+                    return END_OF_STREAM;
+                case ',':
+                    return END_OF_FIELD;
+                case '\r':
+                    if (peek() == '\n') {
+                        read();
+                    }
+                    return END_OF_RECORD;
+                case '\n':
+                    return END_OF_RECORD;
+                default:
+                    field.append((char) c);
+                    c = read();
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
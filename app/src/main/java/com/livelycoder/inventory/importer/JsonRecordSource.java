@@ -0,0 +1,72 @@
+package com.livelycoder.inventory.importer;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a JSON array of product objects keyed by the names of {@link CatalogImporter#FIELDS}.
+ * Other keys are skipped. The array is streamed, never held in memory as a whole.
+ */
+final class JsonRecordSource implements RecordSource {
+    private final JsonReader reader;
+    private boolean started;
+
+    JsonRecordSource(Reader reader) {
+        this.reader = new JsonReader(reader);
+    }
+
+    @Override
+    public boolean next(String[] fields) throws IOException {
+        if (!started) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new CatalogFormatException("JSON catalog must be an array of products");
+            }
+            reader.beginArray();
+            started = true;
+        }
+
+        if (!reader.hasNext()) {
+            return false;
+        }
+
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new CatalogFormatException("JSON catalog must hold only product objects");
+        }
+
+        Arrays.fill(fields, null);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index = CatalogImporter.fieldIndex(reader.nextName());
+            if (index == -1) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (reader.peek()) {
+                case NULL:
+                    reader.nextNull();
+                    break;
+                case STRING:
+                case NUMBER:
+                    // Numbers are read as text so they are parsed the same way as CSV values
+                    fields[index] = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
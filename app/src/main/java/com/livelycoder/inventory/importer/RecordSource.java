@@ -0,0 +1,22 @@
+package com.livelycoder.inventory.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams catalog records one at a time. Each record is written into a caller-owned array
+ * indexed like {@link CatalogImporter#FIELDS}, so reading a record allocates nothing but the
+ * field values themselves.
+ */
+interface RecordSource extends Closeable {
+
+    /**
+     * Reads the next record
+     *
+     * @param fields to fill, fields missing from the record are set to null
+     * @return false once there are no records left
+     * @throws IOException          if the stream can't be read
+     * @throws CatalogFormatException if the record is malformed
+     */
+    boolean next(String[] fields) throws IOException;
+}
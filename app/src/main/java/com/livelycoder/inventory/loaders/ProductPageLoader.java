@@ -0,0 +1,288 @@
+package com.livelycoder.inventory.loaders;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.content.ContentResolverCompat;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+import android.text.TextUtils;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the product list one page at a time using keyset pagination on the product name
+ * index. Each page is read into {@link Product} objects and its cursor closed straight away,
+ * so no cursor ever holds more than a page.
+ * <p>
+ * Only the pages around the visible rows are held, as a {@link ProductWindow}. Pages that
+ * scroll out of it are dropped and show as null placeholders; scrolling back reads them
+ * again after the product they started after. Memory stays at a few pages whatever the size
+ * of the catalog, and a change reloads only the pages in the window.
+ * <p>
+ * A search loads all its matches at once, as one page that is never dropped.
+ * <p>
+ * Restarting or cancelling the loader cancels the query in flight through a
+ * {@link CancellationSignal}, so an abandoned search stops inside SQLite.
+ */
+public class ProductPageLoader extends AsyncTaskLoader<List<Product>> {
+
+    public static final int PAGE_SIZE = 100;
+
+    /**
+     * Rows to keep loaded beyond the visible ones, so a page is read before it shows
+     */
+    private static final int PREFETCH_ROWS = PAGE_SIZE / 4;
+
+    private static final String[] PROJECTION = new String[]{
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_TOTAL_QUANTITY
+    };
+
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+
+    private final String searchQuery;
+
+    private volatile List<Product> products;
+
+    /**
+     * Pages delivered last, null for search results
+     */
+    private volatile ProductWindow window;
+
+    /**
+     * Pages the next load has to hold
+     */
+    private volatile int firstPage;
+    private volatile int lastPage;
+
+    /**
+     * Bumped on every content change, so the next load reads its pages again
+     */
+    private volatile long version;
+
+    private boolean loading;
+
+    private boolean observerRegistered;
+
+    /**
+     * Signal of the query in flight, guarded by this
+     */
+    private CancellationSignal cancellationSignal;
+
+    /**
+     * @param context     to query with
+     * @param searchQuery to search for, or null to page through the whole inventory
+     */
+    public ProductPageLoader(Context context, @Nullable String searchQuery) {
+        super(context);
+        this.searchQuery = searchQuery;
+    }
+
+    /**
+     * Moves the window to the rows on screen, loading the pages they need and dropping the
+     * ones that scrolled away
+     *
+     * @param firstPosition first visible position
+     * @param lastPosition  last visible position
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        ProductWindow current = window;
+        if (current == null) {
+            return;
+        }
+        firstPage = current.pageOf(firstPosition - PREFETCH_ROWS);
+        lastPage = current.pageOf(lastPosition + PREFETCH_ROWS);
+        loadIfNeeded();
+    }
+
+    private void loadIfNeeded() {
+        ProductWindow current = window;
+        if (!loading && current != null && current.needsLoad(firstPage, lastPage)) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        loading = true;
+        super.onForceLoad();
+    }
+
+    @Override
+    public List<Product> loadInBackground() {
+        if (!TextUtils.isEmpty(searchQuery)) {
+            Uri uri = InventoryEntry.SEARCH_URI.buildUpon()
+                    .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_SEARCH, searchQuery)
+                    .build();
+            List<Product> result = new ArrayList<>();
+            readInto(uri, result);
+            return result;
+        }
+
+        ProductWindow current = window;
+        return ProductWindow.load(current != null ? current : new ProductWindow(PAGE_SIZE),
+                firstPage, lastPage, version, new ProductWindow.PageReader() {
+                    @Override
+                    public void read(Product anchor, List<Product> result) {
+                        loadPage(anchor, result);
+                    }
+                });
+    }
+
+    /**
+     * Appends the page following anchor
+     *
+     * @param anchor product before the page, or null for the first page
+     */
+    private void loadPage(Product anchor, List<Product> result) {
+        Uri.Builder builder = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_PRODUCT_NAME)
+                .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE));
+
+        if (anchor != null) {
+            builder.appendQueryParameter(InventoryEntry.QUERY_PARAMETER_AFTER_ID, String.valueOf(anchor.getId()))
+                    .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, anchor.getName());
+        }
+
+        readInto(builder.build(), result);
+    }
+
+    /**
+     * Reads every row of the query into the list and closes the cursor
+     *
+     * @return number of products read
+     */
+    private int readInto(Uri uri, List<Product> result) {
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+            cancellationSignal = new CancellationSignal();
+        }
+
+        try {
+            // The cursor fills its window with the same signal, so it is kept until all is read
+            Cursor cursor = ContentResolverCompat.query(getContext().getContentResolver(), uri,
+                    PROJECTION, null, null, null, cancellationSignal);
+            if (cursor == null) {
+                return 0;
+            }
+            try {
+                return read(cursor, result);
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            synchronized (this) {
+                cancellationSignal = null;
+            }
+        }
+    }
+
+    /**
+     * Appends every row of the cursor to the list
+     *
+     * @return number of products read
+     */
+    private static int read(Cursor cursor, List<Product> result) {
+        int idColumnIndex = cursor.getColumnIndexOrThrow(InventoryEntry._ID);
+        int nameColumnIndex = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRODUCT_NAME);
+        int priceColumnIndex = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRICE);
+        int quantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_QUANTITY);
+        int totalQuantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_TOTAL_QUANTITY);
+
+        while (cursor.moveToNext()) {
+            result.add(new Product(
+                    cursor.getLong(idColumnIndex),
+                    cursor.getString(nameColumnIndex),
+                    cursor.getLong(priceColumnIndex),
+                    cursor.getInt(quantityColumnIndex),
+                    cursor.getInt(totalQuantityColumnIndex)
+            ));
+        }
+        return cursor.getCount();
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (cancellationSignal != null) {
+                cancellationSignal.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void deliverResult(List<Product> data) {
+        loading = false;
+        if (isReset()) {
+            return;
+        }
+        if (data instanceof ProductWindow) {
+            window = (ProductWindow) data;
+            products = data;
+        } else {
+            window = null;
+            products = Collections.unmodifiableList(data);
+        }
+        if (isStarted()) {
+            super.deliverResult(products);
+            // The list may have scrolled on while this load ran
+            loadIfNeeded();
+        }
+    }
+
+    @Override
+    public void onContentChanged() {
+        // A change invalidates the pages loaded so far, so the next load reads them again
+        version++;
+        super.onContentChanged();
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!observerRegistered) {
+            getContext().getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true, observer);
+            observerRegistered = true;
+        }
+
+        boolean changed = takeContentChanged();
+        if (products != null) {
+            // Also starts loading the pages that are still missing
+            deliverResult(products);
+        }
+        if ((changed || products == null) && !loading) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+        // A cancelled load delivers nothing, so the next start loads what is still missing
+        loading = false;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        getContext().getContentResolver().unregisterContentObserver(observer);
+        observerRegistered = false;
+        products = null;
+        window = null;
+        loading = false;
+    }
+}
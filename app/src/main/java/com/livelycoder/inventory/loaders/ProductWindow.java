@@ -0,0 +1,237 @@
+package com.livelycoder.inventory.loaders;
+
+import com.livelycoder.inventory.data.Product;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The product list as a run of fixed size pages, of which only a window around the visible
+ * rows holds products. Pages outside the window keep their size and the keys they start and
+ * end at, and read as null, so positions don't move when a page is dropped or reloaded.
+ * <p>
+ * Every page but the last holds exactly {@link #pageSize} products, which makes a position's
+ * page a division away. Instances are immutable; loading returns a new window that shares
+ * the unchanged pages with the old one.
+ */
+final class ProductWindow extends AbstractList<Product> {
+
+    /**
+     * Reads a page of products in name order
+     */
+    interface PageReader {
+        /**
+         * Appends up to a page of the products ordered after anchor
+         *
+         * @param anchor the product before the page, or null for the first page
+         */
+        void read(Product anchor, List<Product> result);
+    }
+
+    /**
+     * One page of the list
+     */
+    static final class Page {
+        /**
+         * Last product of the page before, or null for the first page
+         */
+        final Product anchor;
+
+        /**
+         * Products of the page, null once the page is dropped
+         */
+        final List<Product> products;
+
+        final int size;
+
+        /**
+         * Last product of the page, which the next page is read after
+         */
+        final Product last;
+
+        /**
+         * Content version the page was read at
+         */
+        final long version;
+
+        Page(Product anchor, List<Product> products, long version) {
+            this(anchor, products, products.size(),
+                    products.isEmpty() ? null : products.get(products.size() - 1), version);
+        }
+
+        private Page(Product anchor, List<Product> products, int size, Product last, long version) {
+            this.anchor = anchor;
+            this.products = products;
+            this.size = size;
+            this.last = last;
+            this.version = version;
+        }
+
+        boolean isLoaded() {
+            return products != null;
+        }
+
+        Page drop() {
+            return new Page(anchor, null, size, last, version);
+        }
+
+        /**
+         * Returns true if the page holds the products after anchor as of version
+         */
+        boolean isCurrent(Product anchor, long version) {
+            return isLoaded() && this.version == version && sameKey(this.anchor, anchor);
+        }
+
+        private static boolean sameKey(Product a, Product b) {
+            if (a == null || b == null) {
+                return a == b;
+            }
+            return a.getId() == b.getId() && a.getName().equals(b.getName());
+        }
+    }
+
+    final int pageSize;
+
+    final List<Page> pages;
+
+    /**
+     * True once the last page is known to end the catalog
+     */
+    final boolean complete;
+
+    private final int size;
+
+    /**
+     * Creates an empty window, for the first load to start from
+     */
+    ProductWindow(int pageSize) {
+        this(pageSize, Collections.<Page>emptyList(), false);
+    }
+
+    private ProductWindow(int pageSize, List<Page> pages, boolean complete) {
+        this.pageSize = pageSize;
+        this.pages = pages;
+        this.complete = complete;
+        int size = 0;
+        for (Page page : pages) {
+            size += page.size;
+        }
+        this.size = size;
+    }
+
+    @Override
+    public Product get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+        Page page = pages.get(index / pageSize);
+        return page.isLoaded() ? page.products.get(index % pageSize) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the page holding a position, or the one after the last page for positions past
+     * the end
+     */
+    int pageOf(int position) {
+        return Math.min(Math.max(position, 0) / pageSize, pages.size());
+    }
+
+    /**
+     * Returns true if some of the pages from firstPage to lastPage aren't loaded yet
+     */
+    boolean needsLoad(int firstPage, int lastPage) {
+        for (int index = firstPage; index <= lastPage; index++) {
+            if (index == pages.size()) {
+                return !complete;
+            }
+            if (!pages.get(index).isLoaded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads the pages from firstPage to lastPage and drops the others. Loaded pages right
+     * next to that range are kept and refreshed with it, so scrolling back and forth over a
+     * page boundary doesn't reload a page every time.
+     * <p>
+     * The range is read as one chain, each page after the last product of the page before,
+     * so it never skips or repeats a product. Pages already read at this version after the
+     * same product are reused as they are.
+     *
+     * @param current   window to start from
+     * @param firstPage first page the window must hold
+     * @param lastPage  last page the window must hold, may be past the last page
+     * @param version   of the content, pages read at another version are read again
+     * @param reader    to read pages with
+     * @return the new window
+     */
+    static ProductWindow load(ProductWindow current, int firstPage, int lastPage, long version,
+                              PageReader reader) {
+        int pageSize = current.pageSize;
+        List<Page> pages = new ArrayList<>(current.pages);
+        boolean complete = current.complete;
+
+        firstPage = Math.min(Math.max(firstPage, 0), pages.size());
+        lastPage = Math.max(lastPage, firstPage);
+        if (firstPage > 0 && pages.get(firstPage - 1).isLoaded()) {
+            firstPage--;
+        }
+        if (lastPage + 1 < pages.size() && pages.get(lastPage + 1).isLoaded()) {
+            lastPage++;
+        }
+
+        for (int index = firstPage; index <= lastPage; index++) {
+            if (index == pages.size() && complete) {
+                break;
+            }
+
+            Product anchor;
+            if (index == 0) {
+                anchor = null;
+            } else if (index == firstPage && index < pages.size()) {
+                anchor = pages.get(index).anchor;
+            } else {
+                anchor = pages.get(index - 1).last;
+            }
+
+            Page page = index < pages.size() ? pages.get(index) : null;
+            if (page == null || !page.isCurrent(anchor, version)) {
+                List<Product> products = new ArrayList<>(pageSize);
+                reader.read(anchor, products);
+                page = new Page(anchor, Collections.unmodifiableList(products), version);
+                if (index < pages.size()) {
+                    pages.set(index, page);
+                } else {
+                    pages.add(page);
+                }
+                if (index == pages.size() - 1) {
+                    complete = page.size < pageSize;
+                }
+            }
+
+            if (page.size < pageSize) {
+                // The catalog ends here, whatever was loaded after this page before
+                pages.subList(page.size == 0 && index > 0 ? index : index + 1, pages.size()).clear();
+                complete = true;
+                break;
+            }
+        }
+
+        for (int index = 0; index < pages.size(); index++) {
+            if ((index < firstPage || index > lastPage) && pages.get(index).isLoaded()) {
+                pages.set(index, pages.get(index).drop());
+            }
+        }
+
+        return new ProductWindow(pageSize, Collections.unmodifiableList(pages), complete);
+    }
+}
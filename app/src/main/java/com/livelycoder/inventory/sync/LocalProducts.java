@@ -0,0 +1,33 @@
+package com.livelycoder.inventory.sync;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The device's side of the products a sync batch touches: the products with the sync ids the
+ * backend answered with, the products holding the SKUs it answered with, and the tombstones.
+ * Records read from the device carry the device's quantity, and as their base the quantity as
+ * of the last sync.
+ */
+final class LocalProducts {
+    final Map<String, SyncRecord> bySyncId = new HashMap<>();
+    final Map<String, SyncRecord> bySku = new HashMap<>();
+    final Set<String> dirty = new HashSet<>();
+    final Set<String> tombstones = new HashSet<>();
+
+    void addProduct(SyncRecord product, boolean isDirty) {
+        bySyncId.put(product.syncId, product);
+        if (product.sku != null) {
+            bySku.put(product.sku, product);
+        }
+        if (isDirty) {
+            dirty.add(product.syncId);
+        }
+    }
+
+    void addTombstone(String syncId) {
+        tombstones.add(syncId);
+    }
+}
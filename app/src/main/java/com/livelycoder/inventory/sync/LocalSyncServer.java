@@ -0,0 +1,119 @@
+package com.livelycoder.inventory.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stand-in sync backend kept in memory in this process, so the whole sync loop runs without
+ * a network. Every engine sharing one instance sees the others' changes, which is how several
+ * devices can be played against each other offline.
+ */
+public final class LocalSyncServer implements SyncTransport {
+
+    /**
+     * Latest record of every product by sync id. Guarded by this, as is everything below.
+     */
+    private final Map<String, SyncRecord> records = new HashMap<>();
+
+    /**
+     * Sync id of every product by its current version
+     */
+    private final TreeMap<Long, String> byVersion = new TreeMap<>();
+
+    /**
+     * Sync id of the live product holding every SKU, which keeps SKUs unique the way the
+     * devices' unique index does
+     */
+    private final Map<String, String> bySku = new HashMap<>();
+
+    /**
+     * Last record every device pushed for a product, keyed by device id and sync id, to
+     * recognise one pushed again
+     */
+    private final Map<String, SyncRecord> lastPushed = new HashMap<>();
+
+    private long version;
+
+    @Override
+    public synchronized byte[] exchange(byte[] payload) throws IOException {
+        SyncCodec.Request request = SyncCodec.decodeRequest(payload);
+
+        List<SyncRecord> answer = new ArrayList<>();
+        Set<String> answered = new HashSet<>();
+        for (SyncRecord pushed : request.records) {
+            push(request.deviceId, pushed);
+            answer.add(records.get(pushed.syncId));
+            answered.add(pushed.syncId);
+        }
+
+        long cursor = version;
+        boolean more = false;
+        int pulled = 0;
+        for (Map.Entry<Long, String> entry : byVersion.tailMap(request.cursor, false).entrySet()) {
+            if (pulled == request.limit) {
+                more = true;
+                break;
+            }
+            cursor = entry.getKey();
+            pulled++;
+            if (!answered.contains(entry.getValue())) {
+                answer.add(records.get(entry.getValue()));
+            }
+        }
+
+        return SyncCodec.encode(new SyncCodec.Response(cursor, more, answer));
+    }
+
+    private void push(String deviceId, SyncRecord pushed) {
+        String key = deviceId + "/" + pushed.syncId;
+        SyncRecord last = lastPushed.get(key);
+        if (last != null && last.version == pushed.version && last.modifiedTime == pushed.modifiedTime
+                && last.deleted == pushed.deleted) {
+            return;
+        }
+        lastPushed.put(key, pushed);
+
+        SyncRecord stored = records.get(pushed.syncId);
+        SyncRecord merged = SyncMerge.merge(stored, pushed);
+        if (merged == stored) {
+            return;
+        }
+
+        String holder = merged.deleted || merged.sku == null ? null : bySku.get(merged.sku);
+        if (holder != null && !holder.equals(merged.syncId)) {
+            SyncRecord other = records.get(holder);
+            if (SyncMerge.keepsSku(merged, other)) {
+                // The other product changes too, so every device pulls its cleared SKU
+                store(other.withoutSku());
+            } else {
+                merged = merged.withoutSku();
+            }
+        }
+        store(merged);
+    }
+
+    /**
+     * Keeps a record at the next version
+     */
+    private void store(SyncRecord record) {
+        SyncRecord stored = records.get(record.syncId);
+        if (stored != null) {
+            byVersion.remove(stored.version);
+            if (stored.sku != null && record.syncId.equals(bySku.get(stored.sku))) {
+                bySku.remove(stored.sku);
+            }
+        }
+        version++;
+        records.put(record.syncId, record.atVersion(version));
+        byVersion.put(version, record.syncId);
+        if (!record.deleted && record.sku != null) {
+            bySku.put(record.sku, record.syncId);
+        }
+    }
+}
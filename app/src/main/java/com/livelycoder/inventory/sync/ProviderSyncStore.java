@@ -0,0 +1,303 @@
+package com.livelycoder.inventory.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.livelycoder.inventory.data.InventoryContract;
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+import com.livelycoder.inventory.data.InventoryContract.TombstoneEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The device's products as the inventory provider has them, with the sync state kept in
+ * shared preferences
+ */
+final class ProviderSyncStore implements SyncStore {
+    private static final String LOG_TAG = ProviderSyncStore.class.getSimpleName();
+
+    /**
+     * Sync ids per IN (...) list, under SQLite's limit of 999 arguments
+     */
+    private static final int MAX_SELECTION_ARGS = 500;
+
+    private static final String PREF_DEVICE_ID = "device_id";
+    private static final String PREF_CURSOR = "cursor";
+
+    private static final String[] COLUMNS = new String[]{
+            InventoryEntry.COLUMN_SYNC_ID,
+            InventoryEntry.COLUMN_SYNC_VERSION,
+            InventoryEntry.COLUMN_SYNC_DIRTY,
+            InventoryEntry.COLUMN_MODIFIED_TIME,
+            InventoryEntry.COLUMN_MODIFIED_BY,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SYNC_QUANTITY,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_SKU
+    };
+
+    private static final int SYNC_ID = 0;
+    private static final int SYNC_VERSION = 1;
+    private static final int SYNC_DIRTY = 2;
+    private static final int MODIFIED_TIME = 3;
+    private static final int MODIFIED_BY = 4;
+    private static final int QUANTITY = 5;
+    private static final int SYNC_QUANTITY = 6;
+    private static final int PRODUCT_NAME = 7;
+    private static final int PRICE = 8;
+    private static final int SUPPLIER_NAME = 9;
+    private static final int SUPPLIER_PHONE_NUMBER = 10;
+    private static final int REORDER_THRESHOLD = 11;
+    private static final int SKU = 12;
+
+    /**
+     * Matches a product only if nothing changed it since it was read
+     */
+    private static final String UNCHANGED_SELECTION = InventoryEntry.COLUMN_SYNC_ID + " = ? AND "
+            + InventoryEntry.COLUMN_SYNC_VERSION + " = ? AND "
+            + InventoryEntry.COLUMN_MODIFIED_TIME + " = ? AND "
+            + InventoryEntry.COLUMN_QUANTITY + " = ?";
+
+    private final ContentResolver contentResolver;
+    private final SharedPreferences state;
+
+    /**
+     * @param state where the device id and the cursor are kept
+     */
+    ProviderSyncStore(ContentResolver contentResolver, SharedPreferences state) {
+        this.contentResolver = contentResolver;
+        this.state = state;
+    }
+
+    @Override
+    public String deviceId() {
+        String deviceId = state.getString(PREF_DEVICE_ID, null);
+        if (deviceId == null) {
+            deviceId = UUID.randomUUID().toString();
+            state.edit().putString(PREF_DEVICE_ID, deviceId).apply();
+        }
+        return deviceId;
+    }
+
+    @Override
+    public long cursor() {
+        return state.getLong(PREF_CURSOR, 0);
+    }
+
+    @Override
+    public void saveCursor(long cursor) {
+        state.edit().putLong(PREF_CURSOR, cursor).apply();
+    }
+
+    @Override
+    public List<SyncRecord> readDirty(String deviceId, int limit) {
+        List<SyncRecord> records = new ArrayList<>();
+        Uri uri = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT, Integer.toString(limit))
+                .build();
+        Cursor cursor = contentResolver.query(uri, COLUMNS,
+                InventoryEntry.COLUMN_SYNC_DIRTY + " = 1", null, null);
+        if (cursor == null) {
+            return records;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                records.add(readRecord(cursor, deviceId));
+            }
+        } finally {
+            cursor.close();
+        }
+        return records;
+    }
+
+    @Override
+    public List<SyncRecord> readTombstones(String deviceId, int limit) {
+        List<SyncRecord> records = new ArrayList<>();
+        Uri uri = TombstoneEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT, Integer.toString(limit))
+                .build();
+        Cursor cursor = contentResolver.query(uri,
+                new String[]{TombstoneEntry.COLUMN_SYNC_ID, TombstoneEntry.COLUMN_TIME},
+                null, null, null);
+        if (cursor == null) {
+            return records;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                // The version only matters for a change, a deletion wins either way
+                records.add(SyncRecord.deletion(cursor.getString(0), 0, cursor.getLong(1), deviceId));
+            }
+        } finally {
+            cursor.close();
+        }
+        return records;
+    }
+
+    @Override
+    public LocalProducts readLocal(String deviceId, List<SyncRecord> records) {
+        List<String> syncIds = new ArrayList<>(records.size());
+        List<String> skus = new ArrayList<>();
+        for (SyncRecord record : records) {
+            syncIds.add(record.syncId);
+            if (!record.deleted && record.sku != null) {
+                skus.add(record.sku);
+            }
+        }
+
+        LocalProducts local = new LocalProducts();
+        for (int start = 0; start < syncIds.size(); start += MAX_SELECTION_ARGS) {
+            String[] args = slice(syncIds, start);
+            String in = " IN (" + placeholders(args.length) + ")";
+            readProducts(deviceId, InventoryEntry.COLUMN_SYNC_ID + in, args, local);
+
+            Cursor cursor = contentResolver.query(TombstoneEntry.CONTENT_URI,
+                    new String[]{TombstoneEntry.COLUMN_SYNC_ID},
+                    TombstoneEntry.COLUMN_SYNC_ID + in, args, null);
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {
+                        local.addTombstone(cursor.getString(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        }
+        // The products holding the SKUs the backend hands out, which may be other ones
+        for (int start = 0; start < skus.size(); start += MAX_SELECTION_ARGS) {
+            String[] args = slice(skus, start);
+            readProducts(deviceId, InventoryEntry.COLUMN_SKU + " IN (" + placeholders(args.length) + ")",
+                    args, local);
+        }
+        return local;
+    }
+
+    @Override
+    public void apply(List<SyncStep> steps) throws IOException, SyncConflictException {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(steps.size());
+        for (SyncStep step : steps) {
+            operations.add(toOperation(step));
+        }
+        try {
+            contentResolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        } catch (OperationApplicationException | SQLiteConstraintException e) {
+            // A guard failed, or the user took a SKU the batch hands out
+            Log.d(LOG_TAG, "Products changed during sync: " + e.getMessage());
+            throw new SyncConflictException("Products changed during sync", e);
+        } catch (RemoteException e) {
+            throw new IOException("Inventory provider unreachable", e);
+        }
+    }
+
+    private void readProducts(String deviceId, String selection, String[] selectionArgs, LocalProducts local) {
+        Cursor cursor = contentResolver.query(InventoryEntry.CONTENT_URI, COLUMNS,
+                selection, selectionArgs, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                local.addProduct(readRecord(cursor, deviceId), cursor.getInt(SYNC_DIRTY) != 0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentProviderOperation toOperation(SyncStep step) {
+        String[] syncIdArgs = new String[]{step.syncId};
+        switch (step.kind) {
+            case SyncStep.INSERT:
+                return ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                        .withValues(toContentValues(step.values))
+                        .build();
+            case SyncStep.UPDATE:
+                return ContentProviderOperation.newUpdate(InventoryEntry.CONTENT_URI)
+                        .withValues(toContentValues(step.values))
+                        .withSelection(InventoryEntry.COLUMN_SYNC_ID + " = ?", syncIdArgs)
+                        .build();
+            case SyncStep.DELETE:
+                return ContentProviderOperation.newDelete(InventoryEntry.CONTENT_URI)
+                        .withSelection(InventoryEntry.COLUMN_SYNC_ID + " = ?", syncIdArgs)
+                        .build();
+            case SyncStep.DELETE_TOMBSTONE:
+                return ContentProviderOperation.newDelete(TombstoneEntry.CONTENT_URI)
+                        .withSelection(TombstoneEntry.COLUMN_SYNC_ID + " = ?", syncIdArgs)
+                        .build();
+            case SyncStep.ASSERT_UNCHANGED:
+                return ContentProviderOperation.newAssertQuery(InventoryEntry.CONTENT_URI)
+                        .withSelection(UNCHANGED_SELECTION, new String[]{
+                                step.expected.syncId,
+                                Long.toString(step.expected.version),
+                                Long.toString(step.expected.modifiedTime),
+                                Integer.toString(step.expected.quantity)})
+                        .withExpectedCount(1)
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown sync step " + step.kind);
+        }
+    }
+
+    private static ContentValues toContentValues(Map<String, Object> values) {
+        ContentValues contentValues = new ContentValues(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                contentValues.putNull(entry.getKey());
+            } else if (value instanceof String) {
+                contentValues.put(entry.getKey(), (String) value);
+            } else if (value instanceof Integer) {
+                contentValues.put(entry.getKey(), (Integer) value);
+            } else {
+                contentValues.put(entry.getKey(), (Long) value);
+            }
+        }
+        return contentValues;
+    }
+
+    private static SyncRecord readRecord(Cursor cursor, String deviceId) {
+        return new SyncRecord(
+                cursor.getString(SYNC_ID),
+                cursor.getLong(SYNC_VERSION),
+                cursor.getLong(MODIFIED_TIME),
+                // Null for a change made on this device
+                cursor.isNull(MODIFIED_BY) ? deviceId : cursor.getString(MODIFIED_BY),
+                cursor.getString(PRODUCT_NAME),
+                cursor.getLong(PRICE),
+                cursor.getInt(QUANTITY),
+                cursor.getInt(SYNC_QUANTITY),
+                cursor.getString(SUPPLIER_NAME),
+                cursor.getLong(SUPPLIER_PHONE_NUMBER),
+                cursor.getInt(REORDER_THRESHOLD),
+                cursor.isNull(SKU) ? null : cursor.getString(SKU));
+    }
+
+    private static String[] slice(List<String> values, int start) {
+        int end = Math.min(start + MAX_SELECTION_ARGS, values.size());
+        return values.subList(start, end).toArray(new String[end - start]);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return placeholders.toString();
+    }
+}
@@ -0,0 +1,188 @@
+package com.livelycoder.inventory.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the payloads exchanged through a {@link SyncTransport}: gzip over big-endian
+ * DataOutputStream fields, starting with {@link #MAGIC} and {@link #FORMAT_VERSION}.
+ * <p>
+ * A request is the device id as UTF, the cursor as a long, the most records to pull as an
+ * int, then the pushed records. A response is the new cursor as a long, a boolean that is
+ * true if more records are waiting, then the records. Records are a count followed by, for
+ * each: sync id as UTF, version as a long, deleted as a boolean, modified time as a long,
+ * modified by as UTF, and unless deleted the name as UTF, price as a long, quantity and base
+ * quantity as ints, supplier name as UTF, supplier phone number as a long, reorder threshold
+ * as an int, and the SKU as a boolean present flag followed by UTF when present.
+ */
+final class SyncCodec {
+
+    /**
+     * "INVS"
+     */
+    static final int MAGIC = 0x494e5653;
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    static final class Request {
+        final String deviceId;
+        /**
+         * Backend version the device has pulled up to
+         */
+        final long cursor;
+        final int limit;
+        final List<SyncRecord> records;
+
+        Request(String deviceId, long cursor, int limit, List<SyncRecord> records) {
+            this.deviceId = deviceId;
+            this.cursor = cursor;
+            this.limit = limit;
+            this.records = records;
+        }
+    }
+
+    static final class Response {
+        final long cursor;
+        final boolean more;
+        final List<SyncRecord> records;
+
+        Response(long cursor, boolean more, List<SyncRecord> records) {
+            this.cursor = cursor;
+            this.more = more;
+            this.records = records;
+        }
+    }
+
+    private SyncCodec() {
+    }
+
+    static byte[] encode(Request request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = open(bytes);
+        out.writeUTF(request.deviceId);
+        out.writeLong(request.cursor);
+        out.writeInt(request.limit);
+        writeRecords(out, request.records);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static Request decodeRequest(byte[] payload) throws IOException {
+        DataInputStream in = open(payload);
+        try {
+            String deviceId = in.readUTF();
+            long cursor = in.readLong();
+            int limit = in.readInt();
+            return new Request(deviceId, cursor, limit, readRecords(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    static byte[] encode(Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = open(bytes);
+        out.writeLong(response.cursor);
+        out.writeBoolean(response.more);
+        writeRecords(out, response.records);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static Response decodeResponse(byte[] payload) throws IOException {
+        DataInputStream in = open(payload);
+        try {
+            long cursor = in.readLong();
+            boolean more = in.readBoolean();
+            return new Response(cursor, more, readRecords(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static DataOutputStream open(ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        return out;
+    }
+
+    private static DataInputStream open(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(payload), BUFFER_SIZE));
+        if (in.readInt() != MAGIC) {
+            in.close();
+            throw new IOException("Not a sync payload");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            in.close();
+            throw new IOException("Unsupported sync payload version " + version);
+        }
+        return in;
+    }
+
+    private static void writeRecords(DataOutputStream out, List<SyncRecord> records) throws IOException {
+        out.writeInt(records.size());
+        for (SyncRecord record : records) {
+            out.writeUTF(record.syncId);
+            out.writeLong(record.version);
+            out.writeBoolean(record.deleted);
+            out.writeLong(record.modifiedTime);
+            out.writeUTF(record.modifiedBy);
+            if (record.deleted) {
+                continue;
+            }
+            out.writeUTF(record.name);
+            out.writeLong(record.price);
+            out.writeInt(record.quantity);
+            out.writeInt(record.baseQuantity);
+            out.writeUTF(record.supplierName);
+            out.writeLong(record.supplierPhoneNumber);
+            out.writeInt(record.reorderThreshold);
+            out.writeBoolean(record.sku != null);
+            if (record.sku != null) {
+                out.writeUTF(record.sku);
+            }
+        }
+    }
+
+    private static List<SyncRecord> readRecords(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative record count " + count);
+        }
+        List<SyncRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String syncId = in.readUTF();
+            long version = in.readLong();
+            boolean deleted = in.readBoolean();
+            long modifiedTime = in.readLong();
+            String modifiedBy = in.readUTF();
+            if (deleted) {
+                records.add(SyncRecord.deletion(syncId, version, modifiedTime, modifiedBy));
+                continue;
+            }
+            String name = in.readUTF();
+            long price = in.readLong();
+            int quantity = in.readInt();
+            int baseQuantity = in.readInt();
+            String supplierName = in.readUTF();
+            long supplierPhoneNumber = in.readLong();
+            int reorderThreshold = in.readInt();
+            String sku = in.readBoolean() ? in.readUTF() : null;
+            records.add(new SyncRecord(syncId, version, modifiedTime, modifiedBy, name, price,
+                    quantity, baseQuantity, supplierName, supplierPhoneNumber, reorderThreshold, sku));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,13 @@
+package com.livelycoder.inventory.sync;
+
+/**
+ * Thrown when a product changed on the device between being read for a sync batch and the
+ * batch being applied
+ */
+final class SyncConflictException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    SyncConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,101 @@
+package com.livelycoder.inventory.sync;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Syncs the inventory with a backend through a {@link SyncTransport}, one batch at a time.
+ * <p>
+ * Every round pushes the dirty products and the tombstones of deleted ones, and pulls what
+ * changed on the backend since the saved cursor. The answer is applied in one batch, planned
+ * by {@link SyncPlanner}, that only goes through if the products it changes are still as they
+ * were read, so a change the user makes meanwhile makes the batch fail and be rebuilt on top
+ * of it rather than being lost. The cursor is saved only once the batch committed.
+ */
+final class SyncEngine {
+    /**
+     * Most products pushed, and most pulled, per round
+     */
+    static final int BATCH_SIZE = 200;
+
+    /**
+     * Rounds per {@link #sync()}, so one run can't go on forever while the user keeps editing
+     */
+    private static final int MAX_ROUNDS = 20;
+
+    private static final int MAX_APPLY_ATTEMPTS = 3;
+
+    private final SyncStore store;
+    private final SyncTransport transport;
+
+    private volatile boolean cancelled;
+
+    SyncEngine(SyncStore store, SyncTransport transport) {
+        this.store = store;
+        this.transport = transport;
+    }
+
+    /**
+     * Stops after the round in progress. May be called from any thread.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Runs rounds until both sides are in step
+     *
+     * @return false if it stopped early, cancelled or after its most rounds, with work left
+     * @throws SyncConflictException if the user kept changing the products a batch touches
+     */
+    boolean sync() throws IOException, SyncConflictException {
+        String deviceId = store.deviceId();
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            if (cancelled) {
+                return false;
+            }
+            if (!syncRound(deviceId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if another round has work to do
+     */
+    private boolean syncRound(String deviceId) throws IOException, SyncConflictException {
+        Map<String, SyncRecord> pushed = new HashMap<>();
+        List<SyncRecord> records = store.readDirty(deviceId, BATCH_SIZE);
+        for (SyncRecord record : records) {
+            pushed.put(record.syncId, record);
+        }
+        if (records.size() < BATCH_SIZE) {
+            for (SyncRecord record : store.readTombstones(deviceId, BATCH_SIZE - records.size())) {
+                pushed.put(record.syncId, record);
+                records.add(record);
+            }
+        }
+
+        SyncCodec.Response response = SyncCodec.decodeResponse(transport.exchange(
+                SyncCodec.encode(new SyncCodec.Request(deviceId, store.cursor(), BATCH_SIZE, records))));
+
+        for (int attempt = 1; ; attempt++) {
+            LocalProducts local = store.readLocal(deviceId, response.records);
+            try {
+                store.apply(SyncPlanner.plan(deviceId, pushed, response.records, local));
+                break;
+            } catch (SyncConflictException e) {
+                // A product changed between reading it and the batch, read it again
+                if (attempt == MAX_APPLY_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        store.saveCursor(response.cursor);
+
+        return response.more || records.size() == BATCH_SIZE;
+    }
+}
@@ -0,0 +1,143 @@
+package com.livelycoder.inventory.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.livelycoder.inventory.InventoryApplication;
+import com.livelycoder.inventory.R;
+
+import java.io.IOException;
+
+/**
+ * Runs {@link SyncEngine} as a scheduled job. A failed run is retried with the job
+ * scheduler's exponential backoff, and a successful one schedules the next after the sync
+ * interval.
+ * <p>
+ * Nothing is scheduled while {@link InventoryApplication#getSyncTransport()} has no transport,
+ * so a release build without a backend never wakes up to sync.
+ * <p>
+ * Jobs need Lollipop; older devices don't sync in the background.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class SyncJobService extends JobService {
+    private static final String LOG_TAG = SyncJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1;
+
+    private static final String PREFS_NAME = "sync";
+
+    /**
+     * Guarded by this
+     */
+    private SyncEngine engine;
+
+    /**
+     * Schedules a sync straight away unless one is already pending, which keeps the backoff
+     * of a failing sync and the interval of a finished one
+     */
+    public static void scheduleIfIdle(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || transport(context) == null) {
+            return;
+        }
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        schedule(context, 0);
+    }
+
+    /**
+     * Schedules a sync, replacing the one pending
+     *
+     * @param delayMillis time to wait before it may run
+     */
+    public static void schedule(Context context, long delayMillis) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || transport(context) == null) {
+            return;
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, SyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setMinimumLatency(delayMillis)
+                .setBackoffCriteria(context.getResources().getInteger(R.integer.sync_backoff_millis),
+                        JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .build();
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(LOG_TAG, "Failed to schedule sync");
+        }
+    }
+
+    private static SyncTransport transport(Context context) {
+        return ((InventoryApplication) context.getApplicationContext()).getSyncTransport();
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        SyncTransport transport = transport(this);
+        if (transport == null) {
+            // Scheduled while a transport was set, by an earlier run of the app
+            return false;
+        }
+        final SyncEngine engine = new SyncEngine(
+                new ProviderSyncStore(getContentResolver(), getSharedPreferences(PREFS_NAME, MODE_PRIVATE)),
+                transport);
+        synchronized (this) {
+            this.engine = engine;
+        }
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                boolean retry = false;
+                long next = getResources().getInteger(R.integer.sync_interval_millis);
+                try {
+                    if (!engine.sync()) {
+                        // Work left, carry on straight away
+                        next = 0;
+                    }
+                } catch (IOException | SyncConflictException e) {
+                    Log.w(LOG_TAG, "Sync failed", e);
+                    retry = true;
+                } catch (RuntimeException e) {
+                    // Finish the job anyway, or the scheduler waits for it until it times out
+                    Log.e(LOG_TAG, "Sync crashed", e);
+                    retry = true;
+                }
+                finish(params, engine, retry, next);
+            }
+        }, "inventory-sync").start();
+        return true;
+    }
+
+    private synchronized void finish(JobParameters params, SyncEngine engine, boolean retry, long next) {
+        if (this.engine != engine) {
+            // Stopped, the scheduler already decided what comes next
+            return;
+        }
+        this.engine = null;
+        jobFinished(params, retry);
+        if (!retry) {
+            schedule(this, next);
+        }
+    }
+
+    @Override
+    public synchronized boolean onStopJob(JobParameters params) {
+        if (engine != null) {
+            engine.cancel();
+            engine = null;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.livelycoder.inventory.sync;
+
+/**
+ * The conflict rule, shared by the backend and the devices so both sides settle on the same
+ * product whatever order the changes arrive in:
+ * <ul>
+ * <li>a deletion wins over any change</li>
+ * <li>quantities merge: what a device sold or restocked since its base is added to the
+ * other side's quantity, never going below 0</li>
+ * <li>every other field comes from the later change, and on the same millisecond from the
+ * device with the greater id</li>
+ * <li>a SKU belongs to one product: when two live products claim the same one, the one
+ * changed later keeps it, then the one changed by the device with the greater id, then the
+ * one with the greater sync id, and the other's SKU is cleared</li>
+ * </ul>
+ */
+final class SyncMerge {
+
+    private SyncMerge() {
+    }
+
+    /**
+     * Returns true if the change made at time a by device deviceA wins over the one made at
+     * time b by deviceB
+     */
+    static boolean wins(long a, String deviceA, long b, String deviceB) {
+        return a > b || (a == b && deviceA.compareTo(deviceB) > 0);
+    }
+
+    /**
+     * Returns true if record a keeps a SKU it shares with record b, which then loses it
+     */
+    static boolean keepsSku(SyncRecord a, SyncRecord b) {
+        if (a.modifiedTime != b.modifiedTime || !a.modifiedBy.equals(b.modifiedBy)) {
+            return wins(a.modifiedTime, a.modifiedBy, b.modifiedTime, b.modifiedBy);
+        }
+        return a.syncId.compareTo(b.syncId) > 0;
+    }
+
+    /**
+     * Adds the change a device made to its quantity since its base onto another quantity
+     */
+    static int mergeQuantity(int other, int quantity, int baseQuantity) {
+        return Math.max(0, other + quantity - baseQuantity);
+    }
+
+    /**
+     * Returns what the backend keeps after a device pushed a record
+     *
+     * @param stored what the backend had, null if it never saw the product
+     * @param pushed by the device
+     */
+    static SyncRecord merge(SyncRecord stored, SyncRecord pushed) {
+        if (stored == null || pushed.deleted) {
+            return pushed;
+        }
+        if (stored.deleted) {
+            return stored;
+        }
+        if (pushed.version == stored.version) {
+            // Nothing else changed the product since the device's base
+            return pushed;
+        }
+
+        int quantity = mergeQuantity(stored.quantity, pushed.quantity, pushed.baseQuantity);
+        SyncRecord fields = wins(pushed.modifiedTime, pushed.modifiedBy, stored.modifiedTime, stored.modifiedBy)
+                ? pushed
+                : stored;
+        return new SyncRecord(stored.syncId, stored.version, fields.modifiedTime, fields.modifiedBy,
+                fields.name, fields.price, quantity, quantity, fields.supplierName,
+                fields.supplierPhoneNumber, fields.reorderThreshold, fields.sku);
+    }
+}
@@ -0,0 +1,243 @@
+package com.livelycoder.inventory.sync;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out the writes that bring the device's products in line with the backend's answer,
+ * keeping local changes the backend hasn't seen yet.
+ * <p>
+ * The steps start with a guard for every existing product they change, so a change the user
+ * makes meanwhile fails the whole batch rather than being overwritten. Deletions and SKU
+ * releases come next, then the final writes, so a SKU moving between products in one batch
+ * is free by the time its new holder is written.
+ * <p>
+ * SKUs follow {@link SyncMerge#keepsSku(SyncRecord, SyncRecord)}. A pulled product whose SKU
+ * is held by a product the batch doesn't otherwise write takes it, unless the holder has an
+ * unpushed change that keeps it: the backend is unique on SKUs, so a holder without local
+ * changes is only waiting for the newer version in which it gave the SKU up. A pulled
+ * product that loses is written without its SKU and marked dirty, so the backend learns of
+ * the outcome even if the winner never gets pushed.
+ */
+final class SyncPlanner {
+
+    /**
+     * A product the batch ends up inserting or updating
+     */
+    private static final class Write {
+        final SyncRecord remote;
+        /**
+         * As read from the device, null when the product is inserted
+         */
+        final SyncRecord current;
+        final Map<String, Object> values;
+        /**
+         * Record the product takes its fields from, whose change competes for its SKU
+         */
+        final SyncRecord fields;
+        boolean lostSku;
+
+        Write(SyncRecord remote, SyncRecord current, Map<String, Object> values, SyncRecord fields) {
+            this.remote = remote;
+            this.current = current;
+            this.values = values;
+            this.fields = fields;
+        }
+
+        String sku() {
+            return lostSku ? null : fields.sku;
+        }
+    }
+
+    private SyncPlanner() {
+    }
+
+    /**
+     * @param deviceId of this device
+     * @param pushed   records sent in this round, by sync id
+     * @param records  the backend answered with
+     * @param local    what the device has of them
+     */
+    static List<SyncStep> plan(String deviceId, Map<String, SyncRecord> pushed, List<SyncRecord> records,
+                               LocalProducts local) {
+        List<SyncStep> deletions = new ArrayList<>();
+        Set<String> deleted = new HashSet<>();
+        List<Write> writes = new ArrayList<>();
+        Map<String, Write> bySyncId = new HashMap<>();
+
+        for (SyncRecord remote : records) {
+            SyncRecord current = local.bySyncId.get(remote.syncId);
+
+            if (remote.deleted) {
+                if (current != null) {
+                    deletions.add(SyncStep.delete(remote.syncId));
+                    deleted.add(remote.syncId);
+                }
+                // Including the one the delete trigger just wrote
+                deletions.add(SyncStep.deleteTombstone(remote.syncId));
+                continue;
+            }
+
+            Write write;
+            if (current == null) {
+                if (local.tombstones.contains(remote.syncId)) {
+                    // Deleted here; the deletion is on its way and wins
+                    continue;
+                }
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put(InventoryEntry.COLUMN_SYNC_ID, remote.syncId);
+                putFields(values, remote, deviceId);
+                putSynced(values, remote);
+                values.put(InventoryEntry.COLUMN_SYNC_DIRTY, 0);
+                write = new Write(remote, null, values, remote);
+            } else {
+                if (remote.version == current.version) {
+                    // Already applied, e.g. pulled again after it was acknowledged
+                    continue;
+                }
+
+                SyncRecord sent = pushed.get(remote.syncId);
+                boolean unchangedSincePush = sent != null && !sent.deleted
+                        && sent.modifiedTime == current.modifiedTime && sent.quantity == current.quantity;
+
+                Map<String, Object> values = new LinkedHashMap<>();
+                SyncRecord fields = remote;
+                if (!local.dirty.contains(remote.syncId) || unchangedSincePush) {
+                    putFields(values, remote, deviceId);
+                    values.put(InventoryEntry.COLUMN_SYNC_DIRTY, 0);
+                } else {
+                    // Local changes the backend hasn't seen go on top of its version
+                    int base = sent != null && !sent.deleted ? sent.quantity : current.baseQuantity;
+                    if (SyncMerge.wins(current.modifiedTime, current.modifiedBy, remote.modifiedTime, remote.modifiedBy)) {
+                        fields = current;
+                    } else {
+                        putFields(values, remote, deviceId);
+                    }
+                    values.put(InventoryEntry.COLUMN_QUANTITY,
+                            SyncMerge.mergeQuantity(remote.quantity, current.quantity, base));
+                }
+                putSynced(values, remote);
+                write = new Write(remote, current, values, fields);
+            }
+            writes.add(write);
+            bySyncId.put(remote.syncId, write);
+        }
+
+        // Which write gets every SKU the writes claim
+        Map<String, Write> claims = new HashMap<>();
+        for (Write write : writes) {
+            String sku = write.sku();
+            if (sku == null) {
+                continue;
+            }
+            Write rival = claims.get(sku);
+            if (rival == null) {
+                claims.put(sku, write);
+            } else if (SyncMerge.keepsSku(write.fields, rival.fields)) {
+                rival.lostSku = true;
+                claims.put(sku, write);
+            } else {
+                write.lostSku = true;
+            }
+        }
+
+        List<SyncStep> guards = new ArrayList<>();
+        List<SyncStep> releases = new ArrayList<>();
+        for (Map.Entry<String, Write> claim : claims.entrySet()) {
+            Write write = claim.getValue();
+            SyncRecord holder = local.bySku.get(claim.getKey());
+            if (holder == null || holder.syncId.equals(write.remote.syncId)
+                    || deleted.contains(holder.syncId) || bySyncId.containsKey(holder.syncId)) {
+                continue;
+            }
+            if (local.dirty.contains(holder.syncId) && SyncMerge.keepsSku(holder, write.fields)) {
+                write.lostSku = true;
+                continue;
+            }
+            guards.add(SyncStep.assertUnchanged(holder));
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put(InventoryEntry.COLUMN_SKU, null);
+            if (!local.dirty.contains(holder.syncId)) {
+                // Moving the version keeps the dirty trigger off; the holder's own newer
+                // version replaces it. A dirty holder is pushed with its SKU cleared instead.
+                values.put(InventoryEntry.COLUMN_SYNC_VERSION, placeholderVersion(holder.version));
+            }
+            releases.add(SyncStep.update(holder.syncId, values));
+        }
+
+        List<SyncStep> finalWrites = new ArrayList<>();
+        for (Write write : writes) {
+            if (write.lostSku) {
+                write.values.put(InventoryEntry.COLUMN_SKU, null);
+                if (write.fields == write.remote) {
+                    write.values.put(InventoryEntry.COLUMN_SYNC_DIRTY, 1);
+                }
+            }
+            if (write.current == null) {
+                finalWrites.add(SyncStep.insert(write.values));
+                continue;
+            }
+
+            guards.add(SyncStep.assertUnchanged(write.current));
+            String currentSku = write.current.sku;
+            Write claimant = currentSku != null ? claims.get(currentSku) : null;
+            if (claimant != null && claimant != write) {
+                // Another product of the batch takes this one's SKU
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put(InventoryEntry.COLUMN_SKU, null);
+                values.put(InventoryEntry.COLUMN_SYNC_VERSION, placeholderVersion(write.current.version));
+                releases.add(SyncStep.update(write.remote.syncId, values));
+            }
+            finalWrites.add(SyncStep.update(write.remote.syncId, write.values));
+        }
+
+        List<SyncStep> steps = new ArrayList<>(guards);
+        steps.addAll(deletions);
+        steps.addAll(releases);
+        steps.addAll(finalWrites);
+
+        // Deletions the backend now has, whatever it answered for them
+        for (SyncRecord sent : pushed.values()) {
+            if (sent.deleted) {
+                steps.add(SyncStep.deleteTombstone(sent.syncId));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Returns a version no backend hands out and different from the given one. It is never 0,
+     * which would mark a synced product as never synced.
+     */
+    static long placeholderVersion(long version) {
+        return -Math.abs(version) - 1;
+    }
+
+    private static void putFields(Map<String, Object> values, SyncRecord record, String deviceId) {
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, record.name);
+        values.put(InventoryEntry.COLUMN_PRICE, record.price);
+        values.put(InventoryEntry.COLUMN_QUANTITY, record.quantity);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, record.supplierName);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, record.supplierPhoneNumber);
+        values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, record.reorderThreshold);
+        values.put(InventoryEntry.COLUMN_SKU, record.sku);
+        values.put(InventoryEntry.COLUMN_MODIFIED_TIME, record.modifiedTime);
+        values.put(InventoryEntry.COLUMN_MODIFIED_BY,
+                deviceId.equals(record.modifiedBy) ? null : record.modifiedBy);
+    }
+
+    /**
+     * Moves the product to the backend's version, which also keeps the dirty trigger off
+     */
+    private static void putSynced(Map<String, Object> values, SyncRecord record) {
+        values.put(InventoryEntry.COLUMN_SYNC_VERSION, record.version);
+        values.put(InventoryEntry.COLUMN_SYNC_QUANTITY, record.quantity);
+    }
+}
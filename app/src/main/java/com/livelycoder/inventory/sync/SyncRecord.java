@@ -0,0 +1,84 @@
+package com.livelycoder.inventory.sync;
+
+/**
+ * One product as it travels between a device and the sync backend.
+ * <p>
+ * A record pushed by a device carries the backend version its change was made on and the
+ * quantity it had then, so the backend can tell what changed. A record sent back carries the
+ * version the backend is at now, with the quantity as its own base.
+ */
+final class SyncRecord {
+    final String syncId;
+    final long version;
+    final boolean deleted;
+    /**
+     * Time of the last change in milliseconds since the epoch, and the device that made it
+     */
+    final long modifiedTime;
+    final String modifiedBy;
+
+    final String name;
+    final long price;
+    final int quantity;
+    final int baseQuantity;
+    final String supplierName;
+    final long supplierPhoneNumber;
+    final int reorderThreshold;
+    /**
+     * May be null
+     */
+    final String sku;
+
+    SyncRecord(String syncId, long version, long modifiedTime, String modifiedBy,
+               String name, long price, int quantity, int baseQuantity, String supplierName,
+               long supplierPhoneNumber, int reorderThreshold, String sku) {
+        this(syncId, version, false, modifiedTime, modifiedBy, name, price, quantity, baseQuantity,
+                supplierName, supplierPhoneNumber, reorderThreshold, sku);
+    }
+
+    private SyncRecord(String syncId, long version, boolean deleted, long modifiedTime,
+                       String modifiedBy, String name, long price, int quantity, int baseQuantity,
+                       String supplierName, long supplierPhoneNumber, int reorderThreshold,
+                       String sku) {
+        this.syncId = syncId;
+        this.version = version;
+        this.deleted = deleted;
+        this.modifiedTime = modifiedTime;
+        this.modifiedBy = modifiedBy;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.baseQuantity = baseQuantity;
+        this.supplierName = supplierName;
+        this.supplierPhoneNumber = supplierPhoneNumber;
+        this.reorderThreshold = reorderThreshold;
+        this.sku = sku;
+    }
+
+    /**
+     * Returns the record of a deleted product, which carries no fields
+     */
+    static SyncRecord deletion(String syncId, long version, long modifiedTime, String modifiedBy) {
+        return new SyncRecord(syncId, version, true, modifiedTime, modifiedBy,
+                null, 0, 0, 0, null, 0, 0, null);
+    }
+
+    /**
+     * Returns this record with its SKU cleared, for the product that lost it to another
+     */
+    SyncRecord withoutSku() {
+        return new SyncRecord(syncId, version, deleted, modifiedTime, modifiedBy, name, price,
+                quantity, baseQuantity, supplierName, supplierPhoneNumber, reorderThreshold, null);
+    }
+
+    /**
+     * Returns this record as the backend keeps it at a new version
+     */
+    SyncRecord atVersion(long version) {
+        if (deleted) {
+            return deletion(syncId, version, modifiedTime, modifiedBy);
+        }
+        return new SyncRecord(syncId, version, false, modifiedTime, modifiedBy, name, price,
+                quantity, quantity, supplierName, supplierPhoneNumber, reorderThreshold, sku);
+    }
+}
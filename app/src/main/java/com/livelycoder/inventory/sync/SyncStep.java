@@ -0,0 +1,74 @@
+package com.livelycoder.inventory.sync;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One write of a sync batch, made to the device's products or tombstones. A batch is applied
+ * in one transaction, in order.
+ */
+final class SyncStep {
+    /**
+     * Inserts a product with {@link #values}
+     */
+    static final int INSERT = 0;
+
+    /**
+     * Sets {@link #values} on the product with {@link #syncId}
+     */
+    static final int UPDATE = 1;
+
+    /**
+     * Deletes the product with {@link #syncId}, if there is one
+     */
+    static final int DELETE = 2;
+
+    /**
+     * Deletes the tombstone of {@link #syncId}, if there is one
+     */
+    static final int DELETE_TOMBSTONE = 3;
+
+    /**
+     * Fails the batch unless the product with {@link #syncId} is still as {@link #expected}
+     * was read: same version, modified time and quantity
+     */
+    static final int ASSERT_UNCHANGED = 4;
+
+    final int kind;
+    final String syncId;
+    /**
+     * Column values, by the names of the inventory table. Empty unless inserting or updating.
+     */
+    final Map<String, Object> values;
+    /**
+     * Null unless asserting
+     */
+    final SyncRecord expected;
+
+    private SyncStep(int kind, String syncId, Map<String, Object> values, SyncRecord expected) {
+        this.kind = kind;
+        this.syncId = syncId;
+        this.values = values;
+        this.expected = expected;
+    }
+
+    static SyncStep insert(Map<String, Object> values) {
+        return new SyncStep(INSERT, null, values, null);
+    }
+
+    static SyncStep update(String syncId, Map<String, Object> values) {
+        return new SyncStep(UPDATE, syncId, values, null);
+    }
+
+    static SyncStep delete(String syncId) {
+        return new SyncStep(DELETE, syncId, new LinkedHashMap<String, Object>(), null);
+    }
+
+    static SyncStep deleteTombstone(String syncId) {
+        return new SyncStep(DELETE_TOMBSTONE, syncId, new LinkedHashMap<String, Object>(), null);
+    }
+
+    static SyncStep assertUnchanged(SyncRecord expected) {
+        return new SyncStep(ASSERT_UNCHANGED, expected.syncId, new LinkedHashMap<String, Object>(), expected);
+    }
+}
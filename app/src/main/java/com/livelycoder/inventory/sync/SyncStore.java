@@ -0,0 +1,46 @@
+package com.livelycoder.inventory.sync;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The device's side of sync: its products, its tombstones and where it got to
+ */
+interface SyncStore {
+
+    /**
+     * Returns the id of this device, created on first use
+     */
+    String deviceId();
+
+    /**
+     * Returns the backend version the device has pulled up to, 0 before the first sync
+     */
+    long cursor();
+
+    void saveCursor(long cursor);
+
+    /**
+     * Reads products changed since they were last synced
+     */
+    List<SyncRecord> readDirty(String deviceId, int limit);
+
+    /**
+     * Reads the deletions the backend doesn't have yet
+     */
+    List<SyncRecord> readTombstones(String deviceId, int limit);
+
+    /**
+     * Reads what the device has of the records the backend answered with
+     */
+    LocalProducts readLocal(String deviceId, List<SyncRecord> records);
+
+    /**
+     * Applies the steps in one transaction
+     *
+     * @throws SyncConflictException if a product changed since it was read, and nothing was
+     *                               written
+     * @throws IOException           if the products couldn't be reached
+     */
+    void apply(List<SyncStep> steps) throws IOException, SyncConflictException;
+}
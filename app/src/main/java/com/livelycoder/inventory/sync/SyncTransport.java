@@ -0,0 +1,24 @@
+package com.livelycoder.inventory.sync;
+
+import java.io.IOException;
+
+/**
+ * Carries sync payloads to a backend and back, in the format of {@link SyncCodec}.
+ * <p>
+ * A backend merges every pushed record with {@link SyncMerge}'s rule, clears the SKU of the
+ * product that loses one as a change of that product, gives each product it changes the next
+ * version of one global sequence, and answers with the products it changed
+ * for this request followed by the ones past the device's cursor. A device may push a record
+ * again when it never got the answer, so a record pushed again by the same device with the
+ * same version and modified time must be treated as already merged.
+ */
+public interface SyncTransport {
+
+    /**
+     * Sends a request and waits for the response. Called off the main thread.
+     *
+     * @throws IOException if the backend couldn't be reached or didn't answer; the exchange
+     *                     is retried later
+     */
+    byte[] exchange(byte[] request) throws IOException;
+}
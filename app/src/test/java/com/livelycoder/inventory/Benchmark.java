@@ -0,0 +1,224 @@
+package com.livelycoder.inventory;
+
+import org.junit.Assume;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small JMH-style harness for benchmarks that run with the unit tests on the host JVM.
+ * <p>
+ * Every measurement runs warmup iterations, then measured iterations of a fixed duration,
+ * and reports the time per operation of each. The results of a suite are written as JSON to
+ * {@code inventory.benchmarks.dir}, one file per suite, so runs on two commits can be diffed.
+ * <p>
+ * Benchmarks are skipped unless the {@code inventory.benchmarks} system property is true,
+ * which {@code ./gradlew testDebugUnitTest -Pbenchmarks} sets. The iteration counts and
+ * duration can be changed with {@code inventory.benchmarks.warmups},
+ * {@code inventory.benchmarks.iterations} and {@code inventory.benchmarks.millis}.
+ */
+public final class Benchmark {
+
+    /**
+     * Code to measure
+     */
+    public interface Body {
+        /**
+         * Runs the operations once
+         *
+         * @return any value depending on the work done, so the JIT can't drop it
+         */
+        long run() throws Exception;
+    }
+
+    private static final int WARMUPS = Integer.getInteger("inventory.benchmarks.warmups", 3);
+
+    private static final int ITERATIONS = Integer.getInteger("inventory.benchmarks.iterations", 5);
+
+    private static final long ITERATION_NANOS =
+            Long.getLong("inventory.benchmarks.millis", 500) * 1000000L;
+
+    /**
+     * Sink for the values returned by the bodies
+     */
+    private static volatile long blackhole;
+
+    private final String suite;
+
+    private final List<String> results = new ArrayList<>();
+
+    /**
+     * @param suite name of the suite, which names its JSON file
+     */
+    public Benchmark(String suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * Skips the calling test unless benchmarks were asked for
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks run with -Pbenchmarks", Boolean.getBoolean("inventory.benchmarks"));
+    }
+
+    /**
+     * Measures the throughput of a body that is cheap to run again and again
+     *
+     * @param name       of the measurement
+     * @param parameters names and values describing the setup, e.g. "rows", 1000
+     * @param operations performed by one run of the body
+     * @param body       to measure
+     */
+    public void measure(String name, Object[] parameters, int operations, Body body) throws Exception {
+        for (int i = 0; i < WARMUPS; i++) {
+            runIteration(operations, body);
+        }
+        double[] nanosPerOperation = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            nanosPerOperation[i] = runIteration(operations, body);
+        }
+        record(name, parameters, nanosPerOperation);
+    }
+
+    /**
+     * Measures a body that needs fresh state every time, timing each run on its own
+     *
+     * @param name       of the measurement
+     * @param parameters names and values describing the setup
+     * @param operations performed by one run of the body
+     * @param setUp      run before every run of the body, not timed
+     * @param body       to measure
+     */
+    public void measureSingleShot(String name, Object[] parameters, int operations, Body setUp,
+                                  Body body) throws Exception {
+        for (int i = 0; i < WARMUPS; i++) {
+            setUp.run();
+            blackhole += body.run();
+        }
+        double[] nanosPerOperation = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            setUp.run();
+            long start = System.nanoTime();
+            blackhole += body.run();
+            nanosPerOperation[i] = (System.nanoTime() - start) / (double) operations;
+        }
+        record(name, parameters, nanosPerOperation);
+    }
+
+    /**
+     * Writes the results recorded so far, if there are any
+     */
+    public void write() throws IOException {
+        if (results.isEmpty()) {
+            return;
+        }
+        File directory = new File(System.getProperty("inventory.benchmarks.dir", "build/benchmarks"));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File file = new File(directory, suite + ".json");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write("{\"suite\": " + quote(suite)
+                    + ", \"jvm\": " + quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))
+                    + ", \"os\": " + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch"))
+                    + ", \"warmups\": " + WARMUPS
+                    + ", \"iterations\": " + ITERATIONS
+                    + ", \"results\": [\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write("  " + results.get(i) + (i == results.size() - 1 ? "\n" : ",\n"));
+            }
+            writer.write("]}\n");
+        } finally {
+            writer.close();
+        }
+        System.out.println("Benchmark results written to " + file);
+    }
+
+    private static double runIteration(int operations, Body body) throws Exception {
+        long runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            blackhole += body.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        return elapsed / (double) (runs * operations);
+    }
+
+    private void record(String name, Object[] parameters, double[] nanosPerOperation) {
+        double[] sorted = nanosPerOperation.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double value : sorted) {
+            sum += value;
+        }
+        double mean = sum / sorted.length;
+        double squares = 0;
+        for (double value : sorted) {
+            squares += (value - mean) * (value - mean);
+        }
+        double stdev = sorted.length > 1 ? Math.sqrt(squares / (sorted.length - 1)) : 0;
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            params.put((String) parameters[i], parameters[i + 1]);
+        }
+
+        StringBuilder json = new StringBuilder("{\"name\": ").append(quote(name)).append(", \"params\": {");
+        String separator = "";
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            json.append(separator).append(quote(entry.getKey())).append(": ");
+            if (entry.getValue() instanceof Number) {
+                json.append(entry.getValue());
+            } else {
+                json.append(quote(String.valueOf(entry.getValue())));
+            }
+            separator = ", ";
+        }
+        json.append("}, \"unit\": \"ns/op\"")
+                .append(", \"mean\": ").append(format(mean))
+                .append(", \"stdev\": ").append(format(stdev))
+                .append(", \"min\": ").append(format(sorted[0]))
+                .append(", \"median\": ").append(format(sorted[sorted.length / 2]))
+                .append(", \"max\": ").append(format(sorted[sorted.length - 1]))
+                .append(", \"samples\": [");
+        for (int i = 0; i < nanosPerOperation.length; i++) {
+            json.append(i == 0 ? "" : ", ").append(format(nanosPerOperation[i]));
+        }
+        json.append("]}");
+        results.add(json.toString());
+
+        System.out.println(suite + "." + name + " " + params + ": " + format(mean) + " ns/op +- " + format(stdev));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.livelycoder.inventory.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The change feed triggers and the query reading the feed, on the migrated schema
+ */
+public class ChangeFeedTest {
+    private JdbcMigrationDatabase db;
+
+    @Before
+    public void setUp() throws SQLException {
+        db = JdbcMigrationDatabase.latest(28);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    public void insertLogsOnlyTheInsert() {
+        long apple = insert("Apple", 5);
+
+        assertEquals(Arrays.asList(apple + ":1"), log());
+    }
+
+    @Test
+    public void updateLogsOnceForTheProductsOwnColumns() {
+        long apple = insert("Apple", 5);
+        clearLog();
+
+        // Also moves the store's stock and the total, and marks the row dirty
+        db.execSQL("UPDATE inventory SET quantity = 7 WHERE _id = ?", new Object[]{apple});
+        assertEquals(Arrays.asList(apple + ":2"), log());
+
+        clearLog();
+        db.execSQL("UPDATE inventory SET sync_version = 3, sync_dirty = 0 WHERE _id = ?", new Object[]{apple});
+        assertEquals(new ArrayList<String>(), log());
+    }
+
+    @Test
+    public void stockElsewhereLogsAnUpdate() {
+        long apple = insert("Apple", 5);
+        clearLog();
+
+        db.execSQL("INSERT INTO inventory_stock VALUES (?, 2, 4)", new Object[]{apple});
+        db.execSQL("UPDATE inventory_stock SET quantity = 6 WHERE product_id = ? AND location_id = 2",
+                new Object[]{apple});
+        db.execSQL("DELETE FROM inventory_stock WHERE product_id = ? AND location_id = 2", new Object[]{apple});
+        assertEquals(Arrays.asList(apple + ":2", apple + ":2", apple + ":2"), log());
+    }
+
+    @Test
+    public void deleteLogsOnlyTheDelete() {
+        long apple = insert("Apple", 5);
+        db.execSQL("INSERT INTO inventory_stock VALUES (?, 3, 4)", new Object[]{apple});
+        clearLog();
+
+        db.execSQL("DELETE FROM inventory WHERE _id = ?", new Object[]{apple});
+        assertEquals(Arrays.asList(apple + ":3"), log());
+    }
+
+    @Test
+    public void feedCoalescesChangesPerProduct() throws SQLException {
+        long apple = insert("Apple", 5);
+        long pear = insert("Pear", 1);
+        long since = lastChange();
+        db.execSQL("UPDATE inventory SET price = 300 WHERE _id = ?", new Object[]{apple});
+        db.execSQL("UPDATE inventory SET price = 400 WHERE _id = ?", new Object[]{apple});
+        long plum = insert("Plum", 2);
+        db.execSQL("UPDATE inventory SET quantity = 3 WHERE _id = ?", new Object[]{plum});
+        db.execSQL("DELETE FROM inventory WHERE _id = ?", new Object[]{pear});
+
+        // Changes after an insert in the range are still an insert
+        assertEquals(Arrays.asList(apple + ":1", pear + ":3", plum + ":1"), products(feed(0, null)));
+        assertEquals(Arrays.asList(apple + ":2", plum + ":1", pear + ":3"), products(feed(since, null)));
+    }
+
+    @Test
+    public void pagesNeverLoseAnInsert() throws SQLException {
+        long apple = insert("Apple", 5);
+        long pear = insert("Pear", 1);
+        db.execSQL("UPDATE inventory SET price = 300 WHERE _id = ?", new Object[]{apple});
+
+        List<String> read = new ArrayList<>();
+        long since = 0;
+        List<long[]> page;
+        while (!(page = feed(since, "1")).isEmpty()) {
+            read.addAll(products(page));
+            since = page.get(page.size() - 1)[0];
+        }
+        assertEquals(Arrays.asList(apple + ":1", pear + ":1", apple + ":2"), read);
+    }
+
+    @Test
+    public void prunedRangeReturnsReset() throws SQLException {
+        insert("Apple", 5);
+        insert("Pear", 1);
+        long last = lastChange();
+        db.execSQL("DELETE FROM inventory_changes WHERE _id = ?", new Object[]{last - 1});
+
+        List<long[]> rows = feed(0, null);
+        assertEquals(1, rows.size());
+        assertEquals(last, rows.get(0)[0]);
+        assertEquals(0, rows.get(0)[2]);
+
+        assertEquals(1, feed(last - 1, null).size());
+        assertEquals(0, feed(last, null).size());
+    }
+
+    private long insert(String name, int quantity) {
+        db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name, supplier_phone_number)"
+                + " VALUES (?, 100, ?, 'Farm', 0)", new Object[]{name, quantity});
+        return db.queryLong("SELECT last_insert_rowid()");
+    }
+
+    private void clearLog() {
+        db.execSQL("DELETE FROM inventory_changes");
+    }
+
+    private long lastChange() {
+        return db.queryLong("SELECT MAX(_id) FROM inventory_changes");
+    }
+
+    /**
+     * @return the logged changes in order, as "product:op"
+     */
+    private List<String> log() {
+        return db.queryStrings("SELECT product_id || ':' || op FROM inventory_changes ORDER BY _id", null);
+    }
+
+    /**
+     * @return the rows of the feed after since, as {_id, product_id, op}
+     */
+    private List<long[]> feed(long since, String limit) throws SQLException {
+        PreparedStatement statement = db.getConnection().prepareStatement(ChangeFeed.build(
+                new String[]{"_id", "product_id", "op"}, limit));
+        try {
+            statement.setString(1, String.valueOf(since));
+            ResultSet rows = statement.executeQuery();
+            List<long[]> feed = new ArrayList<>();
+            while (rows.next()) {
+                feed.add(new long[]{rows.getLong(1), rows.getLong(2), rows.getLong(3)});
+            }
+            return feed;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static List<String> products(List<long[]> feed) {
+        List<String> products = new ArrayList<>();
+        for (long[] row : feed) {
+            products.add(row[1] + ":" + row[2]);
+        }
+        return products;
+    }
+}
@@ -0,0 +1,83 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.Benchmark;
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Building the selection of a directory query, done for every page the product list loads
+ */
+public class DirectoryQueryBenchmark {
+    private static final Benchmark benchmark = new Benchmark("directory_query");
+
+    @BeforeClass
+    public static void setUpClass() {
+        Benchmark.assumeEnabled();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        benchmark.write();
+    }
+
+    @Test
+    public void nameKeyset() throws Exception {
+        measure("name_keyset",
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "4242",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "Granny Smith apples");
+    }
+
+    @Test
+    public void quantityKeyset() throws Exception {
+        measure("quantity_keyset",
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_QUANTITY,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "4242",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "17");
+    }
+
+    @Test
+    public void namePrefixKeyset() throws Exception {
+        measure("name_prefix_keyset",
+                InventoryEntry.QUERY_PARAMETER_NAME_PREFIX, "Gran",
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "4242",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "Granny Smith apples");
+    }
+
+    @Test
+    public void supplierPrefix() throws Exception {
+        measure("supplier_prefix",
+                InventoryEntry.QUERY_PARAMETER_SUPPLIER_PREFIX, "Orchard",
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100");
+    }
+
+    private static void measure(String name, String... parameters) throws Exception {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            values.put(parameters[i], parameters[i + 1]);
+        }
+        final DirectoryQuery.Parameters source = new DirectoryQuery.Parameters() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        };
+        benchmark.measure(name, new Object[0], 1, new Benchmark.Body() {
+            @Override
+            public long run() {
+                DirectoryQuery query = DirectoryQuery.from(source, values, null, null, null);
+                return query.selection.length() + query.selectionArgs.length;
+            }
+        });
+    }
+}
@@ -0,0 +1,174 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on the SQL of every query shape {@link DirectoryQuery} supports and
+ * fails if SQLite would scan the inventory table or sort in a temporary b-tree instead of
+ * walking the intended index.
+ */
+public class DirectoryQueryPlanTest {
+
+    private static final Pattern TABLE_SCAN = Pattern.compile("SCAN (TABLE )?inventory( |$)");
+
+    private static final String[] PROJECTION = new String[]{
+            InventoryEntry._ID, InventoryEntry.COLUMN_PRODUCT_NAME, InventoryEntry.COLUMN_QUANTITY
+    };
+
+    private JdbcMigrationDatabase db;
+
+    @Before
+    public void setUp() throws SQLException {
+        // Lollipop and later, where the partial low stock index exists
+        db = JdbcMigrationDatabase.latest(28);
+        for (int i = 0; i < 200; i++) {
+            db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name,"
+                            + " supplier_phone_number, reorder_threshold) VALUES (?, ?, ?, ?, 0, 5)",
+                    new Object[]{"Product " + i, i * 10, i % 20, "Supplier " + (i % 7)});
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    public void productNameSortWalksNameIndex() {
+        assertIndexed(InventoryEntry.INDEX_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100");
+        assertIndexed(InventoryEntry.INDEX_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "42",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "Product 42");
+    }
+
+    @Test
+    public void namePrefixSearchesNameIndex() {
+        assertIndexed(InventoryEntry.INDEX_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_NAME_PREFIX, "Prod");
+        assertIndexed(InventoryEntry.INDEX_PRODUCT_NAME,
+                InventoryEntry.QUERY_PARAMETER_NAME_PREFIX, "Prod",
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "42",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "Product 42");
+    }
+
+    @Test
+    public void supplierSortAndPrefixUseSupplierIndex() {
+        assertIndexed(InventoryEntry.INDEX_SUPPLIER_NAME,
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_SUPPLIER_NAME,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "42",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "Supplier 3");
+        assertIndexed(InventoryEntry.INDEX_SUPPLIER_NAME,
+                InventoryEntry.QUERY_PARAMETER_SUPPLIER_PREFIX, "Supp");
+    }
+
+    @Test
+    public void quantitySortWalksQuantityIndex() {
+        assertIndexed(InventoryEntry.INDEX_QUANTITY,
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_QUANTITY,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100");
+        assertIndexed(InventoryEntry.INDEX_QUANTITY,
+                InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_QUANTITY,
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "42",
+                InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "7");
+    }
+
+    @Test
+    public void idPaginationSearchesPrimaryKey() {
+        assertIndexed("PRIMARY KEY",
+                InventoryEntry.QUERY_PARAMETER_LIMIT, "100",
+                InventoryEntry.QUERY_PARAMETER_AFTER_ID, "42");
+    }
+
+    @Test
+    public void lowStockWalksPartialIndex() {
+        assertPlan(InventoryEntry.INDEX_LOW_STOCK, buildSql(DirectoryQuery.LOW_STOCK_SELECTION,
+                DirectoryQuery.LOW_STOCK_ORDER, "100"), new String[0]);
+    }
+
+    @Test
+    public void unindexedOrderIsCaught() {
+        try {
+            assertPlan(InventoryEntry.INDEX_PRODUCT_NAME,
+                    buildSql(null, InventoryEntry.COLUMN_PRICE, null), new String[0]);
+        } catch (AssertionError expected) {
+            return;
+        }
+        fail("A sort on an unindexed column wasn't reported");
+    }
+
+    /**
+     * Checks the plan of the directory query built from the given name and value pairs
+     */
+    private void assertIndexed(String index, String... parameters) {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            values.put(parameters[i], parameters[i + 1]);
+        }
+        DirectoryQuery query = DirectoryQuery.from(new DirectoryQuery.Parameters() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        }, values, null, null, null);
+
+        assertPlan(index, buildSql(query.selection, query.sortOrder, query.limit),
+                query.selectionArgs != null ? query.selectionArgs : new String[0]);
+    }
+
+    private void assertPlan(String index, String sql, String[] args) {
+        List<String> plan = db.explainQueryPlan(sql, args);
+        String description = sql + "\n  " + plan;
+        boolean usesIndex = false;
+        for (String step : plan) {
+            if (step.contains("TEMP B-TREE")) {
+                throw new AssertionError("Sorts in a temporary b-tree: " + description);
+            }
+            if (TABLE_SCAN.matcher(step).find() && !step.contains(" USING ")) {
+                throw new AssertionError("Scans the table: " + description);
+            }
+            usesIndex |= step.contains(index);
+        }
+        assertTrue("Doesn't use " + index + ": " + description, usesIndex);
+    }
+
+    /**
+     * Builds the statement SQLiteDatabase.query would run
+     */
+    private static String buildSql(String selection, String sortOrder, String limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < PROJECTION.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(PROJECTION[i]);
+        }
+        sql.append(" FROM ").append(InventoryEntry.TABLE_NAME);
+        if (selection != null) {
+            sql.append(" WHERE ").append(selection);
+        }
+        if (sortOrder != null) {
+            sql.append(" ORDER BY ").append(sortOrder);
+        }
+        if (limit != null) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        return sql.toString();
+    }
+}
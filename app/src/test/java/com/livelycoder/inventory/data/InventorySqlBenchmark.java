@@ -0,0 +1,229 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.Benchmark;
+import com.livelycoder.inventory.data.InventoryContract.InventoryEntry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The statements behind the provider's insert, bulk insert, point query, page query,
+ * full-directory query, quantity update and delete-all, run on the migrated schema with all
+ * its triggers through sqlite-jdbc.
+ * <p>
+ * Writes are rolled back after every run so the table keeps its size. The database is in
+ * memory, so commits cost nothing here that they would on a device's flash.
+ * <p>
+ * Runs at 1,000, 100,000 and 1,000,000 rows; {@code -Dinventory.benchmarks.rows=1000,100000}
+ * picks other sizes, e.g. to skip the slow largest one.
+ */
+public class InventorySqlBenchmark {
+    private static final Benchmark benchmark = new Benchmark("inventory_sql");
+
+    private static final int BULK_ROWS = 1000;
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final String INSERT = "INSERT INTO inventory (product_name, price, quantity,"
+            + " supplier_name, supplier_phone_number, reorder_threshold) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @BeforeClass
+    public static void setUpClass() {
+        Benchmark.assumeEnabled();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        benchmark.write();
+    }
+
+    @Test
+    public void run() throws Exception {
+        for (String rows : System.getProperty("inventory.benchmarks.rows", "1000,100000,1000000").split(",")) {
+            JdbcMigrationDatabase db = JdbcMigrationDatabase.latest(28);
+            try {
+                measure(db.getConnection(), Integer.parseInt(rows.trim()));
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    private static void measure(final Connection connection, final int rows) throws Exception {
+        final Random random = new Random(rows);
+        fill(connection, rows, random);
+        Object[] parameters = new Object[]{"rows", rows};
+
+        final PreparedStatement insert = connection.prepareStatement(INSERT);
+        benchmark.measure("insert", parameters, 1, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                connection.setAutoCommit(false);
+                bindProduct(insert, random.nextInt(), random);
+                int inserted = insert.executeUpdate();
+                connection.rollback();
+                connection.setAutoCommit(true);
+                return inserted;
+            }
+        });
+
+        benchmark.measure("bulk_insert", parameters, BULK_ROWS, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                connection.setAutoCommit(false);
+                for (int i = 0; i < BULK_ROWS; i++) {
+                    bindProduct(insert, i, random);
+                    insert.executeUpdate();
+                }
+                connection.rollback();
+                connection.setAutoCommit(true);
+                return BULK_ROWS;
+            }
+        });
+        insert.close();
+
+        final PreparedStatement pointQuery = connection.prepareStatement(
+                "SELECT * FROM inventory WHERE _id = ?");
+        benchmark.measure("point_query", parameters, 1, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                pointQuery.setLong(1, 1 + random.nextInt(rows));
+                return count(pointQuery.executeQuery());
+            }
+        });
+        pointQuery.close();
+
+        final String[][] pageStarts = pageStarts(connection, rows, random);
+        Map<String, String> values = new HashMap<>();
+        values.put(InventoryEntry.QUERY_PARAMETER_SORT, InventoryEntry.SORT_PRODUCT_NAME);
+        values.put(InventoryEntry.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE));
+        values.put(InventoryEntry.QUERY_PARAMETER_AFTER_ID, "0");
+        values.put(InventoryEntry.QUERY_PARAMETER_AFTER_VALUE, "");
+        DirectoryQuery query = DirectoryQuery.from(parameters(values), values, null, null, null);
+        final PreparedStatement page = connection.prepareStatement("SELECT _id, product_name, price,"
+                + " quantity, total_quantity FROM inventory WHERE " + query.selection
+                + " ORDER BY " + query.sortOrder + " LIMIT " + query.limit);
+        benchmark.measure("keyset_page", parameters, 1, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                String[] start = pageStarts[random.nextInt(pageStarts.length)];
+                page.setString(1, start[1]);
+                page.setString(2, start[1]);
+                page.setString(3, start[0]);
+                return count(page.executeQuery());
+            }
+        });
+        page.close();
+
+        final PreparedStatement directory = connection.prepareStatement(
+                "SELECT _id, product_name, price, quantity FROM inventory ORDER BY _id");
+        benchmark.measure("full_directory", parameters, rows, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                return count(directory.executeQuery());
+            }
+        });
+        directory.close();
+
+        final PreparedStatement update = connection.prepareStatement(
+                "UPDATE inventory SET quantity = quantity + 1 WHERE _id = ?");
+        benchmark.measure("quantity_update", parameters, 1, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                connection.setAutoCommit(false);
+                update.setLong(1, 1 + random.nextInt(rows));
+                int updated = update.executeUpdate();
+                connection.rollback();
+                connection.setAutoCommit(true);
+                return updated;
+            }
+        });
+        update.close();
+
+        final Statement deleteAll = connection.createStatement();
+        benchmark.measureSingleShot("delete_all", parameters, rows, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                connection.setAutoCommit(false);
+                return 0;
+            }
+        }, new Benchmark.Body() {
+            @Override
+            public long run() throws SQLException {
+                int deleted = deleteAll.executeUpdate("DELETE FROM inventory");
+                connection.rollback();
+                connection.setAutoCommit(true);
+                return deleted;
+            }
+        });
+        deleteAll.close();
+    }
+
+    private static void fill(Connection connection, int rows, Random random) throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(INSERT);
+        for (int i = 0; i < rows; i++) {
+            bindProduct(insert, i, random);
+            insert.executeUpdate();
+        }
+        insert.close();
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private static void bindProduct(PreparedStatement insert, int i, Random random) throws SQLException {
+        insert.setString(1, "Product " + Integer.toHexString(random.nextInt()) + " " + i);
+        insert.setLong(2, random.nextInt(100000));
+        insert.setInt(3, random.nextInt(100));
+        insert.setString(4, "Supplier " + random.nextInt(200));
+        insert.setLong(5, 5550000 + random.nextInt(10000));
+        insert.setInt(6, 5);
+    }
+
+    /**
+     * Picks the (id, name) keys of random rows to start pages after
+     */
+    private static String[][] pageStarts(Connection connection, int rows, Random random) throws SQLException {
+        String[][] starts = new String[100][];
+        PreparedStatement select = connection.prepareStatement(
+                "SELECT _id, product_name FROM inventory WHERE _id = ?");
+        for (int i = 0; i < starts.length; i++) {
+            select.setLong(1, 1 + random.nextInt(rows));
+            ResultSet row = select.executeQuery();
+            row.next();
+            starts[i] = new String[]{row.getString(1), row.getString(2)};
+            row.close();
+        }
+        select.close();
+        return starts;
+    }
+
+    private static DirectoryQuery.Parameters parameters(final Map<String, String> values) {
+        return new DirectoryQuery.Parameters() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        };
+    }
+
+    private static long count(ResultSet rows) throws SQLException {
+        long count = 0;
+        while (rows.next()) {
+            count += rows.getLong(1);
+        }
+        rows.close();
+        return count;
+    }
+}
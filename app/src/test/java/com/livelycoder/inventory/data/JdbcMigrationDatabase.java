@@ -0,0 +1,148 @@
+package com.livelycoder.inventory.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory SQLite database on the host JVM, through sqlite-jdbc, that the migrations and
+ * the provider's SQL can be run against without a device.
+ */
+public final class JdbcMigrationDatabase implements MigrationDatabase {
+    private final Connection connection;
+
+    private final int sdkVersion;
+
+    /**
+     * @param sdkVersion Android version to report to the migrations
+     */
+    JdbcMigrationDatabase(int sdkVersion) throws SQLException {
+        this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        this.sdkVersion = sdkVersion;
+    }
+
+    /**
+     * Opens a database holding the latest schema
+     */
+    public static JdbcMigrationDatabase latest(int sdkVersion) throws SQLException {
+        JdbcMigrationDatabase db = new JdbcMigrationDatabase(sdkVersion);
+        Migrations.createVersion1(db);
+        Migrations.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+        return db;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) {
+        try {
+            PreparedStatement statement = prepare(sql, bindArgs);
+            try {
+                statement.execute();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    @Override
+    public List<String> queryStrings(String sql, String[] selectionArgs) {
+        try {
+            PreparedStatement statement = prepare(sql, selectionArgs);
+            try {
+                List<String> values = new ArrayList<>();
+                ResultSet rows = statement.executeQuery();
+                while (rows.next()) {
+                    values.add(rows.getString(1));
+                }
+                return values;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    /**
+     * Returns the steps SQLite plans for a statement, the detail column of EXPLAIN QUERY PLAN
+     */
+    List<String> explainQueryPlan(String sql, String[] args) {
+        try {
+            PreparedStatement statement = prepare("EXPLAIN QUERY PLAN " + sql, args);
+            try {
+                List<String> steps = new ArrayList<>();
+                ResultSet rows = statement.executeQuery();
+                while (rows.next()) {
+                    steps.add(rows.getString("detail"));
+                }
+                return steps;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    /**
+     * Runs a query returning a single number
+     */
+    public long queryLong(String sql, Object... args) {
+        List<String> values = queryStrings(sql, toStrings(args));
+        if (values.size() != 1 || values.get(0) == null) {
+            throw new IllegalStateException(sql + " returned " + values);
+        }
+        return Long.parseLong(values.get(0));
+    }
+
+    @Override
+    public int sdkVersion() {
+        return sdkVersion;
+    }
+
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    private PreparedStatement prepare(String sql, Object[] args) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+        }
+        return statement;
+    }
+
+    private static String[] toStrings(Object[] args) {
+        String[] strings = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            strings[i] = String.valueOf(args[i]);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,223 @@
+package com.livelycoder.inventory.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Upgrades a version 1 database holding data to {@link InventoryDbHelper#DATABASE_VERSION}, on
+ * the Android versions where the steps differ.
+ */
+@RunWith(Parameterized.class)
+public class MigrationsTest {
+
+    @Parameterized.Parameters(name = "sdk {0}")
+    public static Collection<Object[]> sdkVersions() {
+        return Arrays.asList(new Object[][]{{15}, {16}, {21}, {28}});
+    }
+
+    private final int sdkVersion;
+
+    private JdbcMigrationDatabase db;
+
+    public MigrationsTest(int sdkVersion) {
+        this.sdkVersion = sdkVersion;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        db = new JdbcMigrationDatabase(sdkVersion);
+        Migrations.createVersion1(db);
+        insertVersion1("Apple", 0.1, 5, "Farm", 5551234);
+        insertVersion1("Pear", 19.99, 0, "Farm", 5551234);
+        insertVersion1("Plum", 2.68, 3, "Orchard", 5554321);
+        // The highest id is gone, and must not be handed out again
+        insertVersion1("Quince", 1, 1, "Orchard", 5554321);
+        db.execSQL("DELETE FROM inventory WHERE _id = 4");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Test
+    public void upgradeConvertsPricesToMinorUnits() {
+        migrateToLatest();
+
+        assertEquals(10, db.queryLong("SELECT price FROM inventory WHERE product_name = 'Apple'"));
+        assertEquals(1999, db.queryLong("SELECT price FROM inventory WHERE product_name = 'Pear'"));
+        assertEquals(268, db.queryLong("SELECT price FROM inventory WHERE product_name = 'Plum'"));
+        assertEquals("integer", db.queryStrings("SELECT typeof(price) FROM inventory GROUP BY 1", null).get(0));
+    }
+
+    @Test
+    public void upgradeKeepsRowsAndDerivedState() {
+        migrateToLatest();
+
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory"));
+        assertEquals(8, db.queryLong("SELECT SUM(total_quantity) FROM inventory"));
+        assertEquals(0, db.queryLong("SELECT COUNT(*) FROM inventory WHERE total_quantity != quantity"));
+
+        // Summary
+        assertEquals(10 * 5 + 268 * 3, db.queryLong("SELECT total_value FROM inventory_summary"));
+        assertEquals(3, db.queryLong("SELECT product_count FROM inventory_summary"));
+        assertEquals(8, db.queryLong("SELECT total_quantity FROM inventory_summary"));
+        assertEquals(1, db.queryLong("SELECT out_of_stock_count FROM inventory_summary"));
+
+        // Every product starts its history, store stock and sync state
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory_movements"));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory_stock WHERE location_id = 1"));
+        assertEquals(3, db.queryLong("SELECT COUNT(DISTINCT sync_id) FROM inventory"));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory WHERE sync_dirty = 1 AND sync_version = 0"));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory_fts WHERE inventory_fts MATCH 'farm OR orchard'"));
+        assertEquals(3, db.queryLong("SELECT COUNT(*) FROM inventory_locations"));
+    }
+
+    @Test
+    public void upgradeKeepsAutoincrementCounter() {
+        migrateToLatest();
+
+        db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name, supplier_phone_number)"
+                + " VALUES ('Fig', 100, 1, 'Orchard', 0)");
+        assertEquals(5, db.queryLong("SELECT MAX(_id) FROM inventory"));
+    }
+
+    @Test
+    public void upgradeRecreatesSchemaObjects() {
+        migrateToLatest();
+
+        List<String> objects = db.queryStrings("SELECT name FROM sqlite_master", null);
+        for (String name : new String[]{
+                "inventory_product_name_index", "inventory_supplier_name_index", "inventory_quantity_index",
+                "inventory_sku_index", "inventory_sync_id_index", "inventory_sync_dirty_index",
+                "inventory_fts", "inventory_summary", "inventory_movements", "inventory_snapshots",
+                "inventory_stock", "inventory_locations", "inventory_changes", "inventory_tombstones",
+                "inventory_fts_insert", "inventory_fts_update", "inventory_fts_delete",
+                "inventory_summary_insert", "inventory_summary_update", "inventory_summary_delete",
+                "inventory_movements_insert", "inventory_movements_update", "inventory_movements_delete",
+                "inventory_changes_insert", "inventory_changes_update", "inventory_changes_delete",
+                "inventory_changes_stock_insert", "inventory_changes_stock_update", "inventory_changes_stock_delete",
+                "inventory_sync_insert", "inventory_sync_update", "inventory_sync_delete"}) {
+            assertTrue(name, objects.contains(name));
+        }
+        assertEquals(sdkVersion >= 21, objects.contains("inventory_low_stock_index"));
+
+        String fts = db.queryStrings("SELECT sql FROM sqlite_master WHERE name = 'inventory_fts'", null).get(0);
+        assertEquals(sdkVersion >= 16, fts.contains("prefix"));
+    }
+
+    @Test
+    public void stepwiseUpgradeMatchesSingleUpgrade() throws SQLException {
+        JdbcMigrationDatabase stepwise = new JdbcMigrationDatabase(sdkVersion);
+        try {
+            Migrations.createVersion1(stepwise);
+            for (int version = 2; version <= InventoryDbHelper.DATABASE_VERSION; version++) {
+                Migrations.migrate(stepwise, version - 1, version);
+            }
+            migrateToLatest();
+
+            String schema = "SELECT type || ' ' || name || ' ' || IFNULL(sql, '') FROM sqlite_master"
+                    + " ORDER BY type, name";
+            assertEquals(db.queryStrings(schema, null), stepwise.queryStrings(schema, null));
+        } finally {
+            stepwise.close();
+        }
+    }
+
+    @Test
+    public void summaryCountsStockAtEveryLocation() {
+        migrateToLatest();
+        long apple = db.queryLong("SELECT _id FROM inventory WHERE product_name = 'Apple'");
+        long pear = db.queryLong("SELECT _id FROM inventory WHERE product_name = 'Pear'");
+
+        db.execSQL("INSERT INTO inventory_stock VALUES (?, 3, 20)", new Object[]{apple});
+        assertSummaryMatchesProducts();
+        assertEquals(28, db.queryLong("SELECT total_quantity FROM inventory_summary"));
+
+        // Pear has stock in the back room only, so it's no longer out of stock
+        db.execSQL("INSERT INTO inventory_stock VALUES (?, 2, 4)", new Object[]{pear});
+        assertEquals(0, db.queryLong("SELECT out_of_stock_count FROM inventory_summary"));
+
+        db.execSQL("UPDATE inventory SET price = price + 1, quantity = quantity + 2 WHERE _id = ?", new Object[]{apple});
+        assertSummaryMatchesProducts();
+        db.execSQL("UPDATE inventory_stock SET quantity = 0 WHERE product_id = ?", new Object[]{pear});
+        assertSummaryMatchesProducts();
+        db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name, supplier_phone_number)"
+                + " VALUES ('Fig', 100, 6, 'Orchard', 0)");
+        assertSummaryMatchesProducts();
+        db.execSQL("DELETE FROM inventory WHERE _id = ?", new Object[]{apple});
+        assertSummaryMatchesProducts();
+    }
+
+    @Test
+    public void deletingSyncedProductLeavesTombstone() {
+        migrateToLatest();
+
+        String syncId = db.queryStrings("SELECT sync_id FROM inventory WHERE product_name = 'Apple'", null).get(0);
+        assertNotNull(syncId);
+        db.execSQL("UPDATE inventory SET sync_version = 7, sync_dirty = 0 WHERE sync_id = ?", new Object[]{syncId});
+        db.execSQL("DELETE FROM inventory WHERE sync_id = ?", new Object[]{syncId});
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM inventory_tombstones WHERE sync_id = ?", syncId));
+
+        // The backend never saw this one
+        db.execSQL("DELETE FROM inventory WHERE product_name = 'Pear'");
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM inventory_tombstones"));
+    }
+
+    @Test
+    public void localEditMarksSyncedProductDirty() {
+        migrateToLatest();
+        db.execSQL("UPDATE inventory SET sync_version = 7, sync_dirty = 0");
+
+        db.execSQL("UPDATE inventory SET quantity = 9 WHERE product_name = 'Apple'");
+        assertEquals(1, db.queryLong("SELECT COUNT(*) FROM inventory WHERE sync_dirty = 1"));
+
+        // What the sync engine writes moves the version, which isn't a local edit
+        db.execSQL("UPDATE inventory SET quantity = 4, sync_version = 8 WHERE product_name = 'Pear'");
+        assertFalse(db.queryStrings("SELECT sync_dirty FROM inventory WHERE product_name = 'Pear'", null)
+                .contains("1"));
+    }
+
+    @Test
+    public void missingStepIsRejected() {
+        try {
+            Migrations.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION + 1);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private void assertSummaryMatchesProducts() {
+        assertEquals(db.queryLong("SELECT IFNULL(SUM(price * total_quantity), 0) FROM inventory"),
+                db.queryLong("SELECT total_value FROM inventory_summary"));
+        assertEquals(db.queryLong("SELECT COUNT(*) FROM inventory"),
+                db.queryLong("SELECT product_count FROM inventory_summary"));
+        assertEquals(db.queryLong("SELECT IFNULL(SUM(total_quantity), 0) FROM inventory"),
+                db.queryLong("SELECT total_quantity FROM inventory_summary"));
+        assertEquals(db.queryLong("SELECT IFNULL(SUM(total_quantity <= 0), 0) FROM inventory"),
+                db.queryLong("SELECT out_of_stock_count FROM inventory_summary"));
+    }
+
+    private void migrateToLatest() {
+        Migrations.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+    }
+
+    private void insertVersion1(String name, double price, int quantity, String supplier, long phone) {
+        db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name, supplier_phone_number)"
+                + " VALUES (?, ?, ?, ?, ?)", new Object[]{name, price, quantity, supplier, phone});
+    }
+}
@@ -0,0 +1,56 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Price parsing and formatting, run for every price typed, imported or shown
+ */
+public class PricesBenchmark {
+    private static final Benchmark benchmark = new Benchmark("prices");
+
+    private static final String[] TYPED = new String[]{"0.99", "25.23", "1999", "12345.675", " 7.5 "};
+
+    @BeforeClass
+    public static void setUpClass() {
+        Benchmark.assumeEnabled();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        benchmark.write();
+    }
+
+    @Test
+    public void parse() throws Exception {
+        benchmark.measure("parse", new Object[0], TYPED.length, new Benchmark.Body() {
+            @Override
+            public long run() {
+                long sum = 0;
+                for (String price : TYPED) {
+                    sum += Prices.parse(price);
+                }
+                return sum;
+            }
+        });
+    }
+
+    @Test
+    public void format() throws Exception {
+        benchmark.measure("format", new Object[0], 1000, new Benchmark.Body() {
+            @Override
+            public long run() {
+                long length = 0;
+                for (long price = 0; price < 100000; price += 100) {
+                    length += Prices.format(price).length();
+                }
+                return length;
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.livelycoder.inventory.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PricesTest {
+
+    @Test
+    public void parseRoundsHalfUpToMinorUnits() {
+        assertEquals(2523, Prices.parse(" 25.23 "));
+        assertEquals(10, Prices.parse("0.1"));
+        assertEquals(268, Prices.parse("2.675"));
+        assertEquals(500, Prices.parse("5"));
+    }
+
+    @Test
+    public void parseAcceptsTheLargestPrice() {
+        assertEquals(Long.MAX_VALUE, Prices.parse("92233720368547758.07"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsPricesOutOfRange() {
+        Prices.parse("92233720368547758.08");
+    }
+
+    @Test(expected = NumberFormatException.class, timeout = 1000)
+    public void parseRejectsHugeExponents() {
+        Prices.parse("9e99999999");
+    }
+
+    @Test(expected = NumberFormatException.class, timeout = 1000)
+    public void parseRejectsTheLargestExponent() {
+        Prices.parse("1e2147483647");
+    }
+
+    @Test(timeout = 1000)
+    public void parseRoundsTinyExponentsToZero() {
+        assertEquals(0, Prices.parse("1e-99999999"));
+        assertEquals(0, Prices.parse("0e99999999"));
+        assertEquals(1, Prices.parse("5e-3"));
+        assertEquals(0, Prices.parse("4e-3"));
+        assertEquals(250, Prices.parse("2.5e0"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsText() {
+        Prices.parse("1,5");
+    }
+
+    @Test
+    public void formatRoundTrips() {
+        assertEquals("25.23", Prices.format(Prices.parse("25.23")));
+        assertEquals("0.05", Prices.format(5));
+    }
+}
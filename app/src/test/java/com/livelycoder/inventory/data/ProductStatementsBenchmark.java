@@ -0,0 +1,136 @@
+package com.livelycoder.inventory.data;
+
+import com.livelycoder.inventory.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * The single product operations {@link ProductStatements} precompiles, each run once the way
+ * SQLiteDatabase.query and update do it, building the SQL and preparing it with string
+ * arguments on every call, and once through a statement prepared up front with long
+ * arguments.
+ * <p>
+ * This measures SQLite's prepare cost on the host. On a device the connection's statement
+ * cache takes some of it away from the first form, but not the SQL building, the argument
+ * arrays or the cache lookup.
+ */
+public class ProductStatementsBenchmark {
+    private static final Benchmark benchmark = new Benchmark("product_statements");
+
+    private static final int ROWS = 10000;
+
+    private static JdbcMigrationDatabase db;
+
+    @BeforeClass
+    public static void setUpClass() throws SQLException {
+        Benchmark.assumeEnabled();
+        db = JdbcMigrationDatabase.latest(28);
+        Connection connection = db.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO inventory (product_name,"
+                + " price, quantity, supplier_name, supplier_phone_number) VALUES (?, 100, 10, 'Supplier', 0)");
+        for (int i = 0; i < ROWS; i++) {
+            insert.setString(1, "Product " + i);
+            insert.executeUpdate();
+        }
+        insert.close();
+        connection.commit();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException, SQLException {
+        benchmark.write();
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @Test
+    public void quantityById() throws Exception {
+        final Connection connection = db.getConnection();
+        final Random random = new Random(1);
+        benchmark.measure("quantity_by_id", new Object[]{"statement", "prepared_per_call"}, 1,
+                new Benchmark.Body() {
+                    @Override
+                    public long run() throws SQLException {
+                        String[] selectionArgs = new String[]{String.valueOf(1 + random.nextInt(ROWS))};
+                        PreparedStatement statement = connection.prepareStatement(
+                                "SELECT quantity FROM inventory WHERE _id=?");
+                        try {
+                            statement.setString(1, selectionArgs[0]);
+                            return readLong(statement.executeQuery());
+                        } finally {
+                            statement.close();
+                        }
+                    }
+                });
+
+        final PreparedStatement compiled = connection.prepareStatement(
+                "SELECT quantity FROM inventory WHERE _id = ?");
+        benchmark.measure("quantity_by_id", new Object[]{"statement", "precompiled"}, 1,
+                new Benchmark.Body() {
+                    @Override
+                    public long run() throws SQLException {
+                        compiled.setLong(1, 1 + random.nextInt(ROWS));
+                        return readLong(compiled.executeQuery());
+                    }
+                });
+        compiled.close();
+    }
+
+    @Test
+    public void updateQuantityById() throws Exception {
+        final Connection connection = db.getConnection();
+        final Random random = new Random(2);
+        benchmark.measure("update_quantity_by_id", new Object[]{"statement", "prepared_per_call"}, 1,
+                new Benchmark.Body() {
+                    @Override
+                    public long run() throws SQLException {
+                        String[] bindArgs = new String[]{String.valueOf(random.nextInt(100)),
+                                String.valueOf(1 + random.nextInt(ROWS))};
+                        StringBuilder sql = new StringBuilder(120);
+                        sql.append("UPDATE ").append("inventory").append(" SET ")
+                                .append("quantity").append("=?").append(" WHERE ").append("_id=?");
+                        PreparedStatement statement = connection.prepareStatement(sql.toString());
+                        try {
+                            statement.setString(1, bindArgs[0]);
+                            statement.setString(2, bindArgs[1]);
+                            return statement.executeUpdate();
+                        } finally {
+                            statement.close();
+                        }
+                    }
+                });
+
+        final PreparedStatement compiled = connection.prepareStatement(
+                "UPDATE inventory SET quantity = ? WHERE _id = ?");
+        benchmark.measure("update_quantity_by_id", new Object[]{"statement", "precompiled"}, 1,
+                new Benchmark.Body() {
+                    @Override
+                    public long run() throws SQLException {
+                        compiled.setLong(1, random.nextInt(100));
+                        compiled.setLong(2, 1 + random.nextInt(ROWS));
+                        return compiled.executeUpdate();
+                    }
+                });
+        compiled.close();
+        connection.rollback();
+    }
+
+    private static long readLong(ResultSet rows) throws SQLException {
+        try {
+            return rows.next() ? rows.getLong(1) : -1;
+        } finally {
+            rows.close();
+        }
+    }
+}
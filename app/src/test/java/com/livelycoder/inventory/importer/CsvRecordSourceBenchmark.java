@@ -0,0 +1,72 @@
+package com.livelycoder.inventory.importer;
+
+import com.livelycoder.inventory.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Parsing of a CSV catalog, record by record as the importer reads it
+ */
+public class CsvRecordSourceBenchmark {
+    private static final Benchmark benchmark = new Benchmark("csv_record_source");
+
+    private static final int RECORDS = 10000;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Benchmark.assumeEnabled();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        benchmark.write();
+    }
+
+    @Test
+    public void plainFields() throws Exception {
+        measure("plain", catalog(false));
+    }
+
+    @Test
+    public void quotedFields() throws Exception {
+        measure("quoted", catalog(true));
+    }
+
+    private static void measure(String name, final String csv) throws Exception {
+        benchmark.measure(name, new Object[]{"records", RECORDS}, RECORDS, new Benchmark.Body() {
+            @Override
+            public long run() throws IOException {
+                String[] fields = new String[CatalogImporter.FIELDS.length];
+                CsvRecordSource source = new CsvRecordSource(new StringReader(csv));
+                long length = 0;
+                while (source.next(fields)) {
+                    length += fields[0].length();
+                }
+                source.close();
+                return length;
+            }
+        });
+    }
+
+    private static String catalog(boolean quoted) {
+        StringBuilder csv = new StringBuilder(
+                "product_name,price,quantity,supplier_name,supplier_phone_number,notes\r\n");
+        for (int i = 0; i < RECORDS; i++) {
+            if (quoted) {
+                csv.append("\"Product ").append(i).append(", boxed\",\"").append(i % 1000).append(".99\",")
+                        .append(i % 50).append(",\"Supplier \"\"").append(i % 40).append("\"\"\",5550")
+                        .append(i % 10000).append(",\"Some, notes\"\r\n");
+            } else {
+                csv.append("Product ").append(i).append(',').append(i % 1000).append(".99,")
+                        .append(i % 50).append(",Supplier ").append(i % 40).append(",5550")
+                        .append(i % 10000).append(",notes\r\n");
+            }
+        }
+        return csv.toString();
+    }
+}
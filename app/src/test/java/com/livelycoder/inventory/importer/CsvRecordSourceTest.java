@@ -0,0 +1,111 @@
+package com.livelycoder.inventory.importer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CsvRecordSourceTest {
+    private static final String HEADER =
+            "product_name,price,quantity,supplier_name,supplier_phone_number\n";
+
+    @Test
+    public void readsQuotedFields() throws IOException {
+        List<String[]> records = read(HEADER
+                + "\"Tea, green\",\"2.50\",3,\"The \"\"Leaf\"\" Co\",555\n"
+                + "\"Two\nlines\",1,1,\"\",\n");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"Tea, green", "2.50", "3", "The \"Leaf\" Co", "555"},
+                records.get(0));
+        assertArrayEquals(new String[]{"Two\nlines", "1", "1", "", ""}, records.get(1));
+    }
+
+    @Test
+    public void acceptsCrLfByteOrderMarkAndBlankLines() throws IOException {
+        List<String[]> records = read("\uFEFF" + HEADER.replace("\n", "\r\n")
+                + "\r\n"
+                + "Tea,1,2,Leaf,555\r\n"
+                + "\n"
+                + "Coffee,3,4,Bean,556");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]{"Tea", "1", "2", "Leaf", "555"}, records.get(0));
+        assertArrayEquals(new String[]{"Coffee", "3", "4", "Bean", "556"}, records.get(1));
+    }
+
+    @Test
+    public void acceptsQuotedHeaderAfterByteOrderMark() throws IOException {
+        List<String[]> records = read("\uFEFF\"product_name\",\"price\"\nTea,1\n");
+
+        assertArrayEquals(new String[]{"Tea", "1", null, null, null}, records.get(0));
+    }
+
+    @Test
+    public void mapsColumnsByHeaderName() throws IOException {
+        List<String[]> records = read("Quantity,notes,PRODUCT_NAME,price\n"
+                + "7,ignored,Tea,1.5,extra\n");
+
+        assertArrayEquals(new String[]{"Tea", "1.5", "7", null, null}, records.get(0));
+    }
+
+    @Test(expected = CatalogFormatException.class)
+    public void rejectsUnterminatedQuote() throws IOException {
+        read(HEADER + "\"Tea,1,2,Leaf,555\n");
+    }
+
+    @Test(expected = CatalogFormatException.class)
+    public void rejectsEmptyFile() throws IOException {
+        read("");
+    }
+
+    /**
+     * The importer resumes by skipping the records an earlier run committed, so records must
+     * be counted the same way wherever the buffer happens to split them.
+     */
+    @Test
+    public void skippedRecordsLineUpWithAFullRead() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 2000; i++) {
+            csv.append("\"Product\n").append(i).append("\",1,").append(i).append(",,\n");
+            if (i % 7 == 0) {
+                csv.append('\n');
+            }
+        }
+
+        List<String[]> all = read(csv.toString());
+        assertEquals(2000, all.size());
+
+        int skipRecords = 1234;
+        CsvRecordSource source = new CsvRecordSource(new StringReader(csv.toString()));
+        String[] fields = new String[CatalogImporter.FIELDS.length];
+        for (int i = 0; i < skipRecords; i++) {
+            source.next(fields);
+        }
+        for (int i = skipRecords; i < all.size(); i++) {
+            source.next(fields);
+            assertArrayEquals(all.get(i), fields);
+        }
+        assertFalse(source.next(fields));
+    }
+
+    private static List<String[]> read(String csv) throws IOException {
+        CsvRecordSource source = new CsvRecordSource(new StringReader(csv));
+        List<String[]> records = new ArrayList<>();
+        String[] fields = new String[CatalogImporter.FIELDS.length];
+        try {
+            while (source.next(fields)) {
+                records.add(fields.clone());
+            }
+        } finally {
+            source.close();
+        }
+        return records;
+    }
+}
@@ -0,0 +1,195 @@
+package com.livelycoder.inventory.loaders;
+
+import com.livelycoder.inventory.data.Product;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProductWindowTest {
+    private static final int PAGE_SIZE = 10;
+
+    /**
+     * The catalog in name order, read a page at a time like the provider's keyset query
+     */
+    private final List<Product> catalog = new ArrayList<>();
+
+    private final List<Product> anchors = new ArrayList<>();
+
+    private final ProductWindow.PageReader reader = new ProductWindow.PageReader() {
+        @Override
+        public void read(Product anchor, List<Product> result) {
+            anchors.add(anchor);
+            int start = 0;
+            if (anchor != null) {
+                while (start < catalog.size() && compare(catalog.get(start), anchor) <= 0) {
+                    start++;
+                }
+            }
+            result.addAll(catalog.subList(start, Math.min(start + PAGE_SIZE, catalog.size())));
+        }
+    };
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 95; i++) {
+            catalog.add(product(i));
+        }
+    }
+
+    @Test
+    public void firstLoadReadsTheFirstPage() {
+        ProductWindow window = load(new ProductWindow(PAGE_SIZE), 0, 0, 0);
+
+        assertEquals(PAGE_SIZE, window.size());
+        assertEquals(catalog.get(0), window.get(0));
+        assertEquals(1, anchors.size());
+        assertNull(anchors.get(0));
+        assertTrue(window.needsLoad(0, 1));
+        assertFalse(window.needsLoad(0, 0));
+    }
+
+    @Test
+    public void scrollingOnDropsThePagesLeftBehind() {
+        ProductWindow window = new ProductWindow(PAGE_SIZE);
+        for (int page = 0; page < 6; page++) {
+            window = load(window, page, page + 1, 0);
+        }
+
+        // Pages 5 and 6 were asked for, and page 4 is kept as their loaded neighbour
+        assertEquals(7 * PAGE_SIZE, window.size());
+        assertNull(window.get(0));
+        assertNull(window.get(4 * PAGE_SIZE - 1));
+        for (int position = 4 * PAGE_SIZE; position < window.size(); position++) {
+            assertEquals(catalog.get(position), window.get(position));
+        }
+        assertEquals(3, loadedPages(window));
+        // Every page was read once, after the last product of the page before
+        assertEquals(7, anchors.size());
+        assertEquals(catalog.get(6 * PAGE_SIZE - 1), anchors.get(6));
+    }
+
+    @Test
+    public void scrollingBackReadsADroppedPageAfterItsAnchor() {
+        ProductWindow window = new ProductWindow(PAGE_SIZE);
+        for (int page = 0; page < 6; page++) {
+            window = load(window, page, page + 1, 0);
+        }
+        anchors.clear();
+
+        window = load(window, 2, 2, 0);
+
+        assertEquals(1, anchors.size());
+        assertEquals(catalog.get(2 * PAGE_SIZE - 1), anchors.get(0));
+        for (int position = 2 * PAGE_SIZE; position < 3 * PAGE_SIZE; position++) {
+            assertEquals(catalog.get(position), window.get(position));
+        }
+        assertEquals(7 * PAGE_SIZE, window.size());
+    }
+
+    @Test
+    public void loadedPagesAreReusedUntilTheContentChanges() {
+        ProductWindow window = load(new ProductWindow(PAGE_SIZE), 0, 1, 0);
+        anchors.clear();
+
+        window = load(window, 0, 1, 0);
+        assertEquals(0, anchors.size());
+
+        catalog.remove(3);
+        window = load(window, 0, 1, 1);
+
+        assertEquals(2, anchors.size());
+        assertEquals(catalog.get(PAGE_SIZE - 1), anchors.get(1));
+        for (int position = 0; position < window.size(); position++) {
+            assertEquals(catalog.get(position), window.get(position));
+        }
+    }
+
+    @Test
+    public void aChangeReloadsOnlyTheWindow() {
+        ProductWindow window = new ProductWindow(PAGE_SIZE);
+        for (int page = 0; page < 6; page++) {
+            window = load(window, page, page + 1, 0);
+        }
+        anchors.clear();
+
+        catalog.add(0, product(-1));
+        window = load(window, 5, 6, 1);
+
+        // Pages 4 to 6 are loaded and read again, chained from page 4's anchor
+        assertEquals(3, anchors.size());
+        assertEquals(catalog.get(4 * PAGE_SIZE), anchors.get(0));
+        assertEquals(window.get(5 * PAGE_SIZE - 1), anchors.get(1));
+        assertEquals(3, loadedPages(window));
+    }
+
+    @Test
+    public void aShortPageCompletesTheList() {
+        ProductWindow window = new ProductWindow(PAGE_SIZE);
+        for (int page = 0; page < 10; page++) {
+            window = load(window, page, page + 1, 0);
+        }
+
+        assertEquals(95, window.size());
+        assertTrue(window.complete);
+        assertFalse(window.needsLoad(8, 10));
+        assertEquals(catalog.get(94), window.get(94));
+    }
+
+    @Test
+    public void deletionsShortenTheList() {
+        ProductWindow window = new ProductWindow(PAGE_SIZE);
+        for (int page = 0; page < 4; page++) {
+            window = load(window, page, page + 1, 0);
+        }
+        assertEquals(5 * PAGE_SIZE, window.size());
+
+        catalog.subList(25, catalog.size()).clear();
+        window = load(window, 2, 3, 1);
+
+        assertEquals(25, window.size());
+        assertTrue(window.complete);
+        assertEquals(catalog.get(24), window.get(24));
+    }
+
+    @Test
+    public void emptyCatalogGivesAnEmptyList() {
+        catalog.clear();
+
+        ProductWindow window = load(new ProductWindow(PAGE_SIZE), 0, 0, 0);
+
+        assertEquals(0, window.size());
+        assertTrue(window.complete);
+        assertFalse(window.needsLoad(0, 0));
+    }
+
+    private ProductWindow load(ProductWindow window, int firstPage, int lastPage, long version) {
+        return ProductWindow.load(window, firstPage, lastPage, version, reader);
+    }
+
+    private static int loadedPages(ProductWindow window) {
+        int loaded = 0;
+        for (ProductWindow.Page page : window.pages) {
+            if (page.isLoaded()) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private static Product product(int i) {
+        return new Product(1000 + i, String.format("Product %04d", 1000 + i), 100, i, i);
+    }
+
+    private static int compare(Product a, Product b) {
+        int names = a.getName().compareToIgnoreCase(b.getName());
+        return names != 0 ? names : Long.compare(a.getId(), b.getId());
+    }
+}
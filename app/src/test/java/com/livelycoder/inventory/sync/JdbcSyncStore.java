@@ -0,0 +1,222 @@
+package com.livelycoder.inventory.sync;
+
+import com.livelycoder.inventory.data.JdbcMigrationDatabase;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A device's products in an in-memory database with the migrated schema, which runs the sync
+ * steps the way the provider's batch does, triggers and unique indexes included
+ */
+final class JdbcSyncStore implements SyncStore {
+    private static final String COLUMNS = "sync_id, sync_version, sync_dirty, modified_time, modified_by,"
+            + " quantity, sync_quantity, product_name, price, supplier_name, supplier_phone_number,"
+            + " reorder_threshold, sku";
+
+    final JdbcMigrationDatabase db;
+
+    private final String deviceId;
+
+    private long cursor;
+
+    private int applies;
+
+    /**
+     * Number of the apply that fails as if the device lost the provider, 0 for none
+     */
+    int failingApply;
+
+    JdbcSyncStore(String deviceId) throws SQLException {
+        this.db = JdbcMigrationDatabase.latest(28);
+        this.deviceId = deviceId;
+    }
+
+    @Override
+    public String deviceId() {
+        return deviceId;
+    }
+
+    @Override
+    public long cursor() {
+        return cursor;
+    }
+
+    @Override
+    public void saveCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public List<SyncRecord> readDirty(String deviceId, int limit) {
+        List<SyncRecord> records = new ArrayList<>();
+        for (Object[] row : query("SELECT " + COLUMNS + " FROM inventory WHERE sync_dirty = 1 LIMIT ?", limit)) {
+            records.add(toRecord(row, deviceId));
+        }
+        return records;
+    }
+
+    @Override
+    public List<SyncRecord> readTombstones(String deviceId, int limit) {
+        List<SyncRecord> records = new ArrayList<>();
+        for (Object[] row : query("SELECT sync_id, time FROM inventory_tombstones LIMIT ?", limit)) {
+            records.add(SyncRecord.deletion((String) row[0], 0, ((Number) row[1]).longValue(), deviceId));
+        }
+        return records;
+    }
+
+    @Override
+    public LocalProducts readLocal(String deviceId, List<SyncRecord> records) {
+        LocalProducts local = new LocalProducts();
+        for (SyncRecord record : records) {
+            for (Object[] row : query("SELECT " + COLUMNS + " FROM inventory WHERE sync_id = ?", record.syncId)) {
+                local.addProduct(toRecord(row, deviceId), ((Number) row[2]).intValue() != 0);
+            }
+            if (!record.deleted && record.sku != null) {
+                for (Object[] row : query("SELECT " + COLUMNS + " FROM inventory WHERE sku = ?", record.sku)) {
+                    local.addProduct(toRecord(row, deviceId), ((Number) row[2]).intValue() != 0);
+                }
+            }
+            if (!query("SELECT sync_id FROM inventory_tombstones WHERE sync_id = ?", record.syncId).isEmpty()) {
+                local.addTombstone(record.syncId);
+            }
+        }
+        return local;
+    }
+
+    @Override
+    public void apply(List<SyncStep> steps) throws IOException, SyncConflictException {
+        if (++applies == failingApply) {
+            throw new IOException("Provider unreachable");
+        }
+        Connection connection = db.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (SyncStep step : steps) {
+                    run(step);
+                }
+                connection.commit();
+            } catch (SQLException | SyncConflictException e) {
+                connection.rollback();
+                if (e instanceof SyncConflictException) {
+                    throw (SyncConflictException) e;
+                }
+                // Like SQLiteConstraintException from the provider
+                throw new SyncConflictException("Products changed during sync", e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void run(SyncStep step) throws SQLException, SyncConflictException {
+        switch (step.kind) {
+            case SyncStep.INSERT: {
+                StringBuilder columns = new StringBuilder();
+                StringBuilder placeholders = new StringBuilder();
+                for (String column : step.values.keySet()) {
+                    columns.append(columns.length() == 0 ? "" : ", ").append(column);
+                    placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+                }
+                update("INSERT INTO inventory (" + columns + ") VALUES (" + placeholders + ")",
+                        step.values.values().toArray());
+                break;
+            }
+            case SyncStep.UPDATE: {
+                StringBuilder assignments = new StringBuilder();
+                List<Object> args = new ArrayList<>();
+                for (Map.Entry<String, Object> value : step.values.entrySet()) {
+                    assignments.append(assignments.length() == 0 ? "" : ", ").append(value.getKey()).append(" = ?");
+                    args.add(value.getValue());
+                }
+                args.add(step.syncId);
+                update("UPDATE inventory SET " + assignments + " WHERE sync_id = ?", args.toArray());
+                break;
+            }
+            case SyncStep.DELETE:
+                update("DELETE FROM inventory WHERE sync_id = ?", step.syncId);
+                break;
+            case SyncStep.DELETE_TOMBSTONE:
+                update("DELETE FROM inventory_tombstones WHERE sync_id = ?", step.syncId);
+                break;
+            case SyncStep.ASSERT_UNCHANGED:
+                SyncRecord expected = step.expected;
+                if (query("SELECT _id FROM inventory WHERE sync_id = ? AND sync_version = ?"
+                                + " AND modified_time = ? AND quantity = ?", expected.syncId, expected.version,
+                        expected.modifiedTime, expected.quantity).size() != 1) {
+                    throw new SyncConflictException("Changed: " + expected.syncId, null);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sync step " + step.kind);
+        }
+    }
+
+    private void update(String sql, Object... args) throws SQLException {
+        PreparedStatement statement = db.getConnection().prepareStatement(sql);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Runs a query
+     *
+     * @return every row, as its column values
+     */
+    List<Object[]> query(String sql, Object... args) {
+        try {
+            PreparedStatement statement = db.getConnection().prepareStatement(sql);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                ResultSet rows = statement.executeQuery();
+                int columns = rows.getMetaData().getColumnCount();
+                List<Object[]> result = new ArrayList<>();
+                while (rows.next()) {
+                    Object[] row = new Object[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rows.getObject(i + 1);
+                    }
+                    result.add(row);
+                }
+                return result;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(sql, e);
+        }
+    }
+
+    private static SyncRecord toRecord(Object[] row, String deviceId) {
+        return new SyncRecord(
+                (String) row[0],
+                ((Number) row[1]).longValue(),
+                ((Number) row[3]).longValue(),
+                row[4] == null ? deviceId : (String) row[4],
+                (String) row[7],
+                ((Number) row[8]).longValue(),
+                ((Number) row[5]).intValue(),
+                ((Number) row[6]).intValue(),
+                (String) row[9],
+                ((Number) row[10]).longValue(),
+                ((Number) row[11]).intValue(),
+                (String) row[12]);
+    }
+}
@@ -0,0 +1,66 @@
+package com.livelycoder.inventory.sync;
+
+import com.livelycoder.inventory.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding and decoding of a full sync batch, both ends of every exchange
+ */
+public class SyncCodecBenchmark {
+    private static final Benchmark benchmark = new Benchmark("sync_codec");
+
+    private static final int RECORDS = 200;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Benchmark.assumeEnabled();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        benchmark.write();
+    }
+
+    @Test
+    public void encodeRequest() throws Exception {
+        final SyncCodec.Request request = new SyncCodec.Request("device", 1234, RECORDS, records());
+        benchmark.measure("encode_request", new Object[]{"records", RECORDS}, RECORDS, new Benchmark.Body() {
+            @Override
+            public long run() throws IOException {
+                return SyncCodec.encode(request).length;
+            }
+        });
+    }
+
+    @Test
+    public void decodeResponse() throws Exception {
+        final byte[] payload = SyncCodec.encode(new SyncCodec.Response(1234, true, records()));
+        benchmark.measure("decode_response", new Object[]{"records", RECORDS}, RECORDS, new Benchmark.Body() {
+            @Override
+            public long run() throws IOException {
+                return SyncCodec.decodeResponse(payload).records.size();
+            }
+        });
+    }
+
+    private static List<SyncRecord> records() {
+        List<SyncRecord> records = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            if (i % 20 == 0) {
+                records.add(SyncRecord.deletion("deleted" + i, i, 1500000000000L + i, "device"));
+                continue;
+            }
+            records.add(new SyncRecord(String.format("%032x", i), i, 1500000000000L + i, "device",
+                    "Product " + i, i * 100, i % 50, i % 40, "Supplier " + (i % 7), 5550000 + i, 5,
+                    i % 3 == 0 ? null : "SKU-" + i));
+        }
+        return records;
+    }
+}
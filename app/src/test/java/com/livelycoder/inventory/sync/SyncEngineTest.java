@@ -0,0 +1,241 @@
+package com.livelycoder.inventory.sync;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Two devices syncing through one {@link LocalSyncServer}, each with its products in a
+ * database of the migrated schema
+ */
+public class SyncEngineTest {
+    private LocalSyncServer server;
+    private JdbcSyncStore a;
+    private JdbcSyncStore b;
+
+    @Before
+    public void setUp() throws SQLException {
+        server = new LocalSyncServer();
+        a = new JdbcSyncStore("device-a");
+        b = new JdbcSyncStore("device-b");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        a.db.close();
+        b.db.close();
+    }
+
+    @Test
+    public void concurrentEditsMergeQuantitiesAndKeepTheLaterFields() throws Exception {
+        String apple = insert(a, "Apple", 10, null);
+        sync(a);
+        sync(b);
+
+        // a sells 3, b restocks 5 and renames later
+        edit(a, apple, "quantity", 7);
+        edit(a, apple, "product_name", "Green apple");
+        edit(a, apple, "modified_time", 1000);
+        edit(b, apple, "quantity", 15);
+        edit(b, apple, "product_name", "Red apple");
+        edit(b, apple, "modified_time", 2000);
+        sync(a);
+        sync(b);
+        sync(a);
+
+        for (JdbcSyncStore device : Arrays.asList(a, b)) {
+            assertEquals(12L, value(device, apple, "quantity"));
+            assertEquals("Red apple", value(device, apple, "product_name"));
+            assertEquals(0L, value(device, apple, "sync_dirty"));
+        }
+        assertEquals("device-b", value(a, apple, "modified_by"));
+        assertNull(value(b, apple, "modified_by"));
+
+        edit(a, apple, "price", 250);
+        assertNull(value(a, apple, "modified_by"));
+    }
+
+    @Test
+    public void deletionWinsOverAnEditSyncedLater() throws Exception {
+        String apple = insert(a, "Apple", 10, null);
+        sync(a);
+        sync(b);
+
+        delete(a, apple);
+        edit(b, apple, "product_name", "Red apple");
+        sync(a);
+        sync(b);
+
+        assertGone(a, apple);
+        assertGone(b, apple);
+    }
+
+    @Test
+    public void deletionWinsOverAnEditSyncedEarlier() throws Exception {
+        String apple = insert(a, "Apple", 10, null);
+        sync(a);
+        sync(b);
+
+        edit(b, apple, "product_name", "Red apple");
+        sync(b);
+        delete(a, apple);
+        sync(a);
+        sync(b);
+
+        assertGone(a, apple);
+        assertGone(b, apple);
+    }
+
+    @Test
+    public void editDoesNotBringBackAProductDeletedElsewhere() throws Exception {
+        String apple = insert(a, "Apple", 10, null);
+        sync(a);
+        sync(b);
+
+        // b deletes offline while a keeps editing
+        delete(b, apple);
+        edit(a, apple, "quantity", 4);
+        sync(a);
+        sync(b);
+        sync(a);
+
+        assertGone(a, apple);
+        assertGone(b, apple);
+    }
+
+    @Test
+    public void pulledProductDeletedHereIsNotInserted() {
+        LocalProducts local = new LocalProducts();
+        local.addTombstone("apple");
+        SyncRecord pulled = new SyncRecord("apple", 3, 1000, "device-a", "Apple", 100, 10, 10,
+                "Farm", 0, 0, null);
+
+        List<SyncStep> steps = SyncPlanner.plan("device-b", new HashMap<String, SyncRecord>(),
+                Collections.singletonList(pulled), local);
+
+        assertTrue(steps.isEmpty());
+    }
+
+    @Test
+    public void interruptedSyncResumesFromTheSavedCursor() throws Exception {
+        int products = SyncEngine.BATCH_SIZE + 50;
+        for (int i = 0; i < products; i++) {
+            insert(a, "Product " + i, i, null);
+        }
+        sync(a);
+
+        b.failingApply = 2;
+        try {
+            new SyncEngine(b, server).sync();
+            fail("Expected the second batch to fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(SyncEngine.BATCH_SIZE, b.db.queryLong("SELECT COUNT(*) FROM inventory"));
+
+        b.failingApply = 0;
+        sync(b);
+        assertEquals(products, b.db.queryLong("SELECT COUNT(DISTINCT sync_id) FROM inventory"));
+        assertEquals(products, b.db.queryLong("SELECT COUNT(*) FROM inventory"));
+        assertEquals(0, b.db.queryLong("SELECT COUNT(*) FROM inventory WHERE sync_dirty = 1"));
+    }
+
+    @Test
+    public void skuCollisionKeepsTheLaterClaimWhenItSyncsLast() throws Exception {
+        assertSkuCollisionSettles(a, b);
+    }
+
+    @Test
+    public void skuCollisionKeepsTheLaterClaimWhenItSyncsFirst() throws Exception {
+        assertSkuCollisionSettles(b, a);
+    }
+
+    @Test
+    public void skuSwapReachesTheOtherDevice() throws Exception {
+        String apple = insert(a, "Apple", 10, "111");
+        String pear = insert(a, "Pear", 10, "222");
+        sync(a);
+        sync(b);
+
+        long later = System.currentTimeMillis() + 1000;
+        edit(a, apple, "sku", "tmp");
+        edit(a, pear, "sku", "111");
+        edit(a, apple, "sku", "222");
+        edit(a, pear, "modified_time", later);
+        edit(a, apple, "modified_time", later + 1000);
+        sync(a);
+        sync(b);
+
+        for (JdbcSyncStore device : Arrays.asList(a, b)) {
+            assertEquals("222", value(device, apple, "sku"));
+            assertEquals("111", value(device, pear, "sku"));
+            assertEquals(0L, value(device, apple, "sync_dirty"));
+            assertTrue((Long) value(device, apple, "sync_version") > 0);
+            assertTrue((Long) value(device, pear, "sync_version") > 0);
+        }
+    }
+
+    /**
+     * Both devices create a product with the same SKU, the one of later changes it
+     */
+    private void assertSkuCollisionSettles(JdbcSyncStore first, JdbcSyncStore second) throws Exception {
+        String apple = insert(a, "Apple", 10, "123");
+        edit(a, apple, "modified_time", 1000);
+        String pear = insert(b, "Pear", 10, "123");
+        edit(b, pear, "modified_time", 2000);
+
+        sync(first);
+        sync(second);
+        sync(first);
+
+        for (JdbcSyncStore device : Arrays.asList(a, b)) {
+            assertEquals(2, device.db.queryLong("SELECT COUNT(*) FROM inventory"));
+            assertEquals("123", value(device, pear, "sku"));
+            assertNull(value(device, apple, "sku"));
+        }
+    }
+
+    private void sync(JdbcSyncStore device) throws Exception {
+        assertTrue(new SyncEngine(device, server).sync());
+    }
+
+    /**
+     * @return sync id of the new product
+     */
+    private static String insert(JdbcSyncStore device, String name, int quantity, String sku) {
+        device.db.execSQL("INSERT INTO inventory (product_name, price, quantity, supplier_name,"
+                + " supplier_phone_number, sku) VALUES (?, 100, ?, 'Farm', 0, ?)", new Object[]{name, quantity, sku});
+        return (String) device.query("SELECT sync_id FROM inventory WHERE _id = last_insert_rowid()").get(0)[0];
+    }
+
+    private static void edit(JdbcSyncStore device, String syncId, String column, Object value) {
+        device.db.execSQL("UPDATE inventory SET " + column + " = ? WHERE sync_id = ?", new Object[]{value, syncId});
+    }
+
+    private static void delete(JdbcSyncStore device, String syncId) {
+        device.db.execSQL("DELETE FROM inventory WHERE sync_id = ?", new Object[]{syncId});
+    }
+
+    private static Object value(JdbcSyncStore device, String syncId, String column) {
+        List<Object[]> rows = device.query("SELECT " + column + " FROM inventory WHERE sync_id = ?", syncId);
+        assertEquals(1, rows.size());
+        Object value = rows.get(0)[0];
+        return value instanceof Integer ? Long.valueOf((Integer) value) : value;
+    }
+
+    private static void assertGone(JdbcSyncStore device, String syncId) {
+        assertEquals(0, device.query("SELECT _id FROM inventory WHERE sync_id = ?", syncId).size());
+        assertEquals(0, device.db.queryLong("SELECT COUNT(*) FROM inventory_tombstones"));
+    }
+}